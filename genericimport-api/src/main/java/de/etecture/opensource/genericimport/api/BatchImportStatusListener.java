@@ -0,0 +1,65 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.api;
+
+import java.util.List;
+
+/**
+ * Defines a Listener interface that observes the importer and receives the
+ * pieces read by the importer in batches.
+ * <p>
+ * N.B. a listener that just implements {@link ImportStatusListener} still
+ * receives each piece with its own call of
+ * {@link #onProgress(java.lang.String, java.lang.Object)}.
+ *
+ * @author rherschke
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public interface BatchImportStatusListener<T> extends ImportStatusListener<T> {
+
+    /**
+     * called, when the importer has read some pieces that can be imported.
+     *
+     * @param payloads the pieces in the order they were read.
+     * @since 1.0.6
+     */
+    void onProgressBatch(String importId, List<T> payloads);
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.resource.spi.endpoint.MessageEndpointFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * measures a scan of a directory by a {@link FileAgentWork}, that reads,
+ * filters and sorts all the files and dispatches them to a callback.
+ * <p>
+ * the files are created once in a temporary directory. Each scan uses a new
+ * work, so all the files are new to it.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileAgentWorkBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int fileCount;
+    @Param({"0", "1000"})
+    private int scanWindowSize;
+    private Path importDir;
+    private GenericImportSpec spec;
+
+    @Setup
+    public void setup() throws IOException {
+        Logger.getLogger(FileAgentWork.class.getName()).setLevel(Level.OFF);
+        importDir = Files.createTempDirectory("fileAgentBenchmark");
+        long time = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+        for (int i = 0; i < fileCount; i++) {
+            Path file = Files.createFile(importDir.resolve(String.format(
+                    "import_%07d.csv", i)));
+            // spread the timestamps, so the files must be sorted.
+            file.toFile().setLastModified(time + (i * 7919l) % fileCount
+                    * 1000l);
+        }
+        spec = new GenericImportSpec();
+        spec.setImportPath(importDir.toString());
+        spec.setImportFilePattern("import_\\d+\\.csv");
+        spec.setScanWindowSize(scanWindowSize);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(
+                importDir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(importDir);
+    }
+
+    @Benchmark
+    public void scan(final Blackhole blackhole) {
+        new FileAgentWork(spec, null, new FileAgentCallback() {
+            @Override
+            public void onNewImportFile(GenericImportSpec spec,
+                    MessageEndpointFactory endpointFactory,
+                    FileSnapshot file) {
+                blackhole.consume(file);
+            }
+
+            @Override
+            public boolean isSaturated(GenericImportSpec spec) {
+                return false;
+            }
+        }).run();
+    }
+}
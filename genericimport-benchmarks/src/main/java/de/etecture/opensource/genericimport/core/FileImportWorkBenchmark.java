@@ -0,0 +1,174 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.api.BatchImportStatusListener;
+import de.etecture.opensource.genericimport.spi.ImportSourceProcessor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.resource.spi.UnavailableException;
+import javax.resource.spi.endpoint.MessageEndpoint;
+import javax.resource.spi.endpoint.MessageEndpointFactory;
+import javax.transaction.xa.XAResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * measures the hot paths of a {@link FileImportWork}: the lookup of the
+ * processor of a mime-type and the delivery of each piece of progress to the
+ * endpoint.
+ * <p>
+ * the endpoint is a dynamic proxy, as the endpoints created by an application
+ * server are, so the cost of the proxy dispatch is included.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileImportWorkBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+    @Param({"1", "100"})
+    private int deliveriesPerTransaction;
+    private ImportFileProcessorRegistry processors;
+    private ImportEndpointSession session;
+    private EndpointImportStatusListener listener;
+    private List<Object> batch;
+
+    @Setup
+    public void setup() {
+        processors = new ImportFileProcessorRegistry(getClass()
+                .getClassLoader());
+        session = new ImportEndpointSession(new ProxyEndpointFactory(),
+                deliveriesPerTransaction);
+        listener = new EndpointImportStatusListener(session);
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add("record-" + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.close();
+    }
+
+    @Benchmark
+    public ImportSourceProcessor lookupProcessor() {
+        return processors.getSourceProcessor(BenchmarkProcessor.MIME_TYPE);
+    }
+
+    @Benchmark
+    public ImportSourceProcessor lookupMissingProcessor() {
+        return processors.getSourceProcessor("text/x-unknown");
+    }
+
+    @Benchmark
+    public void onProgress() {
+        listener.onProgress("import", "record");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void onProgressBatch() {
+        listener.onProgressBatch("import", batch);
+    }
+
+    /**
+     * creates endpoints, that are dynamic proxies doing nothing.
+     */
+    private static class ProxyEndpointFactory implements
+            MessageEndpointFactory, InvocationHandler {
+
+        @Override
+        public MessageEndpoint createEndpoint(XAResource xaResource) throws
+                UnavailableException {
+            return (MessageEndpoint) Proxy.newProxyInstance(
+                    getClass().getClassLoader(), new Class<?>[]{
+                MessageEndpoint.class, BatchImportStatusListener.class}, this);
+        }
+
+        @Override
+        public MessageEndpoint createEndpoint(XAResource xaResource,
+                long timeout) throws UnavailableException {
+            return createEndpoint(xaResource);
+        }
+
+        @Override
+        public boolean isDeliveryTransacted(Method method) {
+            return false;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ProxyEndpoint";
+                default:
+                    return null;
+            }
+        }
+    }
+}
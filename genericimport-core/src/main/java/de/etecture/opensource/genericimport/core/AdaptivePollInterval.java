@@ -0,0 +1,134 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.cron.ScheduleExpression;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * adapts the interval between two scans of a directory to the arrival of the
+ * files.
+ * <p>
+ * after a scan that found no file the interval is doubled up to the maximum
+ * interval. As soon as a scan finds a file, the interval is reset to the
+ * minimum interval. The next scan is at the first time after the interval,
+ * that is valid for the schedule expression of the spec, so the expression
+ * defines the windows, in which the directory is scanned.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class AdaptivePollInterval {
+
+    private static final Logger LOG = Logger.getLogger(
+            AdaptivePollInterval.class.getName());
+    private final long minInterval;
+    private final long maxInterval;
+    private long interval;
+    private long effectiveInterval;
+
+    /**
+     * constructs a new interval, that starts with the minimum interval.
+     *
+     * @param minInterval the minimum interval in ms.
+     * @param maxInterval the maximum interval in ms.
+     */
+    AdaptivePollInterval(long minInterval, long maxInterval) {
+        this.minInterval = Math.max(1l, minInterval);
+        this.maxInterval = Math.max(this.minInterval, maxInterval);
+        this.interval = this.minInterval;
+        this.effectiveInterval = this.minInterval;
+    }
+
+    /**
+     * adapts the interval to the result of a scan.
+     *
+     * @param newFileCount the number of new files the scan found.
+     */
+    synchronized void onScan(int newFileCount) {
+        long previous = interval;
+        if (newFileCount > 0) {
+            interval = minInterval;
+        } else {
+            interval = Math.min(maxInterval, interval * 2);
+        }
+        if (interval != previous) {
+            LOG.log(Level.FINE, "the poll interval is now {0} ms", interval);
+        }
+    }
+
+    /**
+     * returns the interval, the next scan should be started after.
+     *
+     * @return the interval in ms.
+     */
+    synchronized long getInterval() {
+        return interval;
+    }
+
+    /**
+     * computes the time of the next scan and remembers the interval to it as
+     * the effective interval.
+     *
+     * @param scheduleExpression the expression that defines the valid times.
+     * @param now the actual time.
+     * @return the time of the next scan.
+     */
+    synchronized long nextTime(ScheduleExpression scheduleExpression,
+            long now) {
+        long nextTime = scheduleExpression.getNextValidTime(now + interval - 1);
+        effectiveInterval = nextTime - now;
+        return nextTime;
+    }
+
+    /**
+     * returns the interval to the next scan, as computed by the last call of
+     * {@link #nextTime(ScheduleExpression, long)}. It is longer than the
+     * interval, if the schedule expression does not allow a scan after the
+     * interval.
+     *
+     * @return the interval in ms.
+     */
+    synchronized long getEffectiveInterval() {
+        return effectiveInterval;
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.api.ImportStatusListener;
+import de.etecture.opensource.genericimport.spi.ImportSourceProcessor;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkManager;
+
+/**
+ * imports the files contained in an archive without unpacking them to disk.
+ * <p>
+ * a .gz file is decompressed as a stream straight into the processor of the
+ * mime-type of the spec. Each entry of a .zip file is imported as an import of
+ * its own, with the processor of the mime-type, that is mapped to the name of
+ * the entry. The entries are imported in parallel: they are put into a queue,
+ * that is drained by the importing thread and by up to parallelism - 1 helper
+ * works of the {@link WorkManager}.
+ * <p>
+ * N.B. a processor must read the {@link de.etecture.opensource.genericimport.spi.ImportSource}
+ * through its channel, a processor that needs a file cannot import an
+ * archive.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class ArchiveImporter {
+
+    private static final Logger LOG = Logger.getLogger(ArchiveImporter.class
+            .getName());
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final String ZIP_SUFFIX = ".zip";
+    private static final int BUFFER_SIZE = 65536;
+    private final ImportFileProcessorRegistry processors;
+    private final WorkManager workManager;
+    private final int parallelism;
+    private final String mimeType;
+    private final Map<PathMatcher, String> entryMimeTypes;
+
+    /**
+     * constructs a new importer of archives.
+     *
+     * @param processors the processors to import the contained files.
+     * @param workManager the work manager to schedule the helpers with or null
+     * to import the entries sequentially.
+     * @param parallelism the maximum number of threads that import the entries
+     * of one archive. 0 or less uses one thread per processor.
+     * @param mimeType the mime-type of the contained files.
+     * @param entryMimeTypes the mime-types of the entries of a zip file as
+     * comma separated glob=mime-type pairs or null.
+     */
+    ArchiveImporter(ImportFileProcessorRegistry processors,
+            WorkManager workManager, int parallelism, String mimeType,
+            String entryMimeTypes) {
+        this.processors = processors;
+        this.workManager = workManager;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime
+                .getRuntime().availableProcessors();
+        this.mimeType = mimeType;
+        this.entryMimeTypes = parseMimeTypes(entryMimeTypes);
+    }
+
+    private static Map<PathMatcher, String> parseMimeTypes(
+            String entryMimeTypes) {
+        Map<PathMatcher, String> mimeTypes = new LinkedHashMap<>();
+        if (entryMimeTypes == null || entryMimeTypes.isEmpty()) {
+            return mimeTypes;
+        }
+        for (String mapping : entryMimeTypes.split(",")) {
+            int separator = mapping.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException(String.format(
+                        "the mapping %s is not of the form glob=mime-type",
+                        mapping));
+            }
+            mimeTypes.put(FileSystems.getDefault().getPathMatcher("glob:"
+                    + mapping.substring(0, separator).trim()), mapping
+                    .substring(separator + 1).trim());
+        }
+        return mimeTypes;
+    }
+
+    /**
+     * tells, if the given file is an archive, that this importer can import.
+     *
+     * @param file the file to check.
+     * @return true, if the file is a .gz or a .zip file.
+     */
+    static boolean isArchive(FileSnapshot file) {
+        String name = file.getName().toLowerCase(Locale.ENGLISH);
+        return name.endsWith(GZIP_SUFFIX) || name.endsWith(ZIP_SUFFIX);
+    }
+
+    /**
+     * returns the mime-type of the entry with the given name.
+     *
+     * @param entryName the name of the entry.
+     * @return the mapped mime-type or the mime-type of the spec.
+     */
+    String getMimeType(String entryName) {
+        Path fileName = Paths.get(entryName).getFileName();
+        for (Map.Entry<PathMatcher, String> mapping : entryMimeTypes
+                .entrySet()) {
+            if (fileName != null && mapping.getKey().matches(fileName)) {
+                return mapping.getValue();
+            }
+        }
+        return mimeType;
+    }
+
+    /**
+     * imports the files contained in the given archive and returns, when all
+     * of them are imported.
+     *
+     * @param file the archive
+     * @param listener the listener to report the progress to
+     * @param accumulator the accumulator of the import to create an
+     * accumulator per thread from or null, if the progress is not collected.
+     * @throws IOException if the archive cannot be read or a contained file
+     * cannot be imported.
+     */
+    void process(final FileSnapshot file,
+            ImportStatusListener<Object> listener,
+            ProgressAccumulator accumulator) throws IOException {
+        if (file.getName().toLowerCase(Locale.ENGLISH).endsWith(
+                GZIP_SUFFIX)) {
+            String name = file.getName().substring(0, file.getName().length()
+                    - GZIP_SUFFIX.length());
+            try (StreamImportSource source = new StreamImportSource(name, -1l) {
+                @Override
+                protected InputStream openStream() throws IOException {
+                    return new GZIPInputStream(Files.newInputStream(file
+                            .getPath()), BUFFER_SIZE);
+                }
+            }) {
+                processSource(mimeType, source, accumulator == null ? listener
+                        : accumulator);
+            }
+        } else {
+            try (ZipFile zipFile = new ZipFile(file.getFile())) {
+                processEntries(zipFile, listener, accumulator);
+            }
+        }
+    }
+
+    private void processSource(String sourceMimeType,
+            StreamImportSource source, ImportStatusListener<Object> listener)
+            throws IOException {
+        ImportSourceProcessor processor = processors.getSourceProcessor(
+                sourceMimeType);
+        if (processor == null) {
+            LOG.log(Level.WARNING,
+                    "No Processor registered to process the entry: {1} with mimetype: {0}",
+                    new Object[]{sourceMimeType, source.getName()});
+            return;
+        }
+        processor.processSource(sourceMimeType, source, listener);
+    }
+
+    private void processEntries(ZipFile zipFile,
+            ImportStatusListener<Object> listener,
+            ProgressAccumulator accumulator) throws IOException {
+        List<ZipEntry> entries = new ArrayList<>();
+        for (Enumeration<? extends ZipEntry> it = zipFile.entries(); it
+                .hasMoreElements();) {
+            ZipEntry entry = it.nextElement();
+            if (!entry.isDirectory()) {
+                entries.add(entry);
+            }
+        }
+        LOG.log(Level.INFO, "importing {0} entries of archive: {1}",
+                new Object[]{entries.size(), zipFile.getName()});
+        EntryWork work = new EntryWork(zipFile, entries, listener,
+                accumulator);
+        int helpers = workManager == null ? 0 : Math.min(parallelism, entries
+                .size()) - 1;
+        for (int i = 0; i < helpers; i++) {
+            try {
+                workManager.scheduleWork(work);
+            } catch (WorkException ex) {
+                LOG.log(Level.FINE, "cannot schedule a helper: {0}", ex
+                        .getMessage());
+                break;
+            }
+        }
+        work.run();
+        try {
+            work.done.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format(
+                    "interrupted while importing the entries of %s", zipFile
+                    .getName()));
+        }
+        Throwable failure = work.failure.get();
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    /**
+     * drains the entries of one zip file. The same work is run by all the
+     * threads of the zip file. The entries are independent imports, so a
+     * failing entry does not stop the others.
+     */
+    private class EntryWork implements Work {
+
+        private final ZipFile zipFile;
+        private final ImportStatusListener<Object> listener;
+        private final ProgressAccumulator accumulator;
+        private final Queue<ZipEntry> entries;
+        private final CountDownLatch done;
+        private final AtomicReference<Throwable> failure =
+                new AtomicReference<>();
+
+        EntryWork(ZipFile zipFile, List<ZipEntry> entries,
+                ImportStatusListener<Object> listener,
+                ProgressAccumulator accumulator) {
+            this.zipFile = zipFile;
+            this.listener = listener;
+            this.accumulator = accumulator;
+            this.entries = new ConcurrentLinkedQueue<>(entries);
+            this.done = new CountDownLatch(entries.size());
+        }
+
+        @Override
+        public void release() {
+        }
+
+        @Override
+        public void run() {
+            ProgressAccumulator threadAccumulator = accumulator == null ? null
+                    : accumulator.newAccumulator();
+            ZipEntry entry;
+            while ((entry = entries.poll()) != null) {
+                final ZipEntry zipEntry = entry;
+                try (StreamImportSource source = new StreamImportSource(
+                        zipEntry.getName(), zipEntry.getSize()) {
+                    @Override
+                    protected InputStream openStream() throws IOException {
+                        return new BufferedInputStream(zipFile.getInputStream(
+                                zipEntry), BUFFER_SIZE);
+                    }
+                }) {
+                    processSource(getMimeType(zipEntry.getName()), source,
+                            threadAccumulator == null ? listener
+                            : threadAccumulator);
+                    if (threadAccumulator != null) {
+                        threadAccumulator.flush();
+                    }
+                } catch (Throwable t) {
+                    LOG.log(Level.SEVERE, String.format(
+                            "cannot import the entry %s of %s: %s", zipEntry
+                            .getName(), zipFile.getName(), t.getMessage()), t);
+                    failure.compareAndSet(null, t);
+                } finally {
+                    done.countDown();
+                }
+            }
+        }
+    }
+}
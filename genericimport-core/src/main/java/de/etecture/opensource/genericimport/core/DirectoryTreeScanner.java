@@ -0,0 +1,374 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkManager;
+
+/**
+ * scans a directory tree for new files.
+ * <p>
+ * the directories are put into a queue, that is drained by the scanning thread
+ * and by up to parallelism - 1 helper works of the {@link WorkManager}, so the
+ * subtrees are listed in parallel. The helpers are scheduled, when the first
+ * subdirectory is found, so the scan of a flat directory needs no helper. The
+ * new files are collected by the scanning thread only, so they are dispatched
+ * in the order of the scan window of the {@link FileAgentWork}.
+ * <p>
+ * the paths relative to the root are matched against the include and exclude
+ * globs. A file is collected, if it matches an include glob (or no include
+ * globs are given) and no exclude glob. A directory, that matches an exclude
+ * glob, is not scanned at all.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class DirectoryTreeScanner {
+
+    private static final Logger LOG = Logger.getLogger(
+            DirectoryTreeScanner.class.getName());
+    private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(1l);
+    private final WorkManager workManager;
+    private final int parallelism;
+    private final int maxDepth;
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    private final Set<Path> excludedDirectories = new HashSet<>();
+
+    /**
+     * collects the new files found by a scan.
+     */
+    interface Collector {
+
+        /**
+         * called by the scanning thread for each new file.
+         *
+         * @param file the new file.
+         * @return false, to stop the scan.
+         */
+        boolean collect(FileSnapshot file);
+    }
+
+    /**
+     * constructs a new scanner.
+     *
+     * @param workManager the work manager to schedule the helpers with or null
+     * to scan the directories sequentially.
+     * @param parallelism the maximum number of threads that scan the tree. 0
+     * or less uses one thread per processor.
+     * @param maxDepth the maximum depth of the scanned subdirectories below the
+     * root. 0 or less scans the whole tree.
+     * @param includeGlobs comma separated globs of the files to collect or
+     * null to collect all the files.
+     * @param excludeGlobs comma separated globs of the files and directories
+     * to skip or null.
+     * @param excludedDirectories directories, that are not scanned, e.g. the
+     * directories the imported files are moved to.
+     * @throws IllegalArgumentException if a glob is invalid.
+     */
+    DirectoryTreeScanner(WorkManager workManager, int parallelism,
+            int maxDepth, String includeGlobs, String excludeGlobs,
+            Collection<Path> excludedDirectories) {
+        this.workManager = workManager;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime
+                .getRuntime().availableProcessors();
+        this.maxDepth = maxDepth;
+        this.includes = parseGlobs(includeGlobs);
+        this.excludes = parseGlobs(excludeGlobs);
+        for (Path directory : excludedDirectories) {
+            this.excludedDirectories.add(directory.toAbsolutePath()
+                    .normalize());
+        }
+    }
+
+    /**
+     * parses comma separated globs.
+     *
+     * @param globs the globs or null.
+     * @return the matchers of the globs.
+     * @throws IllegalArgumentException if a glob is invalid.
+     */
+    static List<PathMatcher> parseGlobs(String globs) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        if (globs != null) {
+            for (String glob : globs.split(",")) {
+                if (!glob.trim().isEmpty()) {
+                    matchers.add(FileSystems.getDefault().getPathMatcher(
+                            "glob:" + glob.trim()));
+                }
+            }
+        }
+        return matchers;
+    }
+
+    private static boolean matches(List<PathMatcher> matchers, Path path) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * scans the tree below the root and returns, when all the directories are
+     * scanned or the collector stopped the scan.
+     *
+     * @param root the root of the tree.
+     * @param filter the filter of the new files.
+     * @param collector the collector of the new files.
+     * @return the number of collected files or -1, if the collector stopped
+     * the scan.
+     */
+    int scan(Path root, FileAgeFilter filter, Collector collector) {
+        return new TreeWork(root, filter, collector).scan();
+    }
+
+    /**
+     * a directory to scan.
+     */
+    private static class Directory {
+
+        private final Path path;
+        private final int depth;
+
+        Directory(Path path, int depth) {
+            this.path = path;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * drains the directories of one scan. The same work is run by all the
+     * threads of the scan.
+     */
+    private class TreeWork implements Work {
+
+        private final Path root;
+        private final FileAgeFilter filter;
+        private final Collector collector;
+        private final Thread scanner = Thread.currentThread();
+        private final Queue<Directory> directories =
+                new ConcurrentLinkedQueue<>();
+        private final Queue<FileSnapshot> found = new ConcurrentLinkedQueue<>();
+        // the directories, that are queued or being listed.
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean stopped = new AtomicBoolean();
+        private final AtomicBoolean helpersScheduled = new AtomicBoolean();
+        private int collected;
+
+        TreeWork(Path root, FileAgeFilter filter, Collector collector) {
+            this.root = root;
+            this.filter = filter;
+            this.collector = collector;
+            enqueue(root, 0);
+        }
+
+        private void enqueue(Path directory, int depth) {
+            pending.incrementAndGet();
+            directories.offer(new Directory(directory, depth));
+        }
+
+        @Override
+        public void release() {
+        }
+
+        @Override
+        public void run() {
+            while (pending.get() > 0) {
+                if (!listNext()) {
+                    LockSupport.parkNanos(IDLE_WAIT);
+                }
+            }
+        }
+
+        /**
+         * run by the scanning thread, that lists directories as well and
+         * collects the files found by all the threads.
+         */
+        int scan() {
+            boolean done;
+            do {
+                // all the files are found, before the last directory is done.
+                done = pending.get() == 0;
+                collect();
+                if (!done && !listNext()) {
+                    LockSupport.parkNanos(IDLE_WAIT);
+                }
+            } while (!done);
+            return stopped.get() ? -1 : collected;
+        }
+
+        private void collect() {
+            FileSnapshot file;
+            while ((file = found.poll()) != null) {
+                if (!stopped.get()) {
+                    collected++;
+                    if (!collector.collect(file)) {
+                        stopped.set(true);
+                    }
+                }
+            }
+        }
+
+        private boolean listNext() {
+            Directory directory = directories.poll();
+            if (directory == null) {
+                return false;
+            }
+            try {
+                if (!stopped.get()) {
+                    list(directory);
+                }
+            } finally {
+                pending.decrementAndGet();
+            }
+            return true;
+        }
+
+        private void scheduleHelpers() {
+            if (workManager == null || !helpersScheduled.compareAndSet(false,
+                    true)) {
+                return;
+            }
+            for (int i = 1; i < parallelism; i++) {
+                try {
+                    workManager.scheduleWork(this);
+                } catch (WorkException ex) {
+                    LOG.log(Level.FINE, "cannot schedule a helper: {0}", ex
+                            .getMessage());
+                    break;
+                }
+            }
+        }
+
+        private void list(final Directory directory) {
+            try {
+                Files.walkFileTree(directory.path, EnumSet.noneOf(
+                        FileVisitOption.class), 1,
+                        new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file,
+                            BasicFileAttributes attributes) {
+                        if (stopped.get()) {
+                            return FileVisitResult.TERMINATE;
+                        }
+                        Path relative = root.relativize(file);
+                        if (matches(excludes, relative)) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                        if (attributes.isDirectory()) {
+                            if ((maxDepth <= 0 || directory.depth < maxDepth)
+                                    && !excludedDirectories.contains(file
+                                    .toAbsolutePath().normalize())) {
+                                enqueue(file, directory.depth + 1);
+                                scheduleHelpers();
+                            }
+                        } else if (includes.isEmpty() || matches(includes,
+                                relative)) {
+                            FileSnapshot newFile = filter.snapshotIfNew(file,
+                                    attributes);
+                            if (newFile != null) {
+                                found.offer(newFile);
+                                if (Thread.currentThread() == scanner) {
+                                    collect();
+                                }
+                            }
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file,
+                            IOException ex) {
+                        if (file.equals(directory.path)) {
+                            logListingFailed(directory.path, ex);
+                        } else {
+                            // the file was removed in the meantime.
+                            LOG.log(Level.FINE, String.format(
+                                    "FileAgent cannot read the attributes of %s: ",
+                                    file), ex);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException ex) {
+                logListingFailed(directory.path, ex);
+            }
+        }
+
+        private void logListingFailed(Path directory, IOException ex) {
+            if (ex instanceof NoSuchFileException) {
+                LOG.log(directory.equals(root) ? Level.WARNING : Level.FINE,
+                        "FileAgent cannot find the directory: {0}", directory);
+            } else {
+                LOG.log(Level.SEVERE, String.format(
+                        "FileAgent cannot read the directory %s: ",
+                        directory), ex);
+            }
+        }
+    }
+}
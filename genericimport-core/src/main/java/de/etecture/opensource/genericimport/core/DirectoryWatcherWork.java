@@ -0,0 +1,210 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.resource.spi.work.Work;
+
+/**
+ * This class is a long running Work implementation that watches the import
+ * path of a {@link FileAgentWork} with a {@link WatchService}.
+ * <p>
+ * A file is handed over to the {@link FileAgentWork} as soon as it was created
+ * or modified and was not touched anymore for the settle time of the
+ * {@link GenericImportSpec}. If the watch service overflows, the whole
+ * directory is scanned again by the {@link FileAgentWork}.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class DirectoryWatcherWork implements Work {
+
+    private static final Logger LOG = Logger.getLogger(
+            DirectoryWatcherWork.class.getName());
+    /**
+     * the time in ms to wait for events, if there is no pending file.
+     */
+    private static final long IDLE_TIMEOUT = 1000l;
+    private final FileAgentWork agent;
+    private final long settleTime;
+    private volatile boolean released = false;
+    private volatile WatchService watchService;
+
+    DirectoryWatcherWork(FileAgentWork agent) {
+        this.agent = agent;
+        Long configuredSettleTime = agent.getImporterSpec()
+                .getWatchSettleTime();
+        this.settleTime = configuredSettleTime == null ? 0l
+                : Math.max(0l, configuredSettleTime);
+    }
+
+    /**
+     * returns the FileAgentWork that is informed about new files.
+     *
+     * @return
+     */
+    public FileAgentWork getFileAgent() {
+        return agent;
+    }
+
+    @Override
+    public void release() {
+        released = true;
+        WatchService ws = watchService;
+        if (ws != null) {
+            try {
+                ws.close();
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "cannot close the watch service: ", ex);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        Path directory = Paths.get(agent.getImporterSpec().getImportPath());
+        LOG.log(Level.INFO, "DirectoryWatcher now watching the directory {0}",
+                directory);
+        try (WatchService ws = FileSystems.getDefault().newWatchService()) {
+            this.watchService = ws;
+            if (released) {
+                return;
+            }
+            directory.register(ws, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            watch(ws, directory);
+        } catch (ClosedWatchServiceException ex) {
+            LOG.log(Level.FINE, "the watch service was closed.", ex);
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, String.format(
+                    "DirectoryWatcher cannot watch the directory %s: ",
+                    directory), ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.watchService = null;
+        }
+        LOG.log(Level.INFO, "DirectoryWatcher stopped watching the directory {0}",
+                directory);
+    }
+
+    private void watch(WatchService ws, Path directory) throws
+            InterruptedException {
+        // the files that still must settle, mapped to their settle deadline.
+        Map<Path, Long> pendingFiles = new HashMap<>();
+        while (!released) {
+            WatchKey key = ws.poll(nextTimeout(pendingFiles), TimeUnit.MILLISECONDS);
+            boolean overflow = false;
+            if (key != null) {
+                long deadline = System.currentTimeMillis() + settleTime;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    } else {
+                        pendingFiles.put(directory.resolve((Path) event
+                                .context()), deadline);
+                    }
+                }
+                if (!key.reset()) {
+                    LOG.log(Level.WARNING,
+                            "DirectoryWatcher cannot watch the directory {0} anymore.",
+                            directory);
+                    return;
+                }
+            }
+            if (overflow) {
+                LOG.log(Level.WARNING,
+                        "DirectoryWatcher lost events, so the directory {0} is scanned again.",
+                        directory);
+                pendingFiles.clear();
+                agent.run();
+            } else {
+                dispatchSettledFiles(pendingFiles);
+            }
+        }
+    }
+
+    private long nextTimeout(Map<Path, Long> pendingFiles) {
+        if (pendingFiles.isEmpty()) {
+            return IDLE_TIMEOUT;
+        }
+        long now = System.currentTimeMillis();
+        long timeout = IDLE_TIMEOUT;
+        for (Long deadline : pendingFiles.values()) {
+            timeout = Math.min(timeout, deadline - now);
+        }
+        return Math.max(0l, timeout);
+    }
+
+    private void dispatchSettledFiles(Map<Path, Long> pendingFiles) {
+        long now = System.currentTimeMillis();
+        for (Iterator<Entry<Path, Long>> it = pendingFiles.entrySet()
+                .iterator(); it.hasNext();) {
+            Entry<Path, Long> pendingFile = it.next();
+            if (pendingFile.getValue() <= now) {
+                it.remove();
+                agent.processNewFile(pendingFile.getKey());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("watching directory: %s for files of type: %s",
+                agent.getImporterSpec().getImportPath(), agent
+                .getImporterSpec().getMimeType());
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.api.BatchImportStatusListener;
+import de.etecture.opensource.genericimport.api.ImportStatusListener;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.resource.ResourceException;
+import javax.resource.spi.UnavailableException;
+import javax.resource.spi.endpoint.MessageEndpoint;
+
+/**
+ * the listener that is handed to the processors and delivers their callbacks
+ * to the endpoint of an {@link ImportEndpointSession}.
+ * <p>
+ * the callbacks are invoked directly on the listener interface of the
+ * endpoint, so a delivery neither needs reflection nor allocates an argument
+ * array. The {@link Method}s are only resolved once to tell the endpoint,
+ * which method is delivered by the next transaction.
+ * <p>
+ * the callbacks are synchronized, because an endpoint must not receive
+ * concurrent deliveries.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class EndpointImportStatusListener implements
+        BatchImportStatusListener<Object> {
+
+    private static final Logger LOG = Logger.getLogger(
+            EndpointImportStatusListener.class.getName());
+    static final Method ON_START = getListenerMethod(
+            ImportStatusListener.class, "onStart", String.class);
+    static final Method ON_FINISHED = getListenerMethod(
+            ImportStatusListener.class, "onFinished", String.class);
+    static final Method ON_PROGRESS = getListenerMethod(
+            ImportStatusListener.class, "onProgress", String.class,
+            Object.class);
+    static final Method ON_ERROR = getListenerMethod(
+            ImportStatusListener.class, "onError", String.class,
+            String.class, Object[].class);
+    static final Method ON_WARNING = getListenerMethod(
+            ImportStatusListener.class, "onWarning", String.class,
+            String.class, Object[].class);
+    static final Method ON_PROGRESS_BATCH = getListenerMethod(
+            BatchImportStatusListener.class, "onProgressBatch", String.class,
+            List.class);
+    private final ImportEndpointSession session;
+    private final ImportSpecMetrics metrics;
+    private volatile boolean errorReported;
+
+    EndpointImportStatusListener(ImportEndpointSession session) {
+        this(session, null);
+    }
+
+    EndpointImportStatusListener(ImportEndpointSession session,
+            ImportSpecMetrics metrics) {
+        this.session = session;
+        this.metrics = metrics;
+    }
+
+    private static Method getListenerMethod(Class<?> listenerClass,
+            String name, Class<?>... parameterTypes) {
+        try {
+            return listenerClass.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public synchronized void onStart(String importId) {
+        ImportStatusListener<Object> listener = begin(ON_START);
+        if (listener != null) {
+            try {
+                listener.onStart(importId);
+            } catch (RuntimeException | Error ex) {
+                session.close();
+                throw ex;
+            }
+            session.delivered();
+        }
+    }
+
+    @Override
+    public synchronized void onFinished(String importId) {
+        ImportStatusListener<Object> listener = begin(ON_FINISHED);
+        if (listener != null) {
+            try {
+                listener.onFinished(importId);
+            } finally {
+                // the import is finished, so the endpoint is not needed anymore.
+                session.close();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onProgress(String importId, Object payload) {
+        ImportStatusListener<Object> listener = begin(ON_PROGRESS);
+        if (listener != null) {
+            try {
+                listener.onProgress(importId, payload);
+            } catch (RuntimeException | Error ex) {
+                session.close();
+                throw ex;
+            }
+            session.delivered();
+            if (metrics != null) {
+                metrics.recordsDelivered(1);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onProgressBatch(String importId,
+            List<Object> payloads) {
+        MessageEndpoint endpoint = getEndpoint();
+        if (endpoint == null) {
+            return;
+        }
+        if (!(endpoint instanceof BatchImportStatusListener)) {
+            // the listener wants each piece on its own.
+            for (Object payload : payloads) {
+                onProgress(importId, payload);
+            }
+            return;
+        }
+        BatchImportStatusListener<Object> listener =
+                (BatchImportStatusListener<Object>) begin(ON_PROGRESS_BATCH);
+        if (listener != null) {
+            try {
+                listener.onProgressBatch(importId, payloads);
+            } catch (RuntimeException | Error ex) {
+                session.close();
+                throw ex;
+            }
+            session.delivered();
+            if (metrics != null) {
+                metrics.recordsDelivered(payloads.size());
+            }
+        }
+    }
+
+    /**
+     * checks, if the processor reported an error of the import.
+     *
+     * @return
+     */
+    boolean isErrorReported() {
+        return errorReported;
+    }
+
+    @Override
+    public synchronized void onError(String importId, String message,
+            Object... args) {
+        errorReported = true;
+        ImportStatusListener<Object> listener = begin(ON_ERROR);
+        if (listener != null) {
+            try {
+                listener.onError(importId, message, args);
+            } catch (RuntimeException | Error ex) {
+                session.close();
+                throw ex;
+            }
+            session.delivered();
+        }
+    }
+
+    @Override
+    public synchronized void onWarning(String importId, String message,
+            Object... args) {
+        ImportStatusListener<Object> listener = begin(ON_WARNING);
+        if (listener != null) {
+            try {
+                listener.onWarning(importId, message, args);
+            } catch (RuntimeException | Error ex) {
+                session.close();
+                throw ex;
+            }
+            session.delivered();
+        }
+    }
+
+    private MessageEndpoint getEndpoint() {
+        try {
+            return session.getEndpoint();
+        } catch (ResourceException e) {
+            logDeliveryFailure(e);
+            return null;
+        }
+    }
+
+    /**
+     * starts the delivery of a method.
+     *
+     * @return the endpoint as listener or null, if the endpoint is not
+     * available.
+     */
+    @SuppressWarnings("unchecked")
+    private ImportStatusListener<Object> begin(Method method) {
+        try {
+            return (ImportStatusListener<Object>) session.begin(method);
+        } catch (NoSuchMethodException e) {
+            LOG.log(Level.SEVERE,
+                    "ResourceAdapter cannot find a method:", e);
+            return null;
+        } catch (ResourceException e) {
+            logDeliveryFailure(e);
+            return null;
+        }
+    }
+
+    private static void logDeliveryFailure(ResourceException e) {
+        if (e instanceof UnavailableException) {
+            LOG.log(Level.SEVERE,
+                    "ResourceAdapter tried to send to a deactivated endpoint.",
+                    e);
+        } else {
+            LOG.log(Level.SEVERE,
+                    "ResourceAdapter cannot inform an ImportStatusListener:",
+                    e);
+        }
+    }
+}
@@ -39,24 +39,24 @@
  */
 package de.etecture.opensource.genericimport.core;
 
-import java.io.File;
 import java.io.Serializable;
 import java.util.Comparator;
 
 /**
- * compares the last modified timestamp of two files.
+ * compares the age of two files by the sort key of their snapshots.
  *
  * @author rhk
  * @version ${project.version}
  * @since 1.0.1
  * @see Comparator
+ * @see FileSnapshot#getSortKey()
  */
-class FileAgeComparator implements Comparator<File>, Serializable {
+class FileAgeComparator implements Comparator<FileSnapshot>, Serializable {
 
     private static final long serialVersionUID = 1l;
 
     @Override
-    public int compare(File f1, File f2) {
-        return Long.valueOf(f1.lastModified()).compareTo(f2.lastModified());
+    public int compare(FileSnapshot f1, FileSnapshot f2) {
+        return Long.compare(f1.getSortKey(), f2.getSortKey());
     }
 }
@@ -41,11 +41,34 @@ package de.etecture.opensource.genericimport.core;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 
 /**
  * filters file that matches the given pattern and was last modified after this
  * file filters remembered timestamp.
+ * <p>
+ * files that are dispatched between two resets (e.g. by a
+ * {@link DirectoryWatcherWork}) are remembered with their timestamp, so they
+ * are not accepted twice.
+ * <p>
+ * if an {@link ImportLedger} is given, the timestamp is not used at all.
+ * Instead each file is accepted, that is not yet known to the ledger.
+ * <p>
+ * if a timestamp group is given, the sort key of the accepted files is parsed
+ * from this group of the file name pattern instead of taken from the last
+ * modified timestamp.
  *
  * @author rhk
  * @version ${project.version}
@@ -53,27 +76,177 @@ import java.util.regex.Pattern;
  */
 class FileAgeFilter implements FileFilter {
 
+    private static final Logger LOG = Logger.getLogger(FileAgeFilter.class
+            .getName());
     private final Pattern fileNamePattern;
-    private long lastImportedTimestamp = 0;
+    private final String timestampGroup;
+    private final DateTimeFormatter timestampFormat;
+    private final ImportLedger ledger;
+    private final Map<Path, Long> dispatchedFiles = new ConcurrentHashMap<>();
+    private volatile long lastImportedTimestamp = 0;
 
     FileAgeFilter(String fileNamePattern) {
+        this(fileNamePattern, null, null, null);
+    }
+
+    FileAgeFilter(String fileNamePattern, String timestampGroup,
+            String timestampFormat, ImportLedger ledger) {
         this.fileNamePattern = Pattern.compile(fileNamePattern);
+        this.ledger = ledger;
+        if (timestampGroup == null || timestampGroup.isEmpty()) {
+            this.timestampGroup = null;
+            this.timestampFormat = null;
+        } else {
+            this.timestampGroup = timestampGroup;
+            this.timestampFormat = DateTimeFormat.forPattern(timestampFormat);
+        }
     }
 
     Pattern getFileNamePattern() {
         return fileNamePattern;
     }
 
+    ImportLedger getLedger() {
+        return ledger;
+    }
+
     @Override
     public boolean accept(File pathname) {
-        // check if the timestamp of the file is newer
-        return fileNamePattern.matcher(pathname.getName()).matches() && (pathname.lastModified() > lastImportedTimestamp);
+        try {
+            return snapshotIfNew(pathname.toPath()) != null;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * reads the attributes of the given file once and returns a snapshot, if
+     * the file is a new regular file that matches the pattern.
+     *
+     * @param path the file to check.
+     * @return the snapshot of the file or null, if the file is not accepted.
+     * @throws IOException if the attributes of the file cannot be read.
+     */
+    FileSnapshot snapshotIfNew(Path path) throws IOException {
+        Matcher matcher = fileNamePattern.matcher(path.getFileName()
+                .toString());
+        if (!matcher.matches()) {
+            return null;
+        }
+        return snapshotIfNew(path, Files.readAttributes(path,
+                BasicFileAttributes.class), matcher);
+    }
+
+    /**
+     * returns a snapshot of the given file with the attributes, that were
+     * read already, if the file is a new regular file that matches the
+     * pattern.
+     *
+     * @param path the file to check.
+     * @param attributes the attributes of the file.
+     * @return the snapshot of the file or null, if the file is not accepted.
+     */
+    FileSnapshot snapshotIfNew(Path path, BasicFileAttributes attributes) {
+        Matcher matcher = fileNamePattern.matcher(path.getFileName()
+                .toString());
+        if (!matcher.matches()) {
+            return null;
+        }
+        return snapshotIfNew(path, attributes, matcher);
+    }
+
+    private FileSnapshot snapshotIfNew(Path path,
+            BasicFileAttributes attributes, Matcher matcher) {
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+        FileSnapshot snapshot = new FileSnapshot(path, attributes);
+        if (!isNew(snapshot)) {
+            return null;
+        } else if (timestampGroup != null) {
+            return new FileSnapshot(path, attributes, getSortKey(matcher,
+                    snapshot.getLastModified()));
+        }
+        return snapshot;
+    }
+
+    private long getSortKey(Matcher matcher, long lastModified) {
+        try {
+            String timestamp = timestampGroup.matches("\\d+") ? matcher
+                    .group(Integer.parseInt(timestampGroup)) : matcher.group(
+                    timestampGroup);
+            if (timestamp != null) {
+                return timestampFormat.parseMillis(timestamp);
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            LOG.log(Level.FINE, String.format(
+                    "cannot parse the timestamp of %s, use the last modified timestamp instead.",
+                    matcher.group()), ex);
+        }
+        return lastModified;
+    }
+
+    private boolean isNew(FileSnapshot file) {
+        if (ledger != null) {
+            return ledger.isNew(file);
+        }
+        if (file.getLastModified() <= lastImportedTimestamp) {
+            return false;
+        }
+        Long dispatched = dispatchedFiles.get(file.getPath().toAbsolutePath());
+        return dispatched == null || dispatched != file.getLastModified();
+    }
+
+    /**
+     * remembers the given file as dispatched, so it will not be accepted again
+     * until it is modified.
+     *
+     * @param file the file that is about to be dispatched.
+     * @return false, if the file was already dispatched with the same
+     * timestamp.
+     */
+    boolean markDispatched(FileSnapshot file) {
+        if (ledger != null) {
+            try {
+                return ledger.markDiscovered(file);
+            } catch (IOException ex) {
+                LOG.log(Level.SEVERE, String.format(
+                        "cannot write the file %s to the ledger: ", file), ex);
+                return true;
+            }
+        }
+        Long previous = dispatchedFiles.put(file.getPath().toAbsolutePath(),
+                file.getLastModified());
+        return previous == null || previous != file.getLastModified();
     }
 
     /**
      * resets this FileFilter to the current time.
      */
     public void reset() {
-        this.lastImportedTimestamp = System.currentTimeMillis();
+        reset(System.currentTimeMillis());
+    }
+
+    /**
+     * resets this FileFilter to the given time.
+     * <p>
+     * N.B. this should be the time when the last scan was started, so files
+     * that are written while scanning are not skipped.
+     *
+     * @param timestamp the time of the last scan.
+     */
+    void reset(long timestamp) {
+        if (ledger != null) {
+            // the ledger knows the files already.
+            return;
+        }
+        this.lastImportedTimestamp = timestamp;
+        // the timestamp now covers the files dispatched so far.
+        for (Iterator<Long> it = dispatchedFiles.values().iterator(); it
+                .hasNext();) {
+            if (it.next() <= lastImportedTimestamp) {
+                it.remove();
+            }
+        }
     }
 }
@@ -39,7 +39,6 @@
  */
 package de.etecture.opensource.genericimport.core;
 
-import java.io.File;
 import javax.resource.spi.endpoint.MessageEndpointFactory;
 
 /**
@@ -57,12 +56,21 @@ public interface FileAgentCallback {
     /**
      * called by the fileagent to process the file.
      *
-     * @param file the file to be processed.
+     * @param file the snapshot of the file to be processed.
      * @param endpointFactory the endpoint factory for which the file should be
      * processed.
      * @param spec the Importer Specification for which this file should be
      * processed.
      */
     void onNewImportFile(GenericImportSpec spec,
-            MessageEndpointFactory endpointFactory, File file);
+            MessageEndpointFactory endpointFactory, FileSnapshot file);
+
+    /**
+     * called by the fileagent before a file is processed, to check if the
+     * connector can take more files.
+     *
+     * @param spec the Importer Specification to check.
+     * @return true, if the fileagent should stop scanning until it is resumed.
+     */
+    boolean isSaturated(GenericImportSpec spec);
 }
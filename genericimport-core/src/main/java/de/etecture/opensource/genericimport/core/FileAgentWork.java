@@ -39,13 +39,22 @@
  */
 package de.etecture.opensource.genericimport.core;
 
-import java.io.File;
-import java.util.Arrays;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.resource.spi.endpoint.MessageEndpointFactory;
 import javax.resource.spi.work.Work;
-import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkManager;
 
 /**
  * This class is a Work implementation that is responsible to watch the
@@ -54,6 +63,27 @@ import javax.resource.spi.work.WorkException;
  * <p>
  * If new import files were found, the given {@link FileAgentCallback} is
  * called.
+ * <p>
+ * The attributes of each file are read once into a {@link FileSnapshot}, that
+ * is used to filter, to sort and to import the file. If the
+ * {@link GenericImportSpec} defines a scan window, the oldest files of a
+ * bounded window are dispatched while the directory is still read, so the
+ * memory needed does not depend on the size of the directory.
+ * <p>
+ * If the callback is saturated, the scan stops without dispatching the
+ * remaining files, so they are found again by the next scan.
+ * <p>
+ * If the spec scans recursively, the subdirectories are scanned in parallel by
+ * a {@link DirectoryTreeScanner}, whose new files are dispatched through the
+ * same scan window. The directories of the imported and the failed files are
+ * not scanned.
+ * <p>
+ * If several nodes share the import path, each scan first takes over the
+ * {@link FileClaims} of the nodes, whose lease expired.
+ * <p>
+ * Only one scan of the directory runs at a time. If the work is started while
+ * a scan is running, the start is skipped and merged into one follow-up scan,
+ * that is run by the running scan after it is done.
  *
  * @author rhk
  * @since 1.1.1
@@ -67,20 +97,119 @@ public class FileAgentWork implements Work {
     private final GenericImportSpec spec;
     private final FileAgentCallback callback;
     private final MessageEndpointFactory endpointFactory;
+    private final AdaptivePollInterval pollInterval;
+    private final ImportSpecContext context;
+    private final ImportSpecMetrics metrics;
+    private final DirectoryTreeScanner treeScanner;
+    private final FileClaims claims;
+    private volatile long waitingFile;
+    private final AtomicBoolean scanning = new AtomicBoolean();
+    private final AtomicBoolean followUp = new AtomicBoolean();
+    private final AtomicLong skippedScanCount = new AtomicLong();
 
     FileAgentWork(GenericImportSpec spec,
             MessageEndpointFactory endpointFactory,
             FileAgentCallback callback) {
+        this(spec, endpointFactory, callback, null, new ImportSpecContext(
+                spec));
+    }
+
+    /**
+     * constructs the agent of a spec.
+     *
+     * @param spec
+     * @param endpointFactory
+     * @param callback the callback to dispatch the new files to.
+     * @param workManager the work manager to scan the subdirectories in
+     * parallel with or null, to scan them on the thread of the agent.
+     * @param context the resources of the spec.
+     */
+    FileAgentWork(GenericImportSpec spec,
+            MessageEndpointFactory endpointFactory,
+            FileAgentCallback callback, WorkManager workManager,
+            ImportSpecContext context) {
         this.spec = spec;
+        this.context = context;
+        this.claims = context.getClaims();
+        this.metrics = context.getMetrics();
+        ImportFileDisposition disposition = context.getDisposition();
+        if (Boolean.TRUE.equals(spec.getRecursiveScan())) {
+            List<Path> excludedDirectories = new ArrayList<>();
+            if (disposition != null) {
+                excludedDirectories.add(disposition.getDonePath());
+                excludedDirectories.add(disposition.getErrorPath());
+            }
+            if (claims != null) {
+                excludedDirectories.add(claims.getClaimPath());
+            }
+            this.treeScanner = new DirectoryTreeScanner(workManager,
+                    spec.getScanParallelism() == null ? 0 : spec
+                    .getScanParallelism(), spec.getMaxScanDepth() == null ? 0
+                    : spec.getMaxScanDepth(), spec.getIncludeGlobs(), spec
+                    .getExcludeGlobs(), excludedDirectories);
+        } else {
+            this.treeScanner = null;
+        }
         this.endpointFactory = endpointFactory;
-        this.fileFilter = new FileAgeFilter(spec.getImportFilePattern());
+        this.fileFilter = new FileAgeFilter(spec.getImportFilePattern(),
+                spec.getImportFileTimestampGroup(), spec
+                .getImportFileTimestampFormat(), context.getLedger());
         this.callback = callback;
+        if (Boolean.TRUE.equals(spec.getAdaptivePolling())) {
+            this.pollInterval = new AdaptivePollInterval(
+                    spec.getMinPollInterval() == null ? 1000l : spec
+                    .getMinPollInterval(),
+                    spec.getMaxPollInterval() == null ? 300000l : spec
+                    .getMaxPollInterval());
+        } else {
+            this.pollInterval = null;
+        }
+        this.metrics.setAgent(this);
     }
 
     FileAgeFilter getFileFilter() {
         return fileFilter;
     }
 
+    /**
+     * returns the resources of the spec, that are shared with its imports.
+     *
+     * @return
+     */
+    ImportSpecContext getContext() {
+        return context;
+    }
+
+    /**
+     * returns the metrics of the imports of the spec.
+     *
+     * @return the metrics
+     */
+    ImportSpecMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * returns the interval between two scans, if the spec adapts it to the
+     * arrival of the files.
+     *
+     * @return the interval or null, if the scans are scheduled by the schedule
+     * expression only.
+     */
+    AdaptivePollInterval getPollInterval() {
+        return pollInterval;
+    }
+
+    /**
+     * returns the number of starts, that were skipped because a scan was
+     * running.
+     *
+     * @return the number of skipped starts.
+     */
+    public long getSkippedScanCount() {
+        return skippedScanCount.get();
+    }
+
     /**
      * returns the ImporterSpec with wich this agent was created.
      *
@@ -105,61 +234,197 @@ public class FileAgentWork implements Work {
 
     @Override
     public void run() {
+        if (!scanning.compareAndSet(false, true)) {
+            // the running scan does the follow-up scan.
+            skippedScanCount.incrementAndGet();
+            followUp.set(true);
+            LOG.log(Level.FINE,
+                    "FileAgent is already examining the directory {0}...",
+                    spec.getImportPath());
+            return;
+        }
+        do {
+            try {
+                do {
+                    followUp.set(false);
+                    if (!scan()) {
+                        // the resume work starts the next scan.
+                        followUp.set(false);
+                    }
+                } while (followUp.get());
+            } finally {
+                scanning.set(false);
+            }
+            // a start may have been skipped after the last check.
+        } while (followUp.get() && scanning.compareAndSet(false, true));
+    }
+
+    /**
+     * scans the directory once.
+     *
+     * @return false, if the scan was suspended.
+     */
+    private boolean scan() {
         LOG.log(Level.INFO,
                 "FileAgent now starting examining the directory {0} for new files ...",
                 spec.getImportPath());
-        try {
-            // check, if there is a new import-file at the specified location
-            File[] newFiles = getNewFiles();
-            if (newFiles != null && newFiles.length > 0) {
-                processNewFiles(newFiles);
-            } else {
-                LOG.info("FileAgent did not yet find any new files...");
-            }
-        } catch (WorkException ex) {
-            LOG.log(Level.SEVERE,
-                    "FileAgent found an error while checking for new files: ",
-                    ex);
+        long scanStarted = System.currentTimeMillis();
+        if (claims != null) {
+            // the files of crashed nodes are found by this scan.
+            claims.takeOverExpired();
+        }
+        // check, if there is a new import-file at the specified location
+        int newFileCount = processNewFiles(getScanWindowSize());
+        metrics.scanned(System.currentTimeMillis() - scanStarted,
+                newFileCount < 0 ? waitingFile : 0l);
+        if (pollInterval != null && newFileCount >= 0) {
+            // a suspended scan found more files than can be dispatched, so it
+            // must not lengthen the interval.
+            pollInterval.onScan(newFileCount);
+        }
+        if (newFileCount < 0) {
+            // the files that were not dispatched are found by the next scan.
+            LOG.info("FileAgent suspended examining, too many imports pending...");
+            return false;
         }
         // set the timestamp...
-        this.fileFilter.reset();
+        this.fileFilter.reset(scanStarted);
         LOG.info("FileAgent done examining...");
+        return true;
+    }
+
+    private int getScanWindowSize() {
+        Integer windowSize = spec.getScanWindowSize();
+        return windowSize == null ? 0 : windowSize;
     }
 
     /**
-     * request an array of files. The files are filtered so that only files
-     * newer then the last imort are returned.
+     * streams the directory and dispatches the new files oldest first. The
+     * files are filtered so that only files newer then the last import are
+     * dispatched.
+     * <p>
+     * if a window size is given, the oldest file is dispatched as soon as more
+     * files than the window size are held back. Otherwise all the new files
+     * are sorted before the first one is dispatched.
+     * <p>
+     * if the callback is saturated, the scan is stopped.
      *
-     * @return an array of files.
+     * @param windowSize the maximum number of files held back or 0.
+     * @return the number of new files found or -1, if the scan was stopped.
      */
-    private File[] getNewFiles() {
-        File path = new File(spec.getImportPath());
-        return path.listFiles(fileFilter);
+    private int processNewFiles(final int windowSize) {
+        Path path = Paths.get(spec.getImportPath());
+        final PriorityQueue<FileSnapshot> window = new PriorityQueue<>(
+                windowSize > 0 ? windowSize + 1 : 64, new FileAgeComparator());
+        int newFileCount = 0;
+        if (treeScanner != null) {
+            newFileCount = treeScanner.scan(path, fileFilter,
+                    new DirectoryTreeScanner.Collector() {
+                @Override
+                public boolean collect(FileSnapshot newFile) {
+                    return offer(window, windowSize, newFile);
+                }
+            });
+            if (newFileCount < 0) {
+                return -1;
+            }
+        } else {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(
+                    path)) {
+                for (Path entry : entries) {
+                    FileSnapshot newFile = getNewFile(entry);
+                    if (newFile != null) {
+                        newFileCount++;
+                        if (!offer(window, windowSize, newFile)) {
+                            return -1;
+                        }
+                    }
+                }
+            } catch (NoSuchFileException ex) {
+                LOG.log(Level.WARNING,
+                        "FileAgent cannot find the directory: {0}", path);
+            } catch (IOException ex) {
+                LOG.log(Level.SEVERE, String.format(
+                        "FileAgent cannot read the directory %s: ", path), ex);
+            }
+        }
+        if (newFileCount > 0) {
+            LOG.log(Level.INFO, "FileAgent found {0} new files...",
+                    newFileCount);
+        } else {
+            LOG.info("FileAgent did not yet find any new files...");
+        }
+        // and process each file...
+        while (!window.isEmpty()) {
+            if (!dispatch(window.poll())) {
+                return -1;
+            }
+        }
+        return newFileCount;
     }
 
     /**
-     * processes each of the new files.
+     * puts the new file into the window and dispatches the oldest file, if the
+     * window is full.
      *
-     * @param newFiles the array of files to be processed.
-     * @throws WorkException if the workmanager cannot handle works.
+     * @return false, if the callback is saturated.
      */
-    private void processNewFiles(File[] newFiles) throws WorkException {
-        LOG.log(Level.INFO, "FileAgent found {0} new files...",
-                newFiles.length);
-        sortFileArrayByAge(newFiles);
-        // and process each file...
-        for (File newFile : newFiles) {
-            callback.onNewImportFile(spec, endpointFactory, newFile);
+    private boolean offer(PriorityQueue<FileSnapshot> window, int windowSize,
+            FileSnapshot newFile) {
+        window.offer(newFile);
+        return !(windowSize > 0 && window.size() > windowSize
+                && !dispatch(window.poll()));
+    }
+
+    /**
+     * returns the snapshot of the given file, if it is a new file.
+     *
+     * @param path the file to check.
+     * @return the snapshot or null, if the file is not new.
+     */
+    private FileSnapshot getNewFile(Path path) {
+        try {
+            return fileFilter.snapshotIfNew(path);
+        } catch (IOException ex) {
+            // the file was removed in the meantime.
+            LOG.log(Level.FINE, String.format(
+                    "FileAgent cannot read the attributes of %s: ", path), ex);
+            return null;
         }
     }
 
     /**
-     * sorts the files in the given array by it's age.
+     * processes a single file, that was reported by a
+     * {@link DirectoryWatcherWork}.
      *
-     * @param newFiles the array of files to be sorted.
+     * @param file the file to be processed.
      */
-    private void sortFileArrayByAge(File[] newFiles) {
-        Arrays.sort(newFiles, new FileAgeComparator());
+    void processNewFile(Path file) {
+        FileSnapshot newFile = getNewFile(file);
+        if (newFile != null) {
+            LOG.log(Level.INFO, "FileAgent got notified about new file: {0}",
+                    newFile.getName());
+            dispatch(newFile);
+        }
+    }
+
+    /**
+     * dispatches the file to the callback, if it was not dispatched yet.
+     *
+     * @param newFile the file to dispatch
+     * @return false, if the callback is saturated and the file was not
+     * dispatched.
+     */
+    private boolean dispatch(FileSnapshot newFile) {
+        if (callback.isSaturated(spec)) {
+            waitingFile = newFile.getLastModified();
+            return false;
+        }
+        if (fileFilter.markDispatched(newFile)) {
+            metrics.fileDiscovered(newFile);
+            callback.onNewImportFile(spec, endpointFactory, newFile);
+        }
+        return true;
     }
 
     @Override
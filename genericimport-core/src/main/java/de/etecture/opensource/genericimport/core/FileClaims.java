@@ -0,0 +1,408 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkManager;
+
+/**
+ * claims the files of an import path, that is shared by several nodes, so
+ * each file is imported by exactly one node.
+ * <p>
+ * a node claims a file by renaming it atomically into its own directory below
+ * the claim path. Only one node can rename the file, the others find it gone.
+ * The claimed file keeps its path relative to the import path, and it is
+ * removed from the claim directory by the {@link ImportFileDisposition}.
+ * <p>
+ * each node renews a lease file in its claim directory periodically. If the
+ * lease of a node is older than the lease timeout, the node is considered
+ * crashed, and another node moves its claimed files back into the import path,
+ * so they are claimed again. The files are touched, so they are found as new
+ * files. A file, whose import was interrupted by the crash, is imported again.
+ * <p>
+ * the claim path must be on the file system of the import path, as the files
+ * are claimed by an atomic rename.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class FileClaims {
+
+    private static final Logger LOG = Logger.getLogger(FileClaims.class
+            .getName());
+    static final String CLAIM_DIRECTORY = ".claims";
+    static final String LEASE_FILE = ".lease";
+    private final Path importPath;
+    private final Path claimPath;
+    private final String nodeId;
+    private final Path nodePath;
+    private final Path leaseFile;
+    private final long leaseTimeout;
+    private volatile long lastRenewed;
+    private volatile boolean beating;
+    private volatile TimingWheel.Timeout heartbeat;
+
+    /**
+     * constructs new claims.
+     *
+     * @param importPath the import path, that is shared by the nodes.
+     * @param claimPath the directory of the claim directories of the nodes.
+     * @param nodeId the id of this node, that is unique among the nodes.
+     * @param leaseTimeout the time in ms, after which the claims of a node,
+     * that did not renew its lease, are taken over.
+     */
+    FileClaims(Path importPath, Path claimPath, String nodeId,
+            long leaseTimeout) {
+        // the claimed files are relativized against the import path.
+        this.importPath = importPath.toAbsolutePath().normalize();
+        this.claimPath = claimPath.toAbsolutePath().normalize();
+        this.nodeId = nodeId;
+        this.nodePath = this.claimPath.resolve(nodeId);
+        this.leaseFile = nodePath.resolve(LEASE_FILE);
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    /**
+     * opens the claims of the given spec.
+     *
+     * @param spec
+     * @return the claims or null, if the spec does not claim its files.
+     * @throws IOException if the claim directory cannot be created.
+     */
+    static FileClaims open(GenericImportSpec spec) throws IOException {
+        if (!Boolean.TRUE.equals(spec.getClaimFiles())) {
+            return null;
+        }
+        Path importPath = Paths.get(spec.getImportPath());
+        FileClaims claims = new FileClaims(importPath,
+                spec.getClaimPath() == null || spec.getClaimPath().isEmpty()
+                ? importPath.resolve(CLAIM_DIRECTORY) : Paths.get(spec
+                .getClaimPath()), spec.getNodeId() == null || spec
+                .getNodeId().isEmpty() ? createNodeId() : spec.getNodeId(),
+                spec.getLeaseTimeout() == null ? 60000l : spec
+                .getLeaseTimeout());
+        claims.open();
+        return claims;
+    }
+
+    /**
+     * creates a node id from the name of the JVM and a random part, so
+     * several connectors of one JVM get different ids.
+     *
+     * @return
+     */
+    static String createNodeId() {
+        return String.format("%s-%s", ManagementFactory.getRuntimeMXBean()
+                .getName(), UUID.randomUUID().toString().substring(0, 8))
+                .replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * creates the claim directory of this node and renews its lease. The
+     * files, that this node claimed before a restart, are moved back.
+     *
+     * @throws IOException if the claim directory cannot be created.
+     */
+    void open() throws IOException {
+        Files.createDirectories(nodePath);
+        renew();
+        int released = moveBack(nodePath, false);
+        if (released > 0) {
+            LOG.log(Level.INFO,
+                    "released {0} files claimed by the node {1} before a restart",
+                    new Object[]{released, nodeId});
+        }
+    }
+
+    Path getClaimPath() {
+        return claimPath;
+    }
+
+    Path getNodePath() {
+        return nodePath;
+    }
+
+    String getNodeId() {
+        return nodeId;
+    }
+
+    long getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    /**
+     * renews the lease of this node.
+     *
+     * @throws IOException if the lease file cannot be written.
+     */
+    void renew() throws IOException {
+        long now = System.currentTimeMillis();
+        try {
+            Files.createFile(leaseFile);
+        } catch (FileAlreadyExistsException ex) {
+            // just touch it.
+        } catch (NoSuchFileException ex) {
+            // the directory was removed, e.g. after the lease expired.
+            Files.createDirectories(nodePath);
+            Files.createFile(leaseFile);
+        }
+        Files.setLastModifiedTime(leaseFile, FileTime.fromMillis(now));
+        lastRenewed = now;
+    }
+
+    /**
+     * claims the file for this node.
+     *
+     * @param file the file in the import path.
+     * @return the snapshot of the claimed file or null, if another node
+     * claimed the file.
+     * @throws IOException if the file cannot be claimed.
+     */
+    FileSnapshot claim(FileSnapshot file) throws IOException {
+        if (System.currentTimeMillis() - lastRenewed > leaseTimeout / 2) {
+            // the heartbeat is late, so the lease is renewed first.
+            LOG.log(Level.WARNING,
+                    "the lease of the node {0} was not renewed in time.",
+                    nodeId);
+            renew();
+        }
+        Path target = nodePath.resolve(importPath.relativize(file.getPath()
+                .toAbsolutePath().normalize()).toString());
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(file.getPath(), target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException ex) {
+            // another node was faster.
+            return null;
+        } catch (AtomicMoveNotSupportedException ex) {
+            throw new IOException(String.format(
+                    "cannot claim the file %s, the claim path %s is on another file system.",
+                    file.getPath(), claimPath), ex);
+        }
+        return FileSnapshot.of(target);
+    }
+
+    /**
+     * moves the claimed files of the nodes, whose lease expired, back into
+     * the import path.
+     *
+     * @return the number of files, that were taken over.
+     */
+    int takeOverExpired() {
+        int takenOver = 0;
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> nodes = Files.newDirectoryStream(
+                claimPath)) {
+            for (Path node : nodes) {
+                if (node.equals(nodePath) || !Files.isDirectory(node)) {
+                    continue;
+                }
+                Path lease = node.resolve(LEASE_FILE);
+                long renewed;
+                try {
+                    renewed = Files.getLastModifiedTime(lease).toMillis();
+                } catch (NoSuchFileException ex) {
+                    // the lease is not written yet or removed.
+                    renewed = Files.getLastModifiedTime(node).toMillis();
+                }
+                if (now - renewed > leaseTimeout) {
+                    int moved = moveBack(node, true);
+                    takenOver += moved;
+                    LOG.log(Level.INFO,
+                            "took over {0} files of the node {1}, whose lease expired {2} ms ago.",
+                            new Object[]{moved, node.getFileName(),
+                        now - renewed - leaseTimeout});
+                }
+            }
+        } catch (NoSuchFileException ex) {
+            LOG.log(Level.FINE, "no claims yet in: {0}", claimPath);
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, String.format(
+                    "cannot take over the expired claims in %s: ", claimPath),
+                    ex);
+        }
+        return takenOver;
+    }
+
+    /**
+     * moves the files of the claim directory back into the import path.
+     *
+     * @param node the claim directory of a node.
+     * @param remove true, to remove the claim directory.
+     * @return the number of files, that were moved.
+     */
+    private int moveBack(final Path node, final boolean remove) throws
+            IOException {
+        final AtomicInteger moved = new AtomicInteger();
+        final long now = System.currentTimeMillis();
+        Files.walkFileTree(node, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file,
+                    BasicFileAttributes attributes) throws IOException {
+                if (file.getParent().equals(node) && file.getFileName()
+                        .toString().equals(LEASE_FILE)) {
+                    if (remove) {
+                        Files.deleteIfExists(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+                Path target = importPath.resolve(node.relativize(file)
+                        .toString());
+                try {
+                    // touched, so the file is new for the filters.
+                    Files.setLastModifiedTime(file, FileTime.fromMillis(now));
+                    Files.createDirectories(target.getParent());
+                    Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+                    moved.incrementAndGet();
+                } catch (NoSuchFileException ex) {
+                    // another node took it over or it was disposed.
+                    LOG.log(Level.FINE, "the claimed file is gone: {0}",
+                            file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                LOG.log(Level.FINE, "the claimed file is gone: {0}", file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory,
+                    IOException ex) {
+                if (remove || !directory.equals(node)) {
+                    try {
+                        Files.deleteIfExists(directory);
+                    } catch (IOException notEmpty) {
+                        // a file was claimed in the meantime.
+                        LOG.log(Level.FINE, "cannot remove: {0}", directory);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return moved.get();
+    }
+
+    /**
+     * renews the lease periodically, until the heartbeat is stopped. The lease
+     * is renewed by a work, so a slow file system does not delay the timer.
+     *
+     * @param wheel the wheel to schedule the renewals with.
+     * @param workManager the work manager to renew the lease with or null, to
+     * renew it on the thread of the timer.
+     */
+    void startHeartbeat(final TimingWheel wheel,
+            final WorkManager workManager) {
+        final long period = Math.max(1l, leaseTimeout / 3);
+        final Work renewal = new Work() {
+            @Override
+            public void release() {
+            }
+
+            @Override
+            public void run() {
+                try {
+                    renew();
+                } catch (IOException ex) {
+                    LOG.log(Level.SEVERE, String.format(
+                            "cannot renew the lease of the node %s: ",
+                            nodeId), ex);
+                }
+            }
+        };
+        beating = true;
+        heartbeat = wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!beating) {
+                    return;
+                }
+                try {
+                    if (workManager == null) {
+                        renewal.run();
+                    } else {
+                        workManager.scheduleWork(renewal);
+                    }
+                } catch (WorkException ex) {
+                    // the lease must not expire, while the node is busy.
+                    renewal.run();
+                }
+                if (beating) {
+                    heartbeat = wheel.schedule(this, period);
+                }
+            }
+        }, period);
+    }
+
+    /**
+     * stops renewing the lease. The files, that are still claimed, are taken
+     * over by another node after the lease timeout, or by this node after a
+     * restart with the same node id.
+     */
+    void stopHeartbeat() {
+        beating = false;
+        TimingWheel.Timeout timeout = heartbeat;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+}
@@ -39,41 +39,91 @@
  */
 package de.etecture.opensource.genericimport.core;
 
-import de.etecture.opensource.genericimport.api.ImportStatusListener;
-import de.etecture.opensource.genericimport.spi.ImportFileProcessor;
-import java.io.File;
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
-import java.util.ServiceLoader;
+import de.etecture.opensource.genericimport.api.BatchImportStatusListener;
+import de.etecture.opensource.genericimport.spi.ImportSourceProcessor;
+import de.etecture.opensource.genericimport.spi.SplittableImportSourceProcessor;
+import de.etecture.opensource.genericimport.spi.TailableImportSourceProcessor;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.resource.ResourceException;
-import javax.resource.spi.UnavailableException;
-import javax.resource.spi.endpoint.MessageEndpoint;
 import javax.resource.spi.endpoint.MessageEndpointFactory;
 import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkManager;
 
 /**
  * this is a work to do an import of a specific file.
+ * <p>
+ * in tail mode only the records appended since the last import of the file are
+ * imported, if the processor is a {@link TailableImportSourceProcessor}.
+ * <p>
+ * if the spec imports archives, the files contained in a .gz or .zip file are
+ * imported by an {@link ArchiveImporter}.
+ * <p>
+ * after the import the file is moved or deleted by the
+ * {@link ImportFileDisposition} of the spec, if there is one.
+ * <p>
+ * if several nodes share the import path, the file is claimed by
+ * {@link FileClaims} before it is imported, and skipped, if another node
+ * claimed it.
  *
  * @author rhk
  * @version ${project.version}
  * @since 1.1.1
  */
-public class FileImportWork implements Work, InvocationHandler {
+public class FileImportWork implements Work {
 
     private static final Logger LOG = Logger.getLogger(FileImportWork.class
             .getName());
+    private final GenericImportSpec spec;
     private final String mimeType;
-    private final File file;
-    private final MessageEndpointFactory endpointFactory;
+    // the file, as it was discovered in the import path.
+    private final FileSnapshot discovered;
+    // the claimed file, if several nodes share the import path.
+    private FileSnapshot file;
+    private final ImportFileProcessorRegistry processors;
+    private final ImportLedger ledger;
+    private final WorkManager workManager;
+    private final TailOffsetStore tailOffsets;
+    private final ImportSpecMetrics metrics;
+    private final ImportFileDisposition disposition;
+    private final FileClaims claims;
+    private final ImportEndpointSession session;
+    private long bytesRead;
 
-    FileImportWork(String mimeType, File file,
-            MessageEndpointFactory endpointFactory) {
-        this.mimeType = mimeType;
+    /**
+     * constructs the import of a file.
+     *
+     * @param spec
+     * @param file the file to import.
+     * @param endpointFactory
+     * @param processors the registry to search the processor of the file in.
+     * @param workManager the work manager to import the chunks of a split
+     * file in parallel with or null, to import them on the thread of the
+     * import.
+     * @param context the resources of the spec.
+     */
+    FileImportWork(GenericImportSpec spec, FileSnapshot file,
+            MessageEndpointFactory endpointFactory,
+            ImportFileProcessorRegistry processors, WorkManager workManager,
+            ImportSpecContext context) {
+        this.spec = spec;
+        this.claims = context.getClaims();
+        this.tailOffsets = context.getTailOffsets();
+        this.metrics = context.getMetrics();
+        this.disposition = context.getDisposition();
+        this.bytesRead = file.getSize();
+        this.mimeType = spec.getMimeType();
+        this.discovered = file;
         this.file = file;
-        this.endpointFactory = endpointFactory;
+        this.processors = processors;
+        this.ledger = context.getLedger();
+        this.workManager = workManager;
+        this.session = new ImportEndpointSession(endpointFactory,
+                spec.getDeliveriesPerTransaction() == null ? 1 : spec
+                .getDeliveriesPerTransaction());
     }
 
     @Override
@@ -85,80 +135,282 @@ public class FileImportWork implements Work, InvocationHandler {
         LOG.log(Level.INFO,
                 "searching a processor that supports mimetype: {0}",
                 mimeType);
-        ImportStatusListener proxy = (ImportStatusListener) Proxy
-                .newProxyInstance(getClass()
-                .getClassLoader(),
-                new Class[]{ImportStatusListener.class}, this);
+        EndpointImportStatusListener listener =
+                new EndpointImportStatusListener(session, metrics);
+        ProgressAccumulator accumulator = null;
+        boolean imported = false;
+        boolean failed = false;
+        // without claims the file belongs to this node.
+        boolean claimed = claims == null;
+        boolean skipped = false;
         // search for the desired processor.
         try {
-            for (ImportFileProcessor processor : ServiceLoader.load(
-                    ImportFileProcessor.class)) {
-                LOG.log(Level.INFO,
-                        "checking processor: {0} to support mimetype: {1}",
-                        new Object[]{processor.getClass().getSimpleName(),
-                    mimeType});
-                if (processor.isResponsibleFor(mimeType)) {
-                    // delegate the work to the processor.
-                    LOG.log(Level.INFO,
-                            "invoking processor: {0}",
-                            processor.getClass().getSimpleName());
-                    processor.processFile(mimeType, file, proxy);
+            boolean archive = Boolean.TRUE.equals(spec.getImportArchives())
+                    && ArchiveImporter.isArchive(file);
+            ImportSourceProcessor processor = archive ? null : processors
+                    .getSourceProcessor(mimeType);
+            if (!claimed && (archive || processor != null)) {
+                // a file without a processor is not claimed, so it stays in
+                // the import path.
+                if (!claim()) {
+                    skipped = true;
                     return;
                 }
+                claimed = true;
+            }
+            if (archive) {
+                accumulator = createAccumulator(listener);
+                mark(ImportLedger.State.CLAIMED);
+                processArchive(listener, accumulator);
+                mark(ImportLedger.State.COMPLETED);
+                imported = true;
+                return;
+            }
+            if (processor != null) {
+                // delegate the work to the processor.
+                LOG.log(Level.INFO,
+                        "invoking processor: {0} for file: {1} with {2} bytes",
+                        new Object[]{getProcessorName(processor),
+                    file.getName(), file.getSize()});
+                accumulator = createAccumulator(listener);
+                mark(ImportLedger.State.CLAIMED);
+                try (FileImportSource source = new FileImportSource(file)) {
+                    if (tailOffsets != null
+                            && processor instanceof TailableImportSourceProcessor) {
+                        processAppended(
+                                (TailableImportSourceProcessor) processor,
+                                source, listener, accumulator);
+                    } else if (tailOffsets != null) {
+                        LOG.log(Level.WARNING,
+                                "the processor {0} cannot import appended records, importing the whole file: {1}",
+                                new Object[]{getProcessorName(processor),
+                            file.getName()});
+                        processor.processSource(mimeType, source,
+                                accumulator == null ? listener : accumulator);
+                    } else if (isSplit(processor, source)) {
+                        processChunks(
+                                (SplittableImportSourceProcessor) processor,
+                                source, listener, accumulator);
+                    } else {
+                        processor.processSource(mimeType, source,
+                                accumulator == null ? listener : accumulator);
+                    }
+                }
+                if (accumulator != null) {
+                    accumulator.flush();
+                }
+                mark(ImportLedger.State.COMPLETED);
+                imported = true;
+                return;
             }
             LOG.log(Level.WARNING,
                     "No Processor registered to process the file: {1} with mimetype: {0}",
                     new Object[]{mimeType,
                 file.getName()});
         } catch (Throwable t) {
+            failed = true;
             LOG.log(Level.SEVERE, String.format(
                     "cannot search for Processors: %s",
                     t.getMessage()), t);
+            if (accumulator != null) {
+                // deliver what was read so far.
+                accumulator.flush();
+            }
+        } finally {
+            // releases the endpoint, if the import did not finish.
+            session.close();
+            // the metrics know the file by the path it was discovered at.
+            if (metrics != null && skipped) {
+                metrics.fileSkipped(discovered);
+            } else if (metrics != null) {
+                metrics.fileImported(discovered, imported ? bytesRead : 0l,
+                        !imported);
+            }
+            // just the file of this node is disposed.
+            if (claimed && (imported || failed)) {
+                dispose(imported && !listener.isErrorReported());
+            }
         }
     }
 
-    @Override
-    public Object invoke(Object proxy, Method method, Object[] args) throws
-            Throwable {
-        Object result = null;
-        LOG.log(Level.INFO, "inform the ImportStatusListener");
+    /**
+     * moves or deletes the file after its import, if the spec defines a
+     * disposition. A file without a processor stays, so it is imported when
+     * the processor is deployed.
+     */
+    private void dispose(boolean successful) {
+        if (disposition == null) {
+            return;
+        }
         try {
-            // create an Endpoint that is a ImportStatusListener too...
-            MessageEndpoint endpoint = (MessageEndpoint) endpointFactory
-                    .createEndpoint(null);
-            try {
-                // starts the transaction to send a message
-                LOG.log(Level.INFO,
-                        "open an endpoint to an ImportStatusListener");
-                endpoint.beforeDelivery(method);
-                // sends the message now...
-                result = method.invoke(endpoint, args);
-            } catch (NoSuchMethodException e) {
-                LOG.log(Level.SEVERE,
-                        "ResourceAdapter cannot find a method:", e);
-            } catch (ResourceException e) {
-                LOG.log(Level.SEVERE,
-                        "ResourceAdapter cannot inform an ImportStatusListener:",
-                        e);
-            } finally {
-                // transaction is completed...
-                try {
-                    // inform the endpoint that we're finished here
-                    LOG.log(Level.INFO,
-                            "close the endpoint to an ImportStatusListener");
-                    endpoint.afterDelivery();
-                } catch (ResourceException e) {
-                    LOG.log(Level.SEVERE,
-                            "ResourceAdapter cannot finish the transaction:",
-                            e);
-                }
+            // a claimed file keeps its path relative to the claim directory.
+            Path target = disposition.dispose(file, claims == null ? null
+                    : claims.getNodePath(), !successful);
+            LOG.log(Level.FINE, "disposed the {0} file {1} to: {2}",
+                    new Object[]{successful ? "imported" : "failed",
+                file.getName(), target});
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, String.format(
+                    "cannot dispose the file %s: ", file.getName()), ex);
+        }
+    }
+
+    /**
+     * claims the file for this node.
+     *
+     * @return false, if the file is claimed by another node or cannot be
+     * claimed.
+     */
+    private boolean claim() {
+        try {
+            FileSnapshot claimed = claims.claim(file);
+            if (claimed == null) {
+                LOG.log(Level.FINE, "the file {0} is claimed by another node",
+                        file.getName());
+                return false;
             }
-            endpoint.release();
-        } catch (UnavailableException e) {
-            LOG.log(Level.SEVERE,
-                    "ResourceAdapter tried to send to a deactivated endpoint.",
-                    e);
+            file = claimed;
+            return true;
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, String.format(
+                    "cannot claim the file %s: ", file.getName()), ex);
+            return false;
+        }
+    }
+
+    private boolean isSplit(ImportSourceProcessor processor,
+            FileImportSource source) {
+        return processor instanceof SplittableImportSourceProcessor
+                && spec.getSplitSize() != null && spec.getSplitSize() > 0
+                && source.getSize() > spec.getSplitSize();
+    }
+
+    /**
+     * splits the file into chunks and processes them in parallel as one
+     * import.
+     */
+    private void processChunks(SplittableImportSourceProcessor processor,
+            FileImportSource source, EndpointImportStatusListener listener,
+            ProgressAccumulator accumulator) throws IOException {
+        ImportSplitter splitter = new ImportSplitter(workManager,
+                spec.getSplitParallelism() == null ? 0 : spec
+                .getSplitParallelism());
+        List<ImportSourceRegion> chunks = splitter.split(processor, source,
+                spec.getSplitSize());
+        LOG.log(Level.INFO, "importing file: {0} in {1} chunks", new Object[]{
+            file.getName(), chunks.size()});
+        String importId = source.getName();
+        listener.onStart(importId);
+        splitter.process(processor, mimeType, chunks, importId, listener,
+                accumulator);
+        listener.onFinished(importId);
+    }
+
+    /**
+     * imports the files contained in the archive.
+     */
+    private void processArchive(EndpointImportStatusListener listener,
+            ProgressAccumulator accumulator) throws IOException {
+        LOG.log(Level.INFO, "importing archive: {0} with {1} bytes",
+                new Object[]{file.getName(), file.getSize()});
+        new ArchiveImporter(processors, workManager,
+                spec.getSplitParallelism() == null ? 0 : spec
+                .getSplitParallelism(), mimeType, spec
+                .getArchiveEntryMimeTypes()).process(file, listener,
+                accumulator);
+        if (accumulator != null) {
+            accumulator.flush();
+        }
+    }
+
+    /**
+     * processes the records, that were appended since the last import of the
+     * file, and remembers the end of the last complete record.
+     */
+    private void processAppended(TailableImportSourceProcessor processor,
+            FileImportSource source, EndpointImportStatusListener listener,
+            ProgressAccumulator accumulator) throws IOException {
+        ReentrantLock lock = tailOffsets.getLock(file.getPath());
+        // an import of the file that is still running is waited for.
+        lock.lock();
+        try {
+            long offset = tailOffsets.getOffset(file);
+            long end = processor.lastRecordBoundary(source, offset);
+            bytesRead = Math.max(0l, end - offset);
+            if (end <= offset) {
+                LOG.log(Level.FINE, "no complete record appended to: {0}",
+                        file.getName());
+                return;
+            }
+            ImportSplitter splitter = new ImportSplitter(workManager,
+                    spec.getSplitParallelism() == null ? 0 : spec
+                    .getSplitParallelism());
+            List<ImportSourceRegion> chunks = splitter.split(processor, source,
+                    offset, end, spec.getSplitSize() == null ? 0l : spec
+                    .getSplitSize());
+            LOG.log(Level.INFO,
+                    "importing {0} appended bytes of file: {1} in {2} chunks",
+                    new Object[]{end - offset, file.getName(), chunks.size()});
+            String importId = source.getName();
+            listener.onStart(importId);
+            splitter.process(processor, mimeType, chunks, importId, listener,
+                    accumulator);
+            if (accumulator != null) {
+                accumulator.flush();
+            }
+            listener.onFinished(importId);
+            tailOffsets.commit(file, end);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String getProcessorName(ImportSourceProcessor processor) {
+        if (processor instanceof ImportFileProcessorAdapter) {
+            return ((ImportFileProcessorAdapter) processor).getProcessor()
+                    .getClass().getSimpleName();
+        }
+        return processor.getClass().getSimpleName();
+    }
+
+    /**
+     * creates an accumulator for the progress of the import, if the spec
+     * defines batches.
+     *
+     * @return the accumulator or null, if each piece is delivered on its own.
+     */
+    private ProgressAccumulator createAccumulator(
+            BatchImportStatusListener<Object> listener) {
+        int batchSize = spec.getProgressBatchSize() == null ? 1 : spec
+                .getProgressBatchSize();
+        long batchBytes = spec.getProgressBatchBytes() == null ? 0l : spec
+                .getProgressBatchBytes();
+        long batchDelay = spec.getProgressBatchDelay() == null ? 0l : spec
+                .getProgressBatchDelay();
+        if (batchSize <= 1) {
+            return null;
+        }
+        return new ProgressAccumulator(listener, batchSize, batchBytes,
+                batchDelay);
+    }
+
+    /**
+     * remembers the new state of the file in the ledger, if there is one.
+     */
+    private void mark(ImportLedger.State state) {
+        if (ledger == null) {
+            return;
+        }
+        try {
+            if (state == ImportLedger.State.CLAIMED) {
+                ledger.markClaimed(file);
+            } else {
+                ledger.markCompleted(file);
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, String.format(
+                    "cannot write the state %s of the file %s to the ledger: ",
+                    state, file.getName()), ex);
         }
-        return result;
     }
 }
@@ -0,0 +1,197 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+/**
+ * holds the attributes of a file, that were read once while the import path
+ * was scanned.
+ * <p>
+ * the snapshot is used to filter, to sort and to import the file, so the file
+ * system is not asked again for the attributes of the file.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public final class FileSnapshot {
+
+    private final Path path;
+    private final long size;
+    private final long lastModified;
+    private final Object fileKey;
+    private final long sortKey;
+
+    FileSnapshot(Path path, BasicFileAttributes attributes) {
+        this(path, attributes, attributes.lastModifiedTime().toMillis());
+    }
+
+    FileSnapshot(Path path, BasicFileAttributes attributes, long sortKey) {
+        this(path, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                attributes.fileKey(), sortKey);
+    }
+
+    FileSnapshot(Path path, long size, long lastModified, Object fileKey,
+            long sortKey) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.fileKey = fileKey;
+        this.sortKey = sortKey;
+    }
+
+    /**
+     * reads the attributes of the given file.
+     *
+     * @param path the file to create the snapshot for.
+     * @return the snapshot of the file.
+     * @throws IOException if the attributes cannot be read.
+     */
+    public static FileSnapshot of(Path path) throws IOException {
+        return new FileSnapshot(path, Files.readAttributes(path,
+                BasicFileAttributes.class));
+    }
+
+    /**
+     * returns the path of the file.
+     *
+     * @return
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * returns the file.
+     *
+     * @return
+     */
+    public File getFile() {
+        return path.toFile();
+    }
+
+    /**
+     * returns the name of the file.
+     *
+     * @return
+     */
+    public String getName() {
+        return path.getFileName().toString();
+    }
+
+    /**
+     * returns the size of the file in bytes.
+     *
+     * @return
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * returns the last modified timestamp of the file in ms.
+     *
+     * @return
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * returns the key that identifies the file in the file system (e.g. the
+     * inode) or null, if the file system does not provide such a key.
+     *
+     * @return
+     */
+    public Object getFileKey() {
+        return fileKey;
+    }
+
+    /**
+     * returns the key to sort the files by age. This is either the last
+     * modified timestamp or a timestamp taken from the name of the file.
+     *
+     * @return
+     */
+    public long getSortKey() {
+        return sortKey;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final FileSnapshot other = (FileSnapshot) obj;
+        return this.size == other.size
+                && this.lastModified == other.lastModified
+                && Arrays.equals(
+                new Object[]{
+            this.path,
+            this.fileKey},
+                new Object[]{
+            other.path,
+            other.fileKey});
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.deepHashCode(new Object[]{path, size, lastModified,
+            fileKey});
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%d bytes, modified: %d)", path, size,
+                lastModified);
+    }
+}
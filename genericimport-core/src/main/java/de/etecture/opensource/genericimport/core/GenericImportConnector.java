@@ -40,23 +40,29 @@
 package de.etecture.opensource.genericimport.core;
 
 import de.etecture.opensource.genericimport.cron.ScheduleExpression;
-import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
 import java.text.ParseException;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Timer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.resource.NotSupportedException;
 import javax.resource.ResourceException;
 import javax.resource.spi.ActivationSpec;
 import javax.resource.spi.BootstrapContext;
+import javax.resource.spi.ConfigProperty;
 import javax.resource.spi.Connector;
 import javax.resource.spi.ResourceAdapter;
 import javax.resource.spi.ResourceAdapterInternalException;
 import javax.resource.spi.UnavailableException;
 import javax.resource.spi.endpoint.MessageEndpointFactory;
-import javax.resource.spi.work.WorkException;
 import javax.resource.spi.work.WorkManager;
 import javax.transaction.xa.XAResource;
 
@@ -80,20 +86,100 @@ public class GenericImportConnector implements FileAgentCallback,
             GenericImportConnector.class.getName());
     private BootstrapContext ctx;
     private WorkScheduler scheduler;
-    private final Map<ActivationSpec, FileAgentWork> works = new HashMap<>();
+    private ImportFileProcessorRegistry processors;
+    private final Map<ActivationSpec, FileAgentWork> works =
+            new ConcurrentHashMap<>();
+    private final Map<ActivationSpec, DirectoryWatcherWork> watchers =
+            new ConcurrentHashMap<>();
+    private final Map<ActivationSpec, ImportDispatcher.SpecQueue> importQueues =
+            new ConcurrentHashMap<>();
+    private ImportDispatcher dispatcher;
+    private final Map<ActivationSpec, ObjectName> specMBeans =
+            new ConcurrentHashMap<>();
+    private final AtomicInteger specIds = new AtomicInteger();
+    private ObjectName connectorMBean;
+    @ConfigProperty(type = Integer.class, defaultValue = "0",
+            description =
+            "the maximum number of files that are imported concurrently for all the endpoints. 0 means no limit.")
+    private Integer maxConcurrentImports = 0;
 
     @Override
     public final void start(BootstrapContext ctx) throws
             ResourceAdapterInternalException {
         LOG.info("starts the ImportConnector...");
         this.ctx = ctx;
+        ClassLoader classLoader = Thread.currentThread()
+                .getContextClassLoader();
+        this.processors = new ImportFileProcessorRegistry(
+                classLoader == null ? getClass().getClassLoader()
+                : classLoader);
         try {
             this.scheduler = new WorkScheduler(ctx);
+            this.dispatcher = new ImportDispatcher(getWorkManager(),
+                    scheduler.getTimingWheel(), toInt(maxConcurrentImports));
         } catch (UnavailableException ex) {
             throw new ResourceAdapterInternalException(
                     "This resource-adapter needs an available timer to work!",
                     ex);
         }
+        this.connectorMBean = registerMBean(String.format(
+                "type=ImportConnector,name=%x", System.identityHashCode(this)),
+                new ImportConnectorMetrics(works.values(), scheduler,
+                dispatcher, processors));
+    }
+
+    /**
+     * registers the metrics at the platform MBean server.
+     *
+     * @param properties the key properties of the name of the MBean.
+     * @param mbean the metrics to register.
+     * @return the name of the MBean or null, if it cannot be registered.
+     */
+    private ObjectName registerMBean(String properties, Object mbean) {
+        try {
+            ObjectName name = new ObjectName(
+                    "de.etecture.opensource.genericimport:" + properties);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean,
+                    name);
+            return name;
+        } catch (JMException | SecurityException ex) {
+            LOG.log(Level.WARNING, String.format(
+                    "cannot register the metrics %s: ", properties), ex);
+            return null;
+        }
+    }
+
+    private void unregisterMBean(ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException | SecurityException ex) {
+            LOG.log(Level.WARNING, String.format(
+                    "cannot unregister the metrics %s: ", name), ex);
+        }
+    }
+
+    /**
+     * returns the registry of the processors, e.g. to invalidate it after the
+     * processors were redeployed.
+     *
+     * @return
+     */
+    public final ImportFileProcessorRegistry getProcessorRegistry() {
+        return processors;
+    }
+
+    public Integer getMaxConcurrentImports() {
+        return maxConcurrentImports;
+    }
+
+    public void setMaxConcurrentImports(Integer maxConcurrentImports) {
+        this.maxConcurrentImports = maxConcurrentImports;
     }
 
     protected final WorkManager getWorkManager() {
@@ -112,20 +198,54 @@ public class GenericImportConnector implements FileAgentCallback,
         if (spec instanceof GenericImportSpec) {
             GenericImportSpec importSpec = (GenericImportSpec) spec;
             // create a FileAgentWork
-            FileAgentWork work = new FileAgentWork(
-                    importSpec, endpointFactory, this);
+            FileAgentWork work = new FileAgentWork(importSpec, endpointFactory,
+                    this, getWorkManager(), openContext(importSpec));
             // remember the work
             this.works.put(spec, work);
             try {
+                ImportDispatcher.SpecQueue importQueue = dispatcher
+                        .createQueue(toInt(importSpec.getImportWeight()),
+                        toInt(importSpec.getMaxConcurrentImports()),
+                        toInt(importSpec.getMaxPendingImports()));
+                importQueue.setResumeWork(work);
+                this.importQueues.put(spec, importQueue);
+                work.getMetrics().setQueue(importQueue);
+                ObjectName specMBean = registerMBean(String.format(
+                        "type=ImportSpec,connector=%x,id=%d,path=%s",
+                        System.identityHashCode(this), specIds
+                        .incrementAndGet(), ObjectName.quote(String.valueOf(
+                        importSpec.getImportPath()))), work.getMetrics());
+                if (specMBean != null) {
+                    this.specMBeans.put(spec, specMBean);
+                }
                 // schedule a FileAgentWork with this importerSpec.
-                this.scheduler.scheduleWork(work,
+                ScheduleExpression scheduleExpression =
                         new ScheduleExpression(importSpec
-                        .getScheduleExpression()));
+                        .getScheduleExpression());
+                if (work.getPollInterval() != null) {
+                    // the expression defines the windows of the scans.
+                    this.scheduler.scheduleWork(work, scheduleExpression,
+                            work.getPollInterval());
+                } else {
+                    this.scheduler.scheduleWork(work, scheduleExpression);
+                }
+                if (Boolean.TRUE.equals(importSpec.getWatchImportPath())) {
+                    // watch the directory, the schedule is just a backstop.
+                    DirectoryWatcherWork watcher = new DirectoryWatcherWork(
+                            work);
+                    this.watchers.put(spec, watcher);
+                    getWorkManager().scheduleWork(watcher);
+                }
             } catch (ParseException ex) {
                 LOG.severe(ex.getMessage());
+                deactivate(spec);
                 throw new ResourceException(
                         "cannot start work, due to unparseable schedule expression",
                         ex);
+            } catch (ResourceException | RuntimeException ex) {
+                // e.g. the watcher was rejected by the work manager.
+                deactivate(spec);
+                throw ex;
             }
         } else {
             throw new NotSupportedException(String.format(
@@ -135,24 +255,138 @@ public class GenericImportConnector implements FileAgentCallback,
         }
     }
 
+    private static int toInt(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * opens the resources of the spec. If a resource cannot be opened, the
+     * resources opened before are released.
+     */
+    private ImportSpecContext openContext(GenericImportSpec importSpec)
+            throws ResourceException {
+        ImportLedger ledger = null;
+        TailOffsetStore tailOffsets = null;
+        FileClaims claims = null;
+        try {
+            ledger = openLedger(importSpec);
+            tailOffsets = openTailOffsets(importSpec);
+            claims = openClaims(importSpec);
+            return new ImportSpecContext(importSpec, ledger, tailOffsets,
+                    claims);
+        } catch (ResourceException | RuntimeException ex) {
+            ImportSpecContext.release(ledger, tailOffsets, claims);
+            throw ex;
+        }
+    }
+
+    private ImportLedger openLedger(GenericImportSpec importSpec) throws
+            ResourceException {
+        String ledgerPath = importSpec.getLedgerPath();
+        if (ledgerPath == null || ledgerPath.isEmpty()) {
+            return null;
+        }
+        try {
+            return ImportLedger.open(Paths.get(ledgerPath));
+        } catch (IOException ex) {
+            throw new ResourceException(String.format(
+                    "cannot open the ledger: %s", ledgerPath), ex);
+        }
+    }
+
+    private TailOffsetStore openTailOffsets(GenericImportSpec importSpec)
+            throws ResourceException {
+        if (!Boolean.TRUE.equals(importSpec.getTailMode())) {
+            return null;
+        }
+        String tailOffsetPath = importSpec.getTailOffsetPath();
+        try {
+            return TailOffsetStore.open(tailOffsetPath == null
+                    || tailOffsetPath.isEmpty() ? null : Paths.get(
+                    tailOffsetPath));
+        } catch (IOException ex) {
+            throw new ResourceException(String.format(
+                    "cannot open the tail offsets: %s", tailOffsetPath), ex);
+        }
+    }
+
+    private FileClaims openClaims(GenericImportSpec importSpec) throws
+            ResourceException {
+        try {
+            FileClaims claims = FileClaims.open(importSpec);
+            if (claims != null) {
+                claims.startHeartbeat(scheduler.getTimingWheel(),
+                        getWorkManager());
+                LOG.log(Level.INFO, "claims the files of {0} as node: {1}",
+                        new Object[]{importSpec.getImportPath(), claims
+                    .getNodeId()});
+            }
+            return claims;
+        } catch (IOException ex) {
+            throw new ResourceException(String.format(
+                    "cannot open the claims of: %s", importSpec
+                    .getImportPath()), ex);
+        }
+    }
+
     @Override
     public final void endpointDeactivation(
             MessageEndpointFactory endpointFactory,
             ActivationSpec spec) {
         LOG.log(Level.INFO, "deregister an endpoint with spec: {0}", spec);
         // an endpoint is undeployed
-        if (this.works.containsKey(spec)) {
-            FileAgentWork work = this.works.get(spec);
+        deactivate(spec);
+    }
+
+    /**
+     * cancels the work of the spec and releases its resources. The imports,
+     * that are still running, cannot write to the closed ledger anymore, so
+     * their files are imported again after the next activation.
+     */
+    private void deactivate(ActivationSpec spec) {
+        FileAgentWork work = this.works.remove(spec);
+        if (work != null) {
             this.scheduler.cancel(work);
-            this.works.remove(spec);
+        }
+        DirectoryWatcherWork watcher = this.watchers.remove(spec);
+        if (watcher != null) {
+            watcher.release();
+        }
+        ImportDispatcher.SpecQueue importQueue = this.importQueues.remove(
+                spec);
+        if (importQueue != null) {
+            // the pending imports are not started anymore.
+            importQueue.cancel();
+        }
+        unregisterMBean(this.specMBeans.remove(spec));
+        if (work != null) {
+            work.getContext().close();
         }
     }
 
     @Override
     public final void stop() {
         LOG.info("stop the ImportConnector...");
-        this.scheduler.cancel();
+        this.scheduler.stop();
+        for (DirectoryWatcherWork watcher : this.watchers.values()) {
+            watcher.release();
+        }
+        this.watchers.clear();
+        for (ImportDispatcher.SpecQueue importQueue : this.importQueues
+                .values()) {
+            importQueue.cancel();
+        }
+        this.importQueues.clear();
+        for (FileAgentWork work : this.works.values()) {
+            work.getContext().close();
+        }
         this.works.clear();
+        for (ObjectName specMBean : this.specMBeans.values()) {
+            unregisterMBean(specMBean);
+        }
+        this.specMBeans.clear();
+        unregisterMBean(this.connectorMBean);
+        this.connectorMBean = null;
     }
 
     @Override
@@ -163,16 +397,54 @@ public class GenericImportConnector implements FileAgentCallback,
 
     @Override
     public final void onNewImportFile(GenericImportSpec spec,
-            MessageEndpointFactory endpointFactory, File file) {
-        try {
-            LOG.log(Level.INFO, "process new importfile: {0} of type {1}",
-                    new Object[]{file.getName(),
-                spec.getMimeType()});
-            this.getWorkManager().startWork(
-                    new FileImportWork(spec.getMimeType(), file,
-                    endpointFactory));
-        } catch (WorkException ex) {
-            LOG.log(Level.SEVERE, "cannot schedule an FileImportWork: ", ex);
+            MessageEndpointFactory endpointFactory, FileSnapshot file) {
+        LOG.log(Level.INFO, "process new importfile: {0} of type {1}",
+                new Object[]{file.getName(),
+            spec.getMimeType()});
+        FileAgentWork work = this.works.get(spec);
+        ImportDispatcher.SpecQueue importQueue = this.importQueues.get(spec);
+        if (work == null || importQueue == null) {
+            // the spec was deactivated by now, so the file must neither be
+            // claimed nor disposed anymore.
+            LOG.log(Level.FINE,
+                    "the endpoint of the file {0} is deactivated, dropping it",
+                    file.getName());
+            return;
+        }
+        importQueue.submit(new FileImportWork(spec, file, endpointFactory,
+                processors, getWorkManager(), work.getContext()));
+    }
+
+    /**
+     * returns the effective interval between two scans of the given spec.
+     *
+     * @param spec the spec of an activated endpoint.
+     * @return the interval in ms or -1, if the spec does not adapt the
+     * interval.
+     */
+    public final long getEffectivePollInterval(ActivationSpec spec) {
+        FileAgentWork work = this.works.get(spec);
+        if (work == null || work.getPollInterval() == null) {
+            return -1l;
         }
+        return work.getPollInterval().getEffectiveInterval();
+    }
+
+    /**
+     * returns the number of scans of the given spec, that were skipped,
+     * because the previous scan was still running.
+     *
+     * @param spec the spec of an activated endpoint.
+     * @return the number of skipped scans or -1, if the spec is not activated.
+     */
+    public final long getSkippedScanCount(ActivationSpec spec) {
+        FileAgentWork work = this.works.get(spec);
+        return work == null ? -1l : work.getSkippedScanCount();
+    }
+
+    @Override
+    public final boolean isSaturated(GenericImportSpec spec) {
+        ImportDispatcher.SpecQueue importQueue = this.importQueues.get(spec);
+        return importQueue != null && importQueue.isSaturated();
     }
 }
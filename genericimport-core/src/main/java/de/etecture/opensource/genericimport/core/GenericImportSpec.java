@@ -39,6 +39,7 @@
  */
 package de.etecture.opensource.genericimport.core;
 
+import de.etecture.opensource.genericimport.api.BatchImportStatusListener;
 import de.etecture.opensource.genericimport.api.ImportStatusListener;
 import java.io.Serializable;
 import java.util.Arrays;
@@ -56,7 +57,8 @@ import javax.resource.spi.ResourceAdapter;
  * @version ${project.version}
  * @since 1.1.1
  */
-@Activation(messageListeners = {ImportStatusListener.class})
+@Activation(messageListeners = {ImportStatusListener.class,
+    BatchImportStatusListener.class})
 public class GenericImportSpec implements ActivationSpec, Serializable {
 
     private static final long serialVersionUID = -1;
@@ -73,6 +75,142 @@ public class GenericImportSpec implements ActivationSpec, Serializable {
     @ConfigProperty(type = String.class,
             description = "the mime-type of the import file.")
     private String mimeType;
+    @ConfigProperty(type = Boolean.class, defaultValue = "false",
+            description =
+            "whether to watch the import path for new files instead of waiting for the next scheduled scan.")
+    private Boolean watchImportPath = false;
+    @ConfigProperty(type = Long.class, defaultValue = "50",
+            description =
+            "the time in ms a watched file must be left untouched before it is imported.")
+    private Long watchSettleTime = 50l;
+    @ConfigProperty(type = Integer.class, defaultValue = "0",
+            description =
+            "the number of files held back to import the oldest files first while the import path is still read. 0 holds back and sorts all the new files before importing.")
+    private Integer scanWindowSize = 0;
+    @ConfigProperty(type = String.class,
+            description =
+            "the name or number of the group in the file pattern that holds a timestamp to sort the files by, instead of their last modified timestamp.")
+    private String importFileTimestampGroup;
+    @ConfigProperty(type = String.class, defaultValue = "yyyyMMddHHmmss",
+            description =
+            "the format of the timestamp in the file name.")
+    private String importFileTimestampFormat = "yyyyMMddHHmmss";
+    @ConfigProperty(type = String.class,
+            description =
+            "the path of a ledger file that durably remembers the imported files, instead of the timestamp of the last scan.")
+    private String ledgerPath;
+    @ConfigProperty(type = Integer.class, defaultValue = "1",
+            description =
+            "the maximum number of pieces delivered at once to a BatchImportStatusListener. 1 delivers each piece on its own.")
+    private Integer progressBatchSize = 1;
+    @ConfigProperty(type = Long.class, defaultValue = "0",
+            description =
+            "the approximate number of bytes, after which a batch of pieces is delivered. 0 means no limit.")
+    private Long progressBatchBytes = 0l;
+    @ConfigProperty(type = Long.class, defaultValue = "0",
+            description =
+            "the time in ms, after which a batch of pieces is delivered. 0 means no limit.")
+    private Long progressBatchDelay = 0l;
+    @ConfigProperty(type = Integer.class, defaultValue = "1",
+            description =
+            "the number of progress deliveries to an endpoint that are committed in one transaction.")
+    private Integer deliveriesPerTransaction = 1;
+    @ConfigProperty(type = Long.class, defaultValue = "0",
+            description =
+            "the minimum size in bytes of a chunk, a file is split into to process the chunks in parallel. 0 does not split the files.")
+    private Long splitSize = 0l;
+    @ConfigProperty(type = Integer.class, defaultValue = "0",
+            description =
+            "the maximum number of threads that process the chunks of one file. 0 uses one thread per processor.")
+    private Integer splitParallelism = 0;
+    @ConfigProperty(type = Integer.class, defaultValue = "0",
+            description =
+            "the maximum number of files that are imported concurrently. 0 means no limit.")
+    private Integer maxConcurrentImports = 0;
+    @ConfigProperty(type = Integer.class, defaultValue = "1000",
+            description =
+            "the number of files waiting to be imported, after which the scan of the import path is suspended. 0 means no limit.")
+    private Integer maxPendingImports = 1000;
+    @ConfigProperty(type = Integer.class, defaultValue = "1",
+            description =
+            "the share of this endpoint in the import slots of the connector, relative to the weights of the other endpoints.")
+    private Integer importWeight = 1;
+    @ConfigProperty(type = Boolean.class, defaultValue = "false",
+            description =
+            "adapts the interval between two scans to the arrival of the files, the schedule expression just defines when a scan is allowed.")
+    private Boolean adaptivePolling = false;
+    @ConfigProperty(type = Long.class, defaultValue = "1000",
+            description =
+            "the interval in ms between two scans after a scan found new files.")
+    private Long minPollInterval = 1000l;
+    @ConfigProperty(type = Long.class, defaultValue = "300000",
+            description =
+            "the maximum interval in ms between two scans, the interval is doubled after each scan that found no files.")
+    private Long maxPollInterval = 300000l;
+    @ConfigProperty(type = Boolean.class, defaultValue = "false",
+            description =
+            "true, if the files are growing append-only files, whose appended records are imported incrementally.")
+    private Boolean tailMode = false;
+    @ConfigProperty(type = String.class,
+            description =
+            "the path of a file that durably remembers the imported bytes of each file in tail mode.")
+    private String tailOffsetPath;
+    @ConfigProperty(type = Boolean.class, defaultValue = "false",
+            description =
+            "true, if .gz and .zip files are imported as containers of the files to import.")
+    private Boolean importArchives = false;
+    @ConfigProperty(type = String.class,
+            description =
+            "the mime-types of the entries of a zip file as comma separated glob=mime-type pairs, e.g. *.csv=text/csv. Other entries are imported with the mime-type of the spec.")
+    private String archiveEntryMimeTypes;
+    @ConfigProperty(type = String.class, defaultValue = "none",
+            description =
+            "what is done with a file after its successful import: none, move (into the done path), archive (into a directory yyyy/MM/dd below the done path) or delete.")
+    private String disposition = "none";
+    @ConfigProperty(type = String.class,
+            description =
+            "the directory of the imported files, if they are moved or archived. Defaults to the directory done below the import path.")
+    private String donePath;
+    @ConfigProperty(type = String.class,
+            description =
+            "the directory, the files are moved to, if their import failed. Defaults to the directory error below the import path, if a disposition is defined.")
+    private String errorPath;
+    @ConfigProperty(type = Boolean.class, defaultValue = "false",
+            description =
+            "true, if the subdirectories of the import path are scanned as well.")
+    private Boolean recursiveScan = false;
+    @ConfigProperty(type = String.class,
+            description =
+            "comma separated globs of the paths relative to the import path of the files to import in a recursive scan, e.g. customer-*/**. Defaults to all files.")
+    private String includeGlobs;
+    @ConfigProperty(type = String.class,
+            description =
+            "comma separated globs of the paths relative to the import path of the files and directories to skip in a recursive scan.")
+    private String excludeGlobs;
+    @ConfigProperty(type = Integer.class, defaultValue = "0",
+            description =
+            "the maximum depth of the subdirectories scanned below the import path. 0 means no limit.")
+    private Integer maxScanDepth = 0;
+    @ConfigProperty(type = Integer.class, defaultValue = "0",
+            description =
+            "the maximum number of threads that scan the subdirectories in parallel. 0 uses one thread per processor.")
+    private Integer scanParallelism = 0;
+    @ConfigProperty(type = Boolean.class, defaultValue = "false",
+            description =
+            "true, if several nodes share the import path, so each file is claimed by the node that imports it. Needs a disposition.")
+    private Boolean claimFiles = false;
+    @ConfigProperty(type = String.class,
+            description =
+            "the directory of the claimed files of the nodes, on the file system of the import path. Defaults to the directory .claims below the import path.")
+    private String claimPath;
+    @ConfigProperty(type = String.class,
+            description =
+            "the id of this node, that is unique among the nodes sharing the import path. Defaults to a generated id.")
+    private String nodeId;
+    @ConfigProperty(type = Long.class, defaultValue = "60000",
+            description =
+            "the time in ms, after which the files claimed by a node, that did not renew its lease, are claimed again.")
+    private Long leaseTimeout = 60000l;
 
     @Override
     public ResourceAdapter getResourceAdapter() {
@@ -86,6 +224,35 @@ public class GenericImportSpec implements ActivationSpec, Serializable {
 
     @Override
     public void validate() throws InvalidPropertyException {
+        ImportFileDisposition.Action action;
+        try {
+            action = ImportFileDisposition.parseAction(disposition);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidPropertyException(String.format(
+                    "unknown disposition: %s", disposition), ex);
+        }
+        if (Boolean.TRUE.equals(tailMode) && (action
+                != ImportFileDisposition.Action.NONE || errorPath != null)) {
+            throw new InvalidPropertyException(
+                    "the files of the tail mode grow, so they cannot be disposed.");
+        }
+        if (Boolean.TRUE.equals(claimFiles)
+                && action == ImportFileDisposition.Action.NONE) {
+            throw new InvalidPropertyException(
+                    "the claimed files must be moved or deleted after their import.");
+        }
+        if (Boolean.TRUE.equals(claimFiles) && leaseTimeout != null
+                && leaseTimeout <= 0) {
+            throw new InvalidPropertyException(String.format(
+                    "the lease timeout must be positive: %d", leaseTimeout));
+        }
+        try {
+            DirectoryTreeScanner.parseGlobs(includeGlobs);
+            DirectoryTreeScanner.parseGlobs(excludeGlobs);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidPropertyException(String.format(
+                    "invalid glob: %s", ex.getMessage()), ex);
+        }
     }
 
     public String getImportPath() {
@@ -120,6 +287,278 @@ public class GenericImportSpec implements ActivationSpec, Serializable {
         this.mimeType = ImportType;
     }
 
+    public Boolean getWatchImportPath() {
+        return watchImportPath;
+    }
+
+    public void setWatchImportPath(Boolean watchImportPath) {
+        this.watchImportPath = watchImportPath;
+    }
+
+    public Long getWatchSettleTime() {
+        return watchSettleTime;
+    }
+
+    public void setWatchSettleTime(Long watchSettleTime) {
+        this.watchSettleTime = watchSettleTime;
+    }
+
+    public Integer getScanWindowSize() {
+        return scanWindowSize;
+    }
+
+    public void setScanWindowSize(Integer scanWindowSize) {
+        this.scanWindowSize = scanWindowSize;
+    }
+
+    public String getImportFileTimestampGroup() {
+        return importFileTimestampGroup;
+    }
+
+    public void setImportFileTimestampGroup(String importFileTimestampGroup) {
+        this.importFileTimestampGroup = importFileTimestampGroup;
+    }
+
+    public String getImportFileTimestampFormat() {
+        return importFileTimestampFormat;
+    }
+
+    public void setImportFileTimestampFormat(String importFileTimestampFormat) {
+        this.importFileTimestampFormat = importFileTimestampFormat;
+    }
+
+    public String getLedgerPath() {
+        return ledgerPath;
+    }
+
+    public void setLedgerPath(String ledgerPath) {
+        this.ledgerPath = ledgerPath;
+    }
+
+    public Integer getProgressBatchSize() {
+        return progressBatchSize;
+    }
+
+    public void setProgressBatchSize(Integer progressBatchSize) {
+        this.progressBatchSize = progressBatchSize;
+    }
+
+    public Long getProgressBatchBytes() {
+        return progressBatchBytes;
+    }
+
+    public void setProgressBatchBytes(Long progressBatchBytes) {
+        this.progressBatchBytes = progressBatchBytes;
+    }
+
+    public Long getProgressBatchDelay() {
+        return progressBatchDelay;
+    }
+
+    public void setProgressBatchDelay(Long progressBatchDelay) {
+        this.progressBatchDelay = progressBatchDelay;
+    }
+
+    public Integer getDeliveriesPerTransaction() {
+        return deliveriesPerTransaction;
+    }
+
+    public void setDeliveriesPerTransaction(Integer deliveriesPerTransaction) {
+        this.deliveriesPerTransaction = deliveriesPerTransaction;
+    }
+
+    public Long getSplitSize() {
+        return splitSize;
+    }
+
+    public void setSplitSize(Long splitSize) {
+        this.splitSize = splitSize;
+    }
+
+    public Integer getSplitParallelism() {
+        return splitParallelism;
+    }
+
+    public void setSplitParallelism(Integer splitParallelism) {
+        this.splitParallelism = splitParallelism;
+    }
+
+    public Integer getMaxConcurrentImports() {
+        return maxConcurrentImports;
+    }
+
+    public void setMaxConcurrentImports(Integer maxConcurrentImports) {
+        this.maxConcurrentImports = maxConcurrentImports;
+    }
+
+    public Integer getMaxPendingImports() {
+        return maxPendingImports;
+    }
+
+    public void setMaxPendingImports(Integer maxPendingImports) {
+        this.maxPendingImports = maxPendingImports;
+    }
+
+    public Integer getImportWeight() {
+        return importWeight;
+    }
+
+    public void setImportWeight(Integer importWeight) {
+        this.importWeight = importWeight;
+    }
+
+    public Boolean getAdaptivePolling() {
+        return adaptivePolling;
+    }
+
+    public void setAdaptivePolling(Boolean adaptivePolling) {
+        this.adaptivePolling = adaptivePolling;
+    }
+
+    public Long getMinPollInterval() {
+        return minPollInterval;
+    }
+
+    public void setMinPollInterval(Long minPollInterval) {
+        this.minPollInterval = minPollInterval;
+    }
+
+    public Long getMaxPollInterval() {
+        return maxPollInterval;
+    }
+
+    public void setMaxPollInterval(Long maxPollInterval) {
+        this.maxPollInterval = maxPollInterval;
+    }
+
+    public Boolean getTailMode() {
+        return tailMode;
+    }
+
+    public void setTailMode(Boolean tailMode) {
+        this.tailMode = tailMode;
+    }
+
+    public String getTailOffsetPath() {
+        return tailOffsetPath;
+    }
+
+    public void setTailOffsetPath(String tailOffsetPath) {
+        this.tailOffsetPath = tailOffsetPath;
+    }
+
+    public Boolean getImportArchives() {
+        return importArchives;
+    }
+
+    public void setImportArchives(Boolean importArchives) {
+        this.importArchives = importArchives;
+    }
+
+    public String getArchiveEntryMimeTypes() {
+        return archiveEntryMimeTypes;
+    }
+
+    public void setArchiveEntryMimeTypes(String archiveEntryMimeTypes) {
+        this.archiveEntryMimeTypes = archiveEntryMimeTypes;
+    }
+
+    public String getDisposition() {
+        return disposition;
+    }
+
+    public void setDisposition(String disposition) {
+        this.disposition = disposition;
+    }
+
+    public String getDonePath() {
+        return donePath;
+    }
+
+    public void setDonePath(String donePath) {
+        this.donePath = donePath;
+    }
+
+    public String getErrorPath() {
+        return errorPath;
+    }
+
+    public void setErrorPath(String errorPath) {
+        this.errorPath = errorPath;
+    }
+
+    public Boolean getRecursiveScan() {
+        return recursiveScan;
+    }
+
+    public void setRecursiveScan(Boolean recursiveScan) {
+        this.recursiveScan = recursiveScan;
+    }
+
+    public String getIncludeGlobs() {
+        return includeGlobs;
+    }
+
+    public void setIncludeGlobs(String includeGlobs) {
+        this.includeGlobs = includeGlobs;
+    }
+
+    public String getExcludeGlobs() {
+        return excludeGlobs;
+    }
+
+    public void setExcludeGlobs(String excludeGlobs) {
+        this.excludeGlobs = excludeGlobs;
+    }
+
+    public Integer getMaxScanDepth() {
+        return maxScanDepth;
+    }
+
+    public void setMaxScanDepth(Integer maxScanDepth) {
+        this.maxScanDepth = maxScanDepth;
+    }
+
+    public Integer getScanParallelism() {
+        return scanParallelism;
+    }
+
+    public void setScanParallelism(Integer scanParallelism) {
+        this.scanParallelism = scanParallelism;
+    }
+
+    public Boolean getClaimFiles() {
+        return claimFiles;
+    }
+
+    public void setClaimFiles(Boolean claimFiles) {
+        this.claimFiles = claimFiles;
+    }
+
+    public String getClaimPath() {
+        return claimPath;
+    }
+
+    public void setClaimPath(String claimPath) {
+        this.claimPath = claimPath;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Long getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    public void setLeaseTimeout(Long leaseTimeout) {
+        this.leaseTimeout = leaseTimeout;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == this) {
@@ -157,7 +596,9 @@ public class GenericImportSpec implements ActivationSpec, Serializable {
                 + "\timportPath: %s,%n"
                 + "\timportFilePattern: %s,%n"
                 + "\tscheduleExpression: %s,%n"
-                + "\tmimeType: %s%n}%n",
-                importPath, importFilePattern, scheduleExpression, mimeType);
+                + "\tmimeType: %s,%n"
+                + "\twatchImportPath: %s%n}%n",
+                importPath, importFilePattern, scheduleExpression, mimeType,
+                watchImportPath);
     }
 }
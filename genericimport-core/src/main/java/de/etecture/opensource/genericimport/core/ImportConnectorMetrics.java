@@ -0,0 +1,115 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.util.Collection;
+
+/**
+ * the metrics of the {@link GenericImportConnector}, that are read from its
+ * parts and summed up over the metrics of the activated endpoints, when they
+ * are requested.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class ImportConnectorMetrics implements ImportConnectorMetricsMBean {
+
+    private final Collection<FileAgentWork> works;
+    private final WorkScheduler scheduler;
+    private final ImportDispatcher dispatcher;
+    private final ImportFileProcessorRegistry processors;
+
+    ImportConnectorMetrics(Collection<FileAgentWork> works,
+            WorkScheduler scheduler, ImportDispatcher dispatcher,
+            ImportFileProcessorRegistry processors) {
+        this.works = works;
+        this.scheduler = scheduler;
+        this.dispatcher = dispatcher;
+        this.processors = processors;
+    }
+
+    @Override
+    public int getActiveSpecs() {
+        return works.size();
+    }
+
+    @Override
+    public int getScheduledWorks() {
+        return scheduler.getScheduledWorkCount();
+    }
+
+    @Override
+    public int getInFlightImports() {
+        return dispatcher.getInFlightCount();
+    }
+
+    @Override
+    public int getProcessorCount() {
+        return processors.getProcessorCount();
+    }
+
+    @Override
+    public long getFilesImported() {
+        long sum = 0l;
+        for (FileAgentWork work : works) {
+            sum += work.getMetrics().getFilesImported();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getRecordsDelivered() {
+        long sum = 0l;
+        for (FileAgentWork work : works) {
+            sum += work.getMetrics().getRecordsDelivered();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getBytesRead() {
+        long sum = 0l;
+        for (FileAgentWork work : works) {
+            sum += work.getMetrics().getBytesRead();
+        }
+        return sum;
+    }
+}
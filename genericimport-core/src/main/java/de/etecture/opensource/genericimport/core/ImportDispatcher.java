@@ -0,0 +1,414 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkAdapter;
+import javax.resource.spi.work.WorkEvent;
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkManager;
+
+/**
+ * starts the imports of all the {@link GenericImportSpec}s, so that the specs
+ * share the import slots in proportion to their weights.
+ * <p>
+ * each spec has a queue of pending imports. The queues are served by deficit
+ * round robin: when a queue gets its turn, its weight is added to its deficit
+ * and it starts imports until the deficit is used up, then the next queue
+ * gets its turn. So a spec with a burst of files gets its share, but cannot
+ * starve the other specs. A queue is skipped, while its spec has the maximum
+ * number of concurrent imports, and all the queues wait, while the dispatcher
+ * has the maximum number of concurrent imports.
+ * <p>
+ * if the work manager rejects an import, it is put back at the head of its
+ * queue and the queues are retried after a backoff, that doubles with each
+ * rejection. When a queue holds the maximum number of pending imports, it is
+ * saturated and the {@link FileAgentWork} of the spec stops scanning. As soon
+ * as the queue is drained to the half, the scan is resumed.
+ * <p>
+ * N.B. the maximum number of pending imports is a soft limit: imports that
+ * are submitted while the queue is saturated are queued anyway.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class ImportDispatcher {
+
+    private static final Logger LOG = Logger.getLogger(ImportDispatcher.class
+            .getName());
+    static final long MIN_BACKOFF = 100l;
+    static final long MAX_BACKOFF = 30000l;
+    private final WorkManager workManager;
+    private final TimingWheel wheel;
+    private final int maxInFlight;
+    private final Deque<SpecQueue> activeQueues = new ArrayDeque<>();
+    private int inFlight;
+    private long backoff;
+    private boolean retryScheduled;
+
+    /**
+     * constructs a new dispatcher.
+     *
+     * @param workManager the work manager to start the imports with.
+     * @param wheel the wheel to schedule the retries with.
+     * @param maxInFlight the maximum number of concurrent imports of all the
+     * specs or 0 for no limit.
+     */
+    ImportDispatcher(WorkManager workManager, TimingWheel wheel,
+            int maxInFlight) {
+        this.workManager = workManager;
+        this.wheel = wheel;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * creates the queue for the imports of a spec.
+     *
+     * @param weight the share of the spec, relative to the other specs.
+     * @param maxInFlight the maximum number of concurrent imports of the spec
+     * or 0 for no limit.
+     * @param maxPending the maximum number of pending imports of the spec or 0
+     * for no limit.
+     * @return the queue
+     */
+    SpecQueue createQueue(int weight, int maxInFlight, int maxPending) {
+        return new SpecQueue(Math.max(1, weight), maxInFlight, maxPending);
+    }
+
+    /**
+     * returns the number of imports of all the specs, that are started but not
+     * completed.
+     *
+     * @return
+     */
+    synchronized int getInFlightCount() {
+        return inFlight;
+    }
+
+    private void startPending() {
+        while (true) {
+            DispatchedWork next;
+            synchronized (this) {
+                if (retryScheduled
+                        || (maxInFlight > 0 && inFlight >= maxInFlight)) {
+                    return;
+                }
+                SpecQueue queue = nextQueue();
+                if (queue == null) {
+                    return;
+                }
+                next = new DispatchedWork(queue, queue.pending.poll());
+                queue.inFlight++;
+                inFlight++;
+            }
+            try {
+                workManager.scheduleWork(next, WorkManager.INDEFINITE, null,
+                        next);
+            } catch (WorkException ex) {
+                LOG.log(Level.FINE, "the import was rejected: {0}", ex
+                        .getMessage());
+                next.rejected();
+            }
+        }
+    }
+
+    /**
+     * selects the queue, that starts the next import.
+     *
+     * @return the queue or null, if no queue can start an import.
+     */
+    private SpecQueue nextQueue() {
+        int blocked = 0;
+        while (!activeQueues.isEmpty()) {
+            SpecQueue queue = activeQueues.peekFirst();
+            if (queue.pending.isEmpty()) {
+                // the queue is drained, it leaves the round.
+                activeQueues.pollFirst();
+                queue.active = false;
+                queue.deficit = 0;
+                queue.served = false;
+                continue;
+            }
+            if (queue.maxInFlight > 0 && queue.inFlight >= queue.maxInFlight) {
+                // the spec has to wait for its own imports.
+                queue.deficit = 0;
+                queue.served = false;
+                // only a full pass of blocked queues stops the selection.
+                if (++blocked >= activeQueues.size()) {
+                    return null;
+                }
+                activeQueues.offerLast(activeQueues.pollFirst());
+                continue;
+            }
+            if (queue.deficit <= 0) {
+                if (queue.served) {
+                    // the turn of the queue is over, it is not blocked, so the
+                    // blocked queues are counted again.
+                    queue.served = false;
+                    blocked = 0;
+                    activeQueues.offerLast(activeQueues.pollFirst());
+                    continue;
+                }
+                queue.deficit += queue.weight;
+            }
+            queue.deficit--;
+            queue.served = true;
+            return queue;
+        }
+        return null;
+    }
+
+    private void completed(SpecQueue queue) {
+        Work resume = null;
+        synchronized (this) {
+            queue.inFlight--;
+            inFlight--;
+            backoff = 0l;
+            // a cancelled queue must not resume the scans of its spec.
+            if (queue.saturated && !queue.cancelled
+                    && queue.pending.size() <= queue.maxPending / 2) {
+                queue.saturated = false;
+                resume = queue.resumeWork;
+            }
+        }
+        if (resume != null) {
+            LOG.log(Level.INFO, "resume scanning, {0} imports are pending",
+                    queue.getPendingCount());
+            try {
+                workManager.scheduleWork(resume);
+            } catch (WorkException ex) {
+                LOG.log(Level.WARNING, "cannot resume the scan: {0}", ex
+                        .getMessage());
+            }
+        }
+        startPending();
+    }
+
+    private void rejected(SpecQueue queue, Work work) {
+        long delay;
+        synchronized (this) {
+            queue.inFlight--;
+            inFlight--;
+            if (queue.cancelled) {
+                return;
+            }
+            queue.pending.addFirst(work);
+            queue.activate();
+            backoff = backoff == 0l ? MIN_BACKOFF : Math.min(MAX_BACKOFF,
+                    backoff * 2);
+            delay = backoff;
+            if (retryScheduled) {
+                return;
+            }
+            retryScheduled = true;
+        }
+        LOG.log(Level.WARNING,
+                "the work manager rejected an import, retrying in {0} ms",
+                delay);
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (ImportDispatcher.this) {
+                    retryScheduled = false;
+                }
+                startPending();
+            }
+        }, delay);
+    }
+
+    /**
+     * the queue of the pending imports of a spec.
+     */
+    class SpecQueue {
+
+        private final int weight;
+        private final int maxInFlight;
+        private final int maxPending;
+        private final Deque<Work> pending = new ArrayDeque<>();
+        private Work resumeWork;
+        private int inFlight;
+        private int deficit;
+        private boolean served;
+        private boolean active;
+        private boolean saturated;
+        private boolean cancelled;
+
+        private SpecQueue(int weight, int maxInFlight, int maxPending) {
+            this.weight = weight;
+            this.maxInFlight = maxInFlight;
+            this.maxPending = maxPending;
+        }
+
+        /**
+         * sets the work, that is scheduled, when the queue is not saturated
+         * anymore, e.g. the {@link FileAgentWork} to resume the scan.
+         *
+         * @param resumeWork the work to schedule or null.
+         */
+        void setResumeWork(Work resumeWork) {
+            synchronized (ImportDispatcher.this) {
+                this.resumeWork = resumeWork;
+            }
+        }
+
+        /**
+         * tells, if the queue of pending imports is full.
+         *
+         * @return wether or not the queue is saturated.
+         */
+        boolean isSaturated() {
+            synchronized (ImportDispatcher.this) {
+                if (maxPending > 0 && pending.size() >= maxPending) {
+                    saturated = true;
+                }
+                return saturated;
+            }
+        }
+
+        /**
+         * returns the number of imports of the spec, that are started but not
+         * completed.
+         *
+         * @return
+         */
+        int getInFlightCount() {
+            synchronized (ImportDispatcher.this) {
+                return inFlight;
+            }
+        }
+
+        /**
+         * returns the number of imports of the spec, that wait to be started.
+         *
+         * @return
+         */
+        int getPendingCount() {
+            synchronized (ImportDispatcher.this) {
+                return pending.size();
+            }
+        }
+
+        /**
+         * submits an import, that is started as soon as the limits and the
+         * other specs allow it.
+         *
+         * @param work the import to start.
+         */
+        void submit(Work work) {
+            synchronized (ImportDispatcher.this) {
+                if (cancelled) {
+                    return;
+                }
+                pending.offer(work);
+                activate();
+            }
+            startPending();
+        }
+
+        /**
+         * forgets the pending imports. The imports in flight are not affected.
+         */
+        void cancel() {
+            synchronized (ImportDispatcher.this) {
+                cancelled = true;
+                pending.clear();
+                resumeWork = null;
+            }
+        }
+
+        private void activate() {
+            if (!active) {
+                active = true;
+                activeQueues.offerLast(this);
+            }
+        }
+    }
+
+    /**
+     * wraps a submitted import to get notified, when it is completed or
+     * rejected. A rejection may be reported by an exception and by an event,
+     * but it is handled only once.
+     */
+    private class DispatchedWork extends WorkAdapter implements Work {
+
+        private final SpecQueue queue;
+        private final Work work;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        DispatchedWork(SpecQueue queue, Work work) {
+            this.queue = queue;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            work.run();
+        }
+
+        @Override
+        public void release() {
+            work.release();
+        }
+
+        @Override
+        public void workCompleted(WorkEvent e) {
+            if (finished.compareAndSet(false, true)) {
+                completed(queue);
+            }
+        }
+
+        @Override
+        public void workRejected(WorkEvent e) {
+            rejected();
+        }
+
+        void rejected() {
+            if (finished.compareAndSet(false, true)) {
+                ImportDispatcher.this.rejected(queue, work);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.resource.ResourceException;
+import javax.resource.spi.endpoint.MessageEndpoint;
+import javax.resource.spi.endpoint.MessageEndpointFactory;
+
+/**
+ * holds one endpoint for all the deliveries of an import.
+ * <p>
+ * the endpoint is created with the first delivery and released, when the
+ * session is closed. Consecutive deliveries of the same method share one
+ * transaction, until the maximum number of deliveries per transaction is
+ * reached. A delivery of another method commits the pending transaction first,
+ * so {@code onStart} and {@code onFinished} always run in a transaction of
+ * their own.
+ * <p>
+ * if the endpoint fails, the session has to be closed. The next delivery
+ * creates a new endpoint.
+ * <p>
+ * N.B. a session is not thread-safe. It is guarded by the
+ * {@link EndpointImportStatusListener} that uses it.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class ImportEndpointSession {
+
+    private static final Logger LOG = Logger.getLogger(
+            ImportEndpointSession.class.getName());
+    private final MessageEndpointFactory endpointFactory;
+    private final int deliveriesPerTransaction;
+    private MessageEndpoint endpoint;
+    private Method transactionMethod;
+    private int deliveries;
+
+    ImportEndpointSession(MessageEndpointFactory endpointFactory,
+            int deliveriesPerTransaction) {
+        this.endpointFactory = endpointFactory;
+        this.deliveriesPerTransaction = Math.max(1, deliveriesPerTransaction);
+    }
+
+    /**
+     * returns the endpoint of this session and creates it, if needed.
+     *
+     * @return the endpoint
+     * @throws ResourceException if the endpoint cannot be created.
+     */
+    MessageEndpoint getEndpoint() throws ResourceException {
+        if (endpoint == null) {
+            LOG.log(Level.FINE, "open an endpoint to an ImportStatusListener");
+            endpoint = endpointFactory.createEndpoint(null);
+        }
+        return endpoint;
+    }
+
+    /**
+     * starts the delivery of a method to the endpoint of this session.
+     *
+     * @param method the method of the listener that is delivered
+     * @return the endpoint to deliver to
+     * @throws NoSuchMethodException if the endpoint does not know the method.
+     * @throws ResourceException if the endpoint cannot be created or the
+     * transaction cannot be started.
+     */
+    MessageEndpoint begin(Method method) throws NoSuchMethodException,
+            ResourceException {
+        MessageEndpoint current = getEndpoint();
+        if (transactionMethod != null && transactionMethod != method) {
+            commit();
+        }
+        if (transactionMethod == null) {
+            // starts the transaction to send the messages
+            current.beforeDelivery(method);
+            transactionMethod = method;
+        }
+        return current;
+    }
+
+    /**
+     * counts a successful delivery and commits the transaction, if it holds
+     * the maximum number of deliveries.
+     */
+    void delivered() {
+        if (++deliveries >= deliveriesPerTransaction) {
+            commit();
+        }
+    }
+
+    /**
+     * finishes the pending transaction, if there is one.
+     */
+    void commit() {
+        if (transactionMethod == null) {
+            return;
+        }
+        try {
+            endpoint.afterDelivery();
+        } catch (ResourceException e) {
+            LOG.log(Level.SEVERE,
+                    "ResourceAdapter cannot finish the transaction:", e);
+        } finally {
+            transactionMethod = null;
+            deliveries = 0;
+        }
+    }
+
+    /**
+     * finishes the pending transaction and releases the endpoint.
+     */
+    void close() {
+        if (endpoint == null) {
+            return;
+        }
+        try {
+            commit();
+        } finally {
+            LOG.log(Level.FINE,
+                    "close the endpoint to an ImportStatusListener");
+            endpoint.release();
+            endpoint = null;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * removes an imported file from the import directory, so the directory only
+ * holds the files, that are not imported yet, and a scan does not grow with
+ * the history of the imports.
+ * <p>
+ * a file, that was imported successfully, is moved into the done directory,
+ * into a directory of the day below the done directory (archive), or deleted.
+ * A file, whose import failed, is moved into the error directory. A moved file
+ * keeps its path relative to the import path, so the files of different
+ * subdirectories do not collide, and it never replaces another file. The files
+ * are moved atomically, if the directories are on the same file system.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class ImportFileDisposition {
+
+    private static final Logger LOG = Logger.getLogger(
+            ImportFileDisposition.class.getName());
+    static final String DONE_DIRECTORY = "done";
+    static final String ERROR_DIRECTORY = "error";
+
+    /**
+     * what is done with a file, that was imported successfully.
+     */
+    enum Action {
+
+        /**
+         * the file stays in the import directory.
+         */
+        NONE,
+        /**
+         * the file is moved into the done directory.
+         */
+        MOVE,
+        /**
+         * the file is moved into the directory yyyy/MM/dd of the day of the
+         * import below the done directory.
+         */
+        ARCHIVE,
+        /**
+         * the file is deleted.
+         */
+        DELETE;
+    }
+    private final Action action;
+    private final Path importPath;
+    private final Path donePath;
+    private final Path errorPath;
+
+    /**
+     * constructs a new disposition.
+     *
+     * @param action what is done with an imported file.
+     * @param importPath the directory, the paths of the moved files are kept
+     * relative to.
+     * @param donePath the directory of the imported files.
+     * @param errorPath the directory of the files, whose import failed, or
+     * null, if these files stay in the import directory.
+     */
+    ImportFileDisposition(Action action, Path importPath, Path donePath,
+            Path errorPath) {
+        this.action = action;
+        this.importPath = importPath.toAbsolutePath().normalize();
+        this.donePath = donePath.toAbsolutePath().normalize();
+        this.errorPath = errorPath == null ? null : errorPath.toAbsolutePath()
+                .normalize();
+    }
+
+    /**
+     * creates the disposition of the files of the given spec.
+     *
+     * @param spec
+     * @return the disposition or null, if the files stay in the import
+     * directory.
+     * @throws IllegalArgumentException if the spec defines an unknown action.
+     */
+    static ImportFileDisposition of(GenericImportSpec spec) {
+        Action action = parseAction(spec.getDisposition());
+        if (action == Action.NONE && spec.getErrorPath() == null) {
+            return null;
+        }
+        Path importPath = Paths.get(spec.getImportPath());
+        return new ImportFileDisposition(action, importPath,
+                spec.getDonePath() == null ? importPath.resolve(
+                DONE_DIRECTORY) : Paths.get(spec.getDonePath()),
+                spec.getErrorPath() == null ? importPath.resolve(
+                ERROR_DIRECTORY) : Paths.get(spec.getErrorPath()));
+    }
+
+    /**
+     * parses the name of an action.
+     *
+     * @param name the name of the action, case is ignored.
+     * @return the action, NONE if the name is null.
+     * @throws IllegalArgumentException if the action is unknown.
+     */
+    static Action parseAction(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return Action.NONE;
+        }
+        return Action.valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+    }
+
+    Action getAction() {
+        return action;
+    }
+
+    Path getDonePath() {
+        return donePath;
+    }
+
+    Path getErrorPath() {
+        return errorPath;
+    }
+
+    /**
+     * disposes the file of the import path after its import.
+     *
+     * @param file the imported file.
+     * @param failed true, if the import failed.
+     * @return the new path of the file or null, if it stays or was deleted.
+     * @throws IOException if the file cannot be moved or deleted.
+     */
+    Path dispose(FileSnapshot file, boolean failed) throws IOException {
+        return dispose(file, null, failed);
+    }
+
+    /**
+     * disposes the file after its import.
+     *
+     * @param file the imported file.
+     * @param baseDirectory the directory, the path of the file is relative to,
+     * e.g. the claim directory of a node, or null for the import path.
+     * @param failed true, if the import failed.
+     * @return the new path of the file or null, if it stays or was deleted.
+     * @throws IOException if the file cannot be moved or deleted.
+     */
+    Path dispose(FileSnapshot file, Path baseDirectory, boolean failed)
+            throws IOException {
+        if (failed) {
+            return errorPath == null ? null : move(file.getPath(),
+                    baseDirectory, errorPath);
+        }
+        switch (action) {
+            case MOVE:
+                return move(file.getPath(), baseDirectory, donePath);
+            case ARCHIVE:
+                Date today = new Date();
+                return move(file.getPath(), baseDirectory, donePath.resolve(
+                        String.format("%tY", today)).resolve(String.format(
+                        "%tm", today)).resolve(String.format("%td", today)));
+            case DELETE:
+                Files.deleteIfExists(file.getPath());
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * moves the file into the directory, keeping its path relative to the
+     * base directory. A file of the same name in the directory is not
+     * replaced, the moved file gets a unique name instead.
+     */
+    private Path move(Path file, Path baseDirectory, Path directory) throws
+            IOException {
+        Path source = file.toAbsolutePath().normalize();
+        Path base = baseDirectory == null ? importPath : baseDirectory
+                .toAbsolutePath().normalize();
+        Path relative = source.startsWith(base) ? base.relativize(source)
+                : source.getFileName();
+        Path target = reserve(directory.resolve(relative.toString()));
+        try {
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                LOG.log(Level.FINE,
+                        "cannot move the file {0} atomically, copies it to {1}",
+                        new Object[]{file, target});
+                // just the reserved empty file is replaced.
+                Files.move(source, target,
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(target);
+            throw ex;
+        }
+        return target;
+    }
+
+    /**
+     * reserves the target of a move by creating an empty file, that is
+     * replaced by the move. As the file is created atomically, a concurrent
+     * disposition of a file of the same name gets another name.
+     *
+     * @param target the desired target.
+     * @return the reserved target.
+     */
+    private static Path reserve(Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path reserved = target;
+        for (int i = 1;; i++) {
+            try {
+                return Files.createFile(reserved);
+            } catch (FileAlreadyExistsException ex) {
+                reserved = target.resolveSibling(String.format("%s.%d",
+                        target.getFileName(), i));
+            }
+        }
+    }
+}
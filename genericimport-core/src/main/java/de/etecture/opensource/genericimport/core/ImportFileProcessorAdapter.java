@@ -0,0 +1,90 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.api.ImportStatusListener;
+import de.etecture.opensource.genericimport.spi.ImportFileProcessor;
+import de.etecture.opensource.genericimport.spi.ImportSource;
+import de.etecture.opensource.genericimport.spi.ImportSourceProcessor;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * adapts an {@link ImportFileProcessor} to an {@link ImportSourceProcessor},
+ * so a processor that opens the file itself still works.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class ImportFileProcessorAdapter implements ImportSourceProcessor {
+
+    private final ImportFileProcessor processor;
+
+    ImportFileProcessorAdapter(ImportFileProcessor processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * returns the adapted processor.
+     *
+     * @return
+     */
+    ImportFileProcessor getProcessor() {
+        return processor;
+    }
+
+    @Override
+    public boolean isResponsibleFor(String mimeType) {
+        return processor.isResponsibleFor(mimeType);
+    }
+
+    @Override
+    public void processSource(String mimeType, ImportSource source,
+            ImportStatusListener callback) throws IOException {
+        File file = source.getFile();
+        if (file == null) {
+            throw new IOException(String.format(
+                    "the processor %s needs a file to import: %s",
+                    processor.getClass().getSimpleName(), source.getName()));
+        }
+        processor.processFile(mimeType, file, callback);
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.spi.ImportFileProcessor;
+import de.etecture.opensource.genericimport.spi.ImportSourceProcessor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * holds the registered {@link ImportFileProcessor}s and
+ * {@link ImportSourceProcessor}s and remembers which processor is responsible
+ * for a mime-type.
+ * <p>
+ * the processors are loaded once with a {@link ServiceLoader} for the given
+ * class loader. Each processor is asked once per mime-type for its
+ * responsibility, afterwards the lookup is a hash map lookup. If the
+ * processors are redeployed, the registry must be invalidated.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class ImportFileProcessorRegistry {
+
+    private static final Logger LOG = Logger.getLogger(
+            ImportFileProcessorRegistry.class.getName());
+    /**
+     * marks a mime-type without a responsible processor in the cache. It is
+     * never handed out.
+     */
+    private static final Object NO_PROCESSOR = new Object();
+    private final ClassLoader classLoader;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile Processors snapshot;
+
+    /**
+     * constructs a new registry for the processors visible to the given class
+     * loader.
+     *
+     * @param classLoader the class loader to load the processors with.
+     */
+    public ImportFileProcessorRegistry(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+        this.snapshot = new Processors(loadProcessors(),
+                loadSourceProcessors());
+    }
+
+    private List<ImportFileProcessor> loadProcessors() {
+        List<ImportFileProcessor> loadedProcessors = new ArrayList<>();
+        for (ImportFileProcessor processor : ServiceLoader.load(
+                ImportFileProcessor.class, classLoader)) {
+            LOG.log(Level.INFO, "registered processor: {0}", processor
+                    .getClass().getName());
+            loadedProcessors.add(processor);
+        }
+        return Collections.unmodifiableList(loadedProcessors);
+    }
+
+    private List<ImportSourceProcessor> loadSourceProcessors() {
+        List<ImportSourceProcessor> loadedProcessors = new ArrayList<>();
+        for (ImportSourceProcessor processor : ServiceLoader.load(
+                ImportSourceProcessor.class, classLoader)) {
+            LOG.log(Level.INFO, "registered source processor: {0}", processor
+                    .getClass().getName());
+            loadedProcessors.add(processor);
+        }
+        return Collections.unmodifiableList(loadedProcessors);
+    }
+
+    /**
+     * returns the processor that is responsible for the given mime-type.
+     *
+     * @param mimeType the mime-type of the file to process.
+     * @return the processor or null, if there is no responsible processor.
+     */
+    public ImportFileProcessor getProcessor(String mimeType) {
+        // the lookup is cached by the snapshot it was answered from.
+        Processors processors = this.snapshot;
+        Object processor = processors.lookup(processors.processorsByMimeType,
+                mimeType);
+        if (processor == null) {
+            processor = processors.cache(processors.processorsByMimeType,
+                    mimeType, findProcessor(processors, mimeType));
+        }
+        return processor == NO_PROCESSOR ? null
+                : (ImportFileProcessor) processor;
+    }
+
+    private ImportFileProcessor findProcessor(Processors processors,
+            String mimeType) {
+        for (ImportFileProcessor processor : processors.processors) {
+            LOG.log(Level.INFO,
+                    "checking processor: {0} to support mimetype: {1}",
+                    new Object[]{processor.getClass().getSimpleName(),
+                mimeType});
+            if (processor.isResponsibleFor(mimeType)) {
+                return processor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * returns the source processor that is responsible for the given
+     * mime-type. A responsible {@link ImportSourceProcessor} is preferred,
+     * otherwise a responsible {@link ImportFileProcessor} is adapted.
+     *
+     * @param mimeType the mime-type of the file to process.
+     * @return the processor or null, if there is no responsible processor.
+     */
+    public ImportSourceProcessor getSourceProcessor(String mimeType) {
+        Processors processors = this.snapshot;
+        Object processor = processors.lookup(
+                processors.sourceProcessorsByMimeType, mimeType);
+        if (processor == null) {
+            processor = processors.cache(
+                    processors.sourceProcessorsByMimeType, mimeType,
+                    findSourceProcessor(processors, mimeType));
+        }
+        return processor == NO_PROCESSOR ? null
+                : (ImportSourceProcessor) processor;
+    }
+
+    private ImportSourceProcessor findSourceProcessor(Processors processors,
+            String mimeType) {
+        for (ImportSourceProcessor processor : processors.sourceProcessors) {
+            LOG.log(Level.INFO,
+                    "checking source processor: {0} to support mimetype: {1}",
+                    new Object[]{processor.getClass().getSimpleName(),
+                mimeType});
+            if (processor.isResponsibleFor(mimeType)) {
+                return processor;
+            }
+        }
+        ImportFileProcessor processor = findProcessor(processors, mimeType);
+        return processor == null ? null : new ImportFileProcessorAdapter(
+                processor);
+    }
+
+    /**
+     * loads the processors again and forgets all the responsibilities. The
+     * lookups, that are still running, cache their results in the replaced
+     * snapshot, so no outdated processor is cached.
+     */
+    public synchronized void invalidate() {
+        LOG.info("reloading the processors...");
+        this.snapshot = new Processors(loadProcessors(),
+                loadSourceProcessors());
+    }
+
+    /**
+     * returns the number of registered processors.
+     *
+     * @return
+     */
+    public int getProcessorCount() {
+        Processors processors = this.snapshot;
+        return processors.processors.size() + processors.sourceProcessors
+                .size();
+    }
+
+    /**
+     * returns the number of lookups, that were answered from the cache.
+     *
+     * @return
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * returns the number of lookups, that had to ask the processors.
+     *
+     * @return
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * the loaded processors with the responsibilities, that were found for
+     * them. A snapshot is replaced as a whole, when the registry is
+     * invalidated.
+     */
+    private class Processors {
+
+        private final List<ImportFileProcessor> processors;
+        private final List<ImportSourceProcessor> sourceProcessors;
+        private final ConcurrentMap<String, Object> processorsByMimeType =
+                new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Object> sourceProcessorsByMimeType =
+                new ConcurrentHashMap<>();
+
+        Processors(List<ImportFileProcessor> processors,
+                List<ImportSourceProcessor> sourceProcessors) {
+            this.processors = processors;
+            this.sourceProcessors = sourceProcessors;
+        }
+
+        /**
+         * returns the cached processor or the marker of no processor and counts
+         * the lookup.
+         *
+         * @return the cached value or null, if the mime-type was not looked
+         * up yet.
+         */
+        Object lookup(ConcurrentMap<String, Object> cache, String mimeType) {
+            Object processor = cache.get(mimeType == null ? "" : mimeType);
+            if (processor != null) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+            }
+            return processor;
+        }
+
+        /**
+         * caches the found processor, unless another lookup was faster.
+         *
+         * @return the cached value.
+         */
+        Object cache(ConcurrentMap<String, Object> cache, String mimeType,
+                Object processor) {
+            Object found = processor == null ? NO_PROCESSOR : processor;
+            Object previous = cache.putIfAbsent(mimeType == null ? ""
+                    : mimeType, found);
+            return previous == null ? found : previous;
+        }
+    }
+}
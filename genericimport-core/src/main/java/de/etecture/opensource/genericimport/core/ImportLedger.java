@@ -0,0 +1,465 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * remembers the state of the import files durably.
+ * <p>
+ * each file is identified by a 64 bit fingerprint of its path, size, last
+ * modified timestamp and file key. The state changes are appended as fixed
+ * size records to a memory mapped file, while the latest state of each
+ * fingerprint is held in a compact in-heap index, so checking a file is O(1)
+ * and needs no I/O.
+ * <p>
+ * when the ledger is opened again, only the completed files are remembered.
+ * Files that were discovered or claimed but not completed before are imported
+ * again.
+ * <p>
+ * the states, that are marked after the ledger was closed, are ignored, so
+ * the imports, that are still running, when the endpoint is deactivated, do
+ * not fail.
+ * <p>
+ * N.B. a ledger file must not be shared by more than one
+ * {@link GenericImportSpec}.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class ImportLedger implements Closeable {
+
+    /**
+     * the states of an import file.
+     */
+    enum State {
+
+        DISCOVERED,
+        CLAIMED,
+        COMPLETED;
+
+        byte code() {
+            return (byte) (ordinal() + 1);
+        }
+
+        static State valueOf(byte code) {
+            return code == 0 ? null : values()[code - 1];
+        }
+    }
+    private static final Logger LOG = Logger.getLogger(ImportLedger.class
+            .getName());
+    private static final long MAGIC = 0x47494c4544474552l; // GILEDGER
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 16;
+    private static final int REGION_SIZE = RECORD_SIZE * 65536;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325l;
+    private static final long FNV_PRIME = 0x100000001b3l;
+    private final Path path;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final FingerprintIndex index = new FingerprintIndex();
+    private MappedByteBuffer region;
+    private long regionPosition;
+    private long position = HEADER_SIZE;
+    private long recordCount;
+
+    private ImportLedger(Path path, FileChannel channel, FileLock lock) {
+        this.path = path;
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /**
+     * opens or creates the ledger at the given path.
+     *
+     * @param path the path of the ledger file.
+     * @return the opened ledger.
+     * @throws IOException if the ledger cannot be opened or is in use.
+     */
+    static ImportLedger open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException ex) {
+                lock = null;
+            }
+            if (lock == null) {
+                throw new IOException(String.format(
+                        "the ledger %s is already in use.", path));
+            }
+            ImportLedger ledger = new ImportLedger(path, channel, lock);
+            ledger.load();
+            return ledger;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * calculates the fingerprint of the given file.
+     *
+     * @param file the snapshot of the file.
+     * @return the fingerprint, which is never 0.
+     */
+    static long fingerprint(FileSnapshot file) {
+        long hash = hash(FNV_OFFSET, file.getPath().toAbsolutePath()
+                .toString());
+        hash = hash(hash, file.getSize());
+        hash = hash(hash, file.getLastModified());
+        if (file.getFileKey() != null) {
+            hash = hash(hash, file.getFileKey().toString());
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+
+    private static int checksum(long fingerprint, int state) {
+        return (int) (fingerprint ^ (fingerprint >>> 32) ^ MAGIC) ^ state;
+    }
+
+    /**
+     * returns the path of the ledger file.
+     *
+     * @return
+     */
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * returns the state of the given file.
+     *
+     * @param file the snapshot of the file.
+     * @return the state or null, if the file is unknown.
+     */
+    synchronized State getState(FileSnapshot file) {
+        return State.valueOf(index.get(fingerprint(file)));
+    }
+
+    /**
+     * checks, if the given file is unknown to this ledger.
+     *
+     * @param file the snapshot of the file.
+     * @return true, if the file was neither discovered nor imported before.
+     */
+    synchronized boolean isNew(FileSnapshot file) {
+        return index.get(fingerprint(file)) == 0;
+    }
+
+    /**
+     * remembers the given file as discovered.
+     *
+     * @param file the snapshot of the file.
+     * @return false, if the file was already known.
+     * @throws IOException if the state cannot be written.
+     */
+    synchronized boolean markDiscovered(FileSnapshot file) throws
+            IOException {
+        long fingerprint = fingerprint(file);
+        if (index.get(fingerprint) != 0) {
+            return false;
+        }
+        append(fingerprint, State.DISCOVERED);
+        return true;
+    }
+
+    /**
+     * remembers the given file as claimed by an import.
+     *
+     * @param file the snapshot of the file.
+     * @throws IOException if the state cannot be written.
+     */
+    synchronized void markClaimed(FileSnapshot file) throws IOException {
+        append(fingerprint(file), State.CLAIMED);
+    }
+
+    /**
+     * remembers the given file as completely imported.
+     *
+     * @param file the snapshot of the file.
+     * @throws IOException if the state cannot be written.
+     */
+    synchronized void markCompleted(FileSnapshot file) throws IOException {
+        append(fingerprint(file), State.COMPLETED);
+    }
+
+    private void append(long fingerprint, State state) throws IOException {
+        if (!channel.isOpen()) {
+            // an import, that is still running, when the endpoint is
+            // deactivated. Its file is imported again, like after a crash.
+            LOG.log(Level.FINE, "the ledger {0} is closed, ignoring the "
+                    + "state {1}.", new Object[]{path, state});
+            return;
+        }
+        if (region == null
+                || position + RECORD_SIZE > regionPosition + REGION_SIZE) {
+            // map the next region, this extends the file.
+            regionPosition = position;
+            region = channel.map(FileChannel.MapMode.READ_WRITE,
+                    regionPosition, REGION_SIZE);
+        }
+        int offset = (int) (position - regionPosition);
+        region.putLong(offset, fingerprint);
+        region.putInt(offset + 8, state.code());
+        region.putInt(offset + 12, checksum(fingerprint, state.code()));
+        position += RECORD_SIZE;
+        recordCount++;
+        index.put(fingerprint, state.code());
+    }
+
+    private void load() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.read(header, 0) < HEADER_SIZE) {
+            // a new ledger
+            header.clear();
+            header.putLong(MAGIC).putInt(VERSION).putInt(0).flip();
+            channel.write(header, 0);
+            return;
+        }
+        header.flip();
+        if (header.getLong() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException(String.format(
+                    "the file %s is not an import ledger.", path));
+        }
+        FingerprintIndex records = new FingerprintIndex();
+        ByteBuffer buffer = ByteBuffer.allocate(REGION_SIZE);
+        long readPosition = HEADER_SIZE;
+        long filePosition = HEADER_SIZE;
+        int read;
+        read:
+        while ((read = channel.read(buffer, filePosition)) > 0) {
+            filePosition += read;
+            buffer.flip();
+            while (buffer.remaining() >= RECORD_SIZE) {
+                long fingerprint = buffer.getLong();
+                int state = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (fingerprint == 0 || state < 1 || state > State
+                        .values().length
+                        || checksum != checksum(fingerprint, state)) {
+                    // the end of the written records.
+                    break read;
+                }
+                records.put(fingerprint, (byte) state);
+                readPosition += RECORD_SIZE;
+                recordCount++;
+            }
+            buffer.compact();
+        }
+        // just remember the completed files.
+        records.retain(State.COMPLETED.code(), index);
+        position = readPosition;
+        if (recordCount > 2l * index.size() + REGION_SIZE / RECORD_SIZE) {
+            compact();
+        }
+        LOG.log(Level.INFO, "opened the ledger {0} with {1} imported files.",
+                new Object[]{path, index.size()});
+    }
+
+    /**
+     * rewrites the ledger with just the completed files.
+     */
+    private void compact() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(REGION_SIZE);
+        long writePosition = HEADER_SIZE;
+        for (long fingerprint : index.keys()) {
+            if (buffer.remaining() < RECORD_SIZE) {
+                buffer.flip();
+                writePosition += write(buffer, writePosition);
+                buffer.clear();
+            }
+            buffer.putLong(fingerprint);
+            buffer.putInt(State.COMPLETED.code());
+            buffer.putInt(checksum(fingerprint, State.COMPLETED.code()));
+        }
+        buffer.flip();
+        writePosition += write(buffer, writePosition);
+        channel.truncate(writePosition);
+        channel.force(false);
+        LOG.log(Level.INFO, "compacted the ledger {0} from {1} to {2} records.",
+                new Object[]{path, recordCount, index.size()});
+        position = writePosition;
+        recordCount = index.size();
+    }
+
+    private int write(ByteBuffer buffer, long writePosition) throws
+            IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, writePosition + written);
+        }
+        return written;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (region != null) {
+                region.force();
+                region = null;
+            }
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ImportLedger{%s, %d files}", path, index
+                .size());
+    }
+
+    /**
+     * a hash index of fingerprints to states with open addressing.
+     */
+    private static class FingerprintIndex {
+
+        private long[] keys = new long[1024];
+        private byte[] states = new byte[1024];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        byte get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask);; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return states[i];
+                } else if (keys[i] == 0) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * puts the state of the given key, if it is beyond the actual state.
+         */
+        void put(long key, byte state) {
+            if (2 * (size + 1) > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask);; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    states[i] = (byte) Math.max(states[i], state);
+                    return;
+                } else if (keys[i] == 0) {
+                    keys[i] = key;
+                    states[i] = state;
+                    size++;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * puts all the keys with the given state into the target index.
+         */
+        void retain(byte state, FingerprintIndex target) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0 && states[i] == state) {
+                    target.put(keys[i], state);
+                }
+            }
+        }
+
+        long[] keys() {
+            long[] result = new long[size];
+            int j = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    result[j++] = keys[i];
+                }
+            }
+            return result;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            byte[] oldStates = states;
+            keys = new long[oldKeys.length * 2];
+            states = new byte[oldStates.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i], oldStates[i]);
+                }
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long mixed = key * 0x9e3779b97f4a7c15l;
+            return (int) (mixed ^ (mixed >>> 32)) & mask;
+        }
+    }
+}
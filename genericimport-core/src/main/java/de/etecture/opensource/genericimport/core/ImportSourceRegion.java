@@ -0,0 +1,179 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.spi.ImportSource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * a region of a {@link FileImportSource}, that is imported as a chunk of the
+ * file.
+ * <p>
+ * the regions of a file share its channel. They read with positional reads,
+ * so they can be read concurrently without moving the position of the shared
+ * channel.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class ImportSourceRegion implements ImportSource {
+
+    private final FileImportSource source;
+    private final long offset;
+    private final long size;
+    private RegionChannel channel;
+
+    ImportSourceRegion(FileImportSource source, long offset, long size) {
+        this.source = source;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /**
+     * returns the position of this region in the file.
+     *
+     * @return
+     */
+    long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String getName() {
+        return source.getName();
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * returns null, because a region is not a whole file.
+     *
+     * @return null
+     */
+    @Override
+    public File getFile() {
+        return null;
+    }
+
+    @Override
+    public synchronized ReadableByteChannel getChannel() throws IOException {
+        if (channel == null) {
+            channel = new RegionChannel(source.getChannel());
+        }
+        return channel;
+    }
+
+    @Override
+    public boolean isMappable() {
+        return source.isMappable();
+    }
+
+    @Override
+    public ByteBuffer map(long position, long length) throws IOException {
+        if (position < 0 || length < 0 || position + length > size) {
+            throw new IllegalArgumentException(String.format(
+                    "cannot map %d bytes at %d of a chunk with %d bytes",
+                    length, position, size));
+        }
+        return source.map(offset + position, length);
+    }
+
+    /**
+     * reads the bytes of the region with positional reads from the channel of
+     * the file.
+     */
+    private class RegionChannel implements ReadableByteChannel {
+
+        private final FileChannel fileChannel;
+        private long position;
+        private boolean open = true;
+
+        RegionChannel(FileChannel fileChannel) {
+            this.fileChannel = fileChannel;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            long remaining = size - position;
+            if (remaining <= 0) {
+                return -1;
+            }
+            int limit = dst.limit();
+            if (dst.remaining() > remaining) {
+                dst.limit(dst.position() + (int) remaining);
+            }
+            try {
+                int read = fileChannel.read(dst, offset + position);
+                if (read > 0) {
+                    position += read;
+                }
+                return read;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open && fileChannel.isOpen();
+        }
+
+        /**
+         * closes the region only, the channel of the file is closed with the
+         * file.
+         */
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * holds the resources, that the scans and the imports of a
+ * {@link GenericImportSpec} share.
+ * <p>
+ * the metrics and the disposition are created from the spec, while the
+ * ledger, the tail offsets and the claims are opened by the connector and
+ * released by {@link #close()}. Each of them is null, if the spec does not
+ * use it.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class ImportSpecContext {
+
+    private static final Logger LOG = Logger.getLogger(ImportSpecContext.class
+            .getName());
+    private final ImportLedger ledger;
+    private final TailOffsetStore tailOffsets;
+    private final FileClaims claims;
+    private final ImportSpecMetrics metrics;
+    private final ImportFileDisposition disposition;
+
+    /**
+     * constructs the context of a spec without a ledger, tail offsets and
+     * claims.
+     *
+     * @param spec
+     */
+    ImportSpecContext(GenericImportSpec spec) {
+        this(spec, null, null, null);
+    }
+
+    /**
+     * constructs the context of a spec.
+     *
+     * @param spec
+     * @param ledger the ledger of the imported files or null.
+     * @param tailOffsets the imported bytes of the files in tail mode or null.
+     * @param claims the claims of a shared import path or null.
+     */
+    ImportSpecContext(GenericImportSpec spec, ImportLedger ledger,
+            TailOffsetStore tailOffsets, FileClaims claims) {
+        this.ledger = ledger;
+        this.tailOffsets = tailOffsets;
+        this.claims = claims;
+        this.metrics = new ImportSpecMetrics(spec.getImportPath());
+        this.disposition = ImportFileDisposition.of(spec);
+    }
+
+    /**
+     * returns the ledger of the imported files.
+     *
+     * @return the ledger or null, if the files are filtered by their
+     * timestamp.
+     */
+    ImportLedger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * returns the imported bytes of the files in tail mode.
+     *
+     * @return the offsets or null, if the files are imported as a whole.
+     */
+    TailOffsetStore getTailOffsets() {
+        return tailOffsets;
+    }
+
+    /**
+     * returns the claims of the files.
+     *
+     * @return the claims or null, if the import path is not shared.
+     */
+    FileClaims getClaims() {
+        return claims;
+    }
+
+    /**
+     * returns the metrics of the imports of the spec.
+     *
+     * @return the metrics
+     */
+    ImportSpecMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * returns the disposition of the imported files.
+     *
+     * @return the disposition or null, if the files stay in the import
+     * directory.
+     */
+    ImportFileDisposition getDisposition() {
+        return disposition;
+    }
+
+    /**
+     * stops the heartbeat of the claims and closes the ledger and the tail
+     * offsets. A failure is logged, so the other resources are released
+     * anyway.
+     */
+    void close() {
+        release(ledger, tailOffsets, claims);
+    }
+
+    /**
+     * releases the given resources, e.g. the resources, that were opened
+     * before another resource of the spec could not be opened.
+     *
+     * @param ledger the ledger or null.
+     * @param tailOffsets the tail offsets or null.
+     * @param claims the claims or null.
+     */
+    static void release(ImportLedger ledger, TailOffsetStore tailOffsets,
+            FileClaims claims) {
+        if (claims != null) {
+            claims.stopHeartbeat();
+        }
+        if (ledger != null) {
+            try {
+                ledger.close();
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, String.format(
+                        "cannot close the ledger: %s", ledger.getPath()), ex);
+            }
+        }
+        if (tailOffsets != null) {
+            try {
+                tailOffsets.close();
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, String.format(
+                        "cannot close the tail offsets: %s", tailOffsets
+                        .getPath()), ex);
+            }
+        }
+    }
+}
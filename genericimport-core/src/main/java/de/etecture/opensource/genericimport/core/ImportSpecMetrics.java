@@ -0,0 +1,211 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * collects the metrics of the imports of a {@link GenericImportSpec}.
+ * <p>
+ * the counters are {@link StripedCounter}s, so they can be updated on the hot
+ * path of the imports. The gauges are read from the queue of the spec when
+ * they are requested.
+ * <p>
+ * the files that are dispatched but not imported yet are remembered with
+ * their last modified timestamp until their import is done, so the age of the
+ * oldest of them can be computed. If a scan is suspended, the oldest file left
+ * in the directory is remembered, too.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class ImportSpecMetrics implements ImportSpecMetricsMBean {
+
+    private final String importPath;
+    private final StripedCounter filesDiscovered = new StripedCounter();
+    private final StripedCounter filesImported = new StripedCounter();
+    private final StripedCounter filesFailed = new StripedCounter();
+    private final StripedCounter recordsDelivered = new StripedCounter();
+    private final StripedCounter bytesRead = new StripedCounter();
+    private final Map<Path, Long> unprocessedFiles = new ConcurrentHashMap<>();
+    private volatile long oldestWaitingFile;
+    private volatile long lastScanDuration;
+    private volatile FileAgentWork agent;
+    private volatile ImportDispatcher.SpecQueue queue;
+
+    ImportSpecMetrics(String importPath) {
+        this.importPath = importPath;
+    }
+
+    void setAgent(FileAgentWork agent) {
+        this.agent = agent;
+    }
+
+    void setQueue(ImportDispatcher.SpecQueue queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * counts a file, that was dispatched to be imported.
+     *
+     * @param file the dispatched file.
+     */
+    void fileDiscovered(FileSnapshot file) {
+        filesDiscovered.increment();
+        unprocessedFiles.put(file.getPath(), file.getLastModified());
+    }
+
+    /**
+     * forgets a dispatched file, that is not imported by this node, e.g. as
+     * another node claimed it. The file is neither counted as imported nor
+     * as failed.
+     *
+     * @param file the dispatched file.
+     */
+    void fileSkipped(FileSnapshot file) {
+        unprocessedFiles.remove(file.getPath());
+    }
+
+    /**
+     * counts a file, whose import is done.
+     *
+     * @param file the imported file.
+     * @param bytes the number of bytes imported.
+     * @param failed true, if the import failed.
+     */
+    void fileImported(FileSnapshot file, long bytes, boolean failed) {
+        if (failed) {
+            filesFailed.increment();
+        } else {
+            filesImported.increment();
+        }
+        bytesRead.add(bytes);
+        unprocessedFiles.remove(file.getPath());
+    }
+
+    /**
+     * counts the pieces of progress, that were delivered.
+     *
+     * @param count the number of pieces.
+     */
+    void recordsDelivered(int count) {
+        recordsDelivered.add(count);
+    }
+
+    /**
+     * remembers the duration of a scan.
+     *
+     * @param duration the duration in ms.
+     * @param oldestWaitingFile the last modified timestamp of the oldest file
+     * left in the directory, because the scan was suspended, or 0.
+     */
+    void scanned(long duration, long oldestWaitingFile) {
+        this.lastScanDuration = duration;
+        this.oldestWaitingFile = oldestWaitingFile;
+    }
+
+    @Override
+    public String getImportPath() {
+        return importPath;
+    }
+
+    @Override
+    public long getFilesDiscovered() {
+        return filesDiscovered.sum();
+    }
+
+    @Override
+    public long getFilesImported() {
+        return filesImported.sum();
+    }
+
+    @Override
+    public long getFilesFailed() {
+        return filesFailed.sum();
+    }
+
+    @Override
+    public long getRecordsDelivered() {
+        return recordsDelivered.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public int getInFlightImports() {
+        ImportDispatcher.SpecQueue specQueue = queue;
+        return specQueue == null ? 0 : specQueue.getInFlightCount();
+    }
+
+    @Override
+    public int getPendingImports() {
+        ImportDispatcher.SpecQueue specQueue = queue;
+        return specQueue == null ? 0 : specQueue.getPendingCount();
+    }
+
+    @Override
+    public long getLastScanDuration() {
+        return lastScanDuration;
+    }
+
+    @Override
+    public long getSkippedScans() {
+        FileAgentWork work = agent;
+        return work == null ? 0l : work.getSkippedScanCount();
+    }
+
+    @Override
+    public long getOldestUnprocessedFileAge() {
+        long oldest = oldestWaitingFile;
+        for (long lastModified : unprocessedFiles.values()) {
+            if (oldest == 0l || lastModified < oldest) {
+                oldest = lastModified;
+            }
+        }
+        return oldest == 0l ? 0l : Math.max(0l, System.currentTimeMillis()
+                - oldest);
+    }
+}
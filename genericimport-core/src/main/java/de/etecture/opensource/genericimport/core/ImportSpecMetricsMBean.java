@@ -0,0 +1,128 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+/**
+ * the management interface of the metrics of a {@link GenericImportSpec}.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public interface ImportSpecMetricsMBean {
+
+    /**
+     * returns the directory, that is scanned for the spec.
+     *
+     * @return the path
+     */
+    String getImportPath();
+
+    /**
+     * returns the number of files, that were found and dispatched.
+     *
+     * @return the count
+     */
+    long getFilesDiscovered();
+
+    /**
+     * returns the number of files, that were completely imported.
+     *
+     * @return the count
+     */
+    long getFilesImported();
+
+    /**
+     * returns the number of files, whose import failed.
+     *
+     * @return the count
+     */
+    long getFilesFailed();
+
+    /**
+     * returns the number of pieces of progress delivered to the endpoints.
+     *
+     * @return the count
+     */
+    long getRecordsDelivered();
+
+    /**
+     * returns the number of bytes of the imported files.
+     *
+     * @return the count
+     */
+    long getBytesRead();
+
+    /**
+     * returns the number of imports running now.
+     *
+     * @return the count
+     */
+    int getInFlightImports();
+
+    /**
+     * returns the number of imports waiting to be started.
+     *
+     * @return the count
+     */
+    int getPendingImports();
+
+    /**
+     * returns the duration of the last scan of the directory.
+     *
+     * @return the duration in ms
+     */
+    long getLastScanDuration();
+
+    /**
+     * returns the number of scans, that were skipped, because the previous
+     * scan was still running.
+     *
+     * @return the count
+     */
+    long getSkippedScans();
+
+    /**
+     * returns the age of the oldest file, that is found but not imported yet.
+     *
+     * @return the age in ms or 0, if there is no such file.
+     */
+    long getOldestUnprocessedFileAge();
+}
@@ -0,0 +1,248 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.api.ImportStatusListener;
+import de.etecture.opensource.genericimport.spi.SplittableImportSourceProcessor;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkManager;
+
+/**
+ * splits a file at the record boundaries into chunks and processes the chunks
+ * in parallel.
+ * <p>
+ * the chunks are put into a queue, that is drained by the importing thread and
+ * by up to parallelism - 1 helper works of the {@link WorkManager}. So the
+ * import goes on, even if the work manager has no thread left for a helper.
+ * If a chunk fails, the chunks that are not started yet are skipped and the
+ * failure is thrown, when the started chunks are finished.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class ImportSplitter {
+
+    private static final Logger LOG = Logger.getLogger(ImportSplitter.class
+            .getName());
+    private final WorkManager workManager;
+    private final int parallelism;
+
+    /**
+     * constructs a new splitter.
+     *
+     * @param workManager the work manager to schedule the helpers with or null
+     * to process the chunks sequentially.
+     * @param parallelism the maximum number of threads that process the chunks
+     * of one file. 0 or less uses one thread per processor.
+     */
+    ImportSplitter(WorkManager workManager, int parallelism) {
+        this.workManager = workManager;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime
+                .getRuntime().availableProcessors();
+    }
+
+    /**
+     * splits the file into chunks of at least the given size.
+     *
+     * @param processor the processor that knows the record boundaries
+     * @param source the file to split
+     * @param splitSize the minimum size of a chunk
+     * @return the chunks in the order of the file
+     * @throws IOException if the file cannot be read.
+     */
+    List<ImportSourceRegion> split(SplittableImportSourceProcessor processor,
+            FileImportSource source, long splitSize) throws IOException {
+        return split(processor, source, 0l, source.getSize(), splitSize);
+    }
+
+    /**
+     * splits a region of the file into chunks of at least the given size.
+     *
+     * @param processor the processor that knows the record boundaries
+     * @param source the file to split
+     * @param start the start of the region, that is a record boundary
+     * @param size the end of the region, that is a record boundary
+     * @param splitSize the minimum size of a chunk or 0, to not split the
+     * region.
+     * @return the chunks in the order of the file
+     * @throws IOException if the file cannot be read.
+     */
+    List<ImportSourceRegion> split(SplittableImportSourceProcessor processor,
+            FileImportSource source, long start, long size, long splitSize)
+            throws IOException {
+        if (splitSize <= 0) {
+            splitSize = size - start;
+        }
+        List<ImportSourceRegion> chunks = new ArrayList<>();
+        while (start < size) {
+            long end = size - start <= splitSize ? size : Math.min(size,
+                    Math.max(start + splitSize, processor.nextRecordBoundary(
+                    source, start + splitSize)));
+            chunks.add(new ImportSourceRegion(source, start, end - start));
+            start = end;
+        }
+        LOG.log(Level.FINE, "split {0} into {1} chunks", new Object[]{
+            source.getName(), chunks.size()});
+        return chunks;
+    }
+
+    /**
+     * processes the chunks in parallel and returns, when all the chunks are
+     * processed.
+     *
+     * @param processor the processor of the chunks
+     * @param mimeType the mime-type of the file
+     * @param chunks the chunks to process
+     * @param importId the id of the import, the chunks belong to
+     * @param listener the listener to report the progress to
+     * @param accumulator the accumulator of the import to create an
+     * accumulator per thread from or null, if the progress is not collected.
+     * @throws IOException if a chunk cannot be read or the import is
+     * interrupted.
+     */
+    void process(SplittableImportSourceProcessor processor, String mimeType,
+            List<ImportSourceRegion> chunks, String importId,
+            ImportStatusListener<Object> listener,
+            ProgressAccumulator accumulator) throws IOException {
+        ChunkWork work = new ChunkWork(processor, mimeType, chunks, importId,
+                listener, accumulator);
+        int helpers = workManager == null ? 0 : Math.min(parallelism, chunks
+                .size()) - 1;
+        for (int i = 0; i < helpers; i++) {
+            try {
+                workManager.scheduleWork(work);
+            } catch (WorkException ex) {
+                LOG.log(Level.FINE, "cannot schedule a helper: {0}", ex
+                        .getMessage());
+                break;
+            }
+        }
+        work.run();
+        try {
+            work.done.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format(
+                    "interrupted while importing the chunks of %s", importId));
+        }
+        Throwable failure = work.failure.get();
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    /**
+     * drains the chunks of one file. The same work is run by all the threads
+     * of the file.
+     */
+    private static class ChunkWork implements Work {
+
+        private final SplittableImportSourceProcessor processor;
+        private final String mimeType;
+        private final String importId;
+        private final ImportStatusListener<Object> listener;
+        private final ProgressAccumulator accumulator;
+        private final Queue<ImportSourceRegion> chunks;
+        private final CountDownLatch done;
+        private final AtomicReference<Throwable> failure =
+                new AtomicReference<>();
+
+        ChunkWork(SplittableImportSourceProcessor processor, String mimeType,
+                List<ImportSourceRegion> chunks, String importId,
+                ImportStatusListener<Object> listener,
+                ProgressAccumulator accumulator) {
+            this.processor = processor;
+            this.mimeType = mimeType;
+            this.importId = importId;
+            this.listener = listener;
+            this.accumulator = accumulator;
+            this.chunks = new ConcurrentLinkedQueue<>(chunks);
+            this.done = new CountDownLatch(chunks.size());
+        }
+
+        @Override
+        public void release() {
+        }
+
+        @Override
+        public void run() {
+            ProgressAccumulator threadAccumulator = accumulator == null ? null
+                    : accumulator.newAccumulator();
+            ImportSourceRegion chunk;
+            while ((chunk = chunks.poll()) != null) {
+                try {
+                    if (failure.get() == null) {
+                        processor.processChunk(mimeType, chunk, importId,
+                                threadAccumulator == null ? listener
+                                : threadAccumulator);
+                        if (threadAccumulator != null) {
+                            threadAccumulator.flush();
+                        }
+                    }
+                } catch (Throwable t) {
+                    LOG.log(Level.SEVERE, String.format(
+                            "cannot import the chunk at %d of %s: %s", chunk
+                            .getOffset(), importId, t.getMessage()), t);
+                    failure.compareAndSet(null, t);
+                } finally {
+                    done.countDown();
+                }
+            }
+        }
+    }
+}
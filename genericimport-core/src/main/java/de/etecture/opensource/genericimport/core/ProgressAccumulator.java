@@ -0,0 +1,162 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.api.BatchImportStatusListener;
+import de.etecture.opensource.genericimport.api.ImportStatusListener;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * collects the pieces reported by a processor and delivers them in batches to
+ * a {@link BatchImportStatusListener}.
+ * <p>
+ * a batch is delivered, as soon as it holds the maximum number of pieces, the
+ * estimated size of its pieces exceeds the maximum number of bytes or its
+ * first piece is older than the maximum delay. The age is checked whenever a
+ * piece is added. All the other callbacks deliver the pending batch first, so
+ * the order of the callbacks is kept.
+ * <p>
+ * N.B. an accumulator is used by one import and is not thread-safe.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class ProgressAccumulator implements ImportStatusListener<Object> {
+
+    private final BatchImportStatusListener<Object> delegate;
+    private final int maxRecords;
+    private final long maxBytes;
+    private final long maxDelay;
+    private List<Object> batch;
+    private String batchImportId;
+    private long batchBytes;
+    private long batchStarted;
+
+    ProgressAccumulator(BatchImportStatusListener<Object> delegate,
+            int maxRecords, long maxBytes, long maxDelay) {
+        this.delegate = delegate;
+        this.maxRecords = Math.max(1, maxRecords);
+        this.maxBytes = maxBytes;
+        this.maxDelay = maxDelay;
+        this.batch = new ArrayList<>(this.maxRecords);
+    }
+
+    /**
+     * creates a new accumulator with the same delegate and limits, e.g. for
+     * another thread of the same import.
+     *
+     * @return the new accumulator
+     */
+    ProgressAccumulator newAccumulator() {
+        return new ProgressAccumulator(delegate, maxRecords, maxBytes,
+                maxDelay);
+    }
+
+    @Override
+    public void onStart(String importId) {
+        flush();
+        delegate.onStart(importId);
+    }
+
+    @Override
+    public void onFinished(String importId) {
+        flush();
+        delegate.onFinished(importId);
+    }
+
+    @Override
+    public void onProgress(String importId, Object payload) {
+        if (batch.isEmpty()) {
+            batchImportId = importId;
+            batchStarted = maxDelay > 0 ? System.currentTimeMillis() : 0l;
+        } else if (!batchImportId.equals(importId)) {
+            flush();
+            onProgress(importId, payload);
+            return;
+        }
+        batch.add(payload);
+        batchBytes += estimateSize(payload);
+        if (batch.size() >= maxRecords
+                || (maxBytes > 0 && batchBytes >= maxBytes)
+                || (maxDelay > 0
+                && System.currentTimeMillis() - batchStarted >= maxDelay)) {
+            flush();
+        }
+    }
+
+    @Override
+    public void onError(String importId, String message, Object... args) {
+        flush();
+        delegate.onError(importId, message, args);
+    }
+
+    @Override
+    public void onWarning(String importId, String message, Object... args) {
+        flush();
+        delegate.onWarning(importId, message, args);
+    }
+
+    /**
+     * delivers the pending batch, if there is one.
+     */
+    void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Object> payloads = batch;
+        batch = new ArrayList<>(maxRecords);
+        batchBytes = 0l;
+        delegate.onProgressBatch(batchImportId, payloads);
+    }
+
+    private static long estimateSize(Object payload) {
+        if (payload instanceof byte[]) {
+            return ((byte[]) payload).length;
+        } else if (payload instanceof CharSequence) {
+            return ((CharSequence) payload).length();
+        } else if (payload instanceof ByteBuffer) {
+            return ((ByteBuffer) payload).remaining();
+        }
+        return 0l;
+    }
+}
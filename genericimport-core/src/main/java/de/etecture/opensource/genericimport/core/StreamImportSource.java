@@ -0,0 +1,127 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.spi.ImportSource;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * an {@link ImportSource}, whose bytes are read from a stream, e.g. the
+ * decompressed bytes of an archive.
+ * <p>
+ * the stream is opened, when the channel is requested first. A stream cannot
+ * be mapped into memory and has no file.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+abstract class StreamImportSource implements ImportSource, Closeable {
+
+    private final String name;
+    private final long size;
+    private ReadableByteChannel channel;
+
+    StreamImportSource(String name, long size) {
+        this.name = name;
+        this.size = size;
+    }
+
+    /**
+     * opens the stream of the bytes.
+     *
+     * @return the stream
+     * @throws IOException if the stream cannot be opened.
+     */
+    protected abstract InputStream openStream() throws IOException;
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * returns null, because the bytes are not stored in a file.
+     *
+     * @return null
+     */
+    @Override
+    public File getFile() {
+        return null;
+    }
+
+    @Override
+    public synchronized ReadableByteChannel getChannel() throws IOException {
+        if (channel == null) {
+            channel = Channels.newChannel(openStream());
+        }
+        return channel;
+    }
+
+    @Override
+    public boolean isMappable() {
+        return false;
+    }
+
+    @Override
+    public ByteBuffer map(long position, long length) {
+        throw new UnsupportedOperationException(String.format(
+                "cannot map the stream of %s", name));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
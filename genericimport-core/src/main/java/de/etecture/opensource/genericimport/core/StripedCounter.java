@@ -0,0 +1,119 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * a counter, that is cheap to increment by many threads concurrently.
+ * <p>
+ * the count is spread over a number of cells, each on its own cache line, and
+ * a thread increments the cell of its id. So threads rarely contend for the
+ * same cell, while the sum is computed on read only. The sum is not an atomic
+ * snapshot, if the counter is incremented concurrently.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class StripedCounter {
+
+    /**
+     * the distance of two cells in longs, so each cell has a cache line of
+     * its own.
+     */
+    private static final int PADDING = 8;
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    /**
+     * constructs a new counter with a cell per processor.
+     */
+    StripedCounter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * constructs a new counter.
+     *
+     * @param stripes the minimum number of cells.
+     */
+    StripedCounter(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.mask = size - 1;
+        this.cells = new AtomicLongArray(size * PADDING);
+    }
+
+    /**
+     * adds the given value.
+     *
+     * @param value the value to add.
+     */
+    void add(long value) {
+        long id = Thread.currentThread().getId();
+        int cell = (int) (id ^ (id >>> 16)) & mask;
+        cells.addAndGet(cell * PADDING, value);
+    }
+
+    /**
+     * increments the counter by one.
+     */
+    void increment() {
+        add(1l);
+    }
+
+    /**
+     * returns the sum of all the cells.
+     *
+     * @return the count.
+     */
+    long sum() {
+        long sum = 0l;
+        for (int i = 0; i <= mask; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * remembers durably how many bytes of each file are imported in tail mode.
+ * <p>
+ * each file is remembered by its path with the offset of the first byte not
+ * imported yet and its file key (e.g. the inode). If the file key of a path
+ * changes, the file was rotated, and if the file is shorter than the offset,
+ * it was truncated. In both cases the file is imported from its start again.
+ * <p>
+ * each commit appends a line to the store, so a commit does not depend on the
+ * number of files. When the store holds too many outdated lines, it is
+ * compacted to a temporary file, that atomically replaces the store, and the
+ * offsets of the files, that do not exist anymore, are dropped. A line, that
+ * was not written completely, is ignored. Without a path the offsets are
+ * remembered until the connector is stopped only.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class TailOffsetStore implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(TailOffsetStore.class
+            .getName());
+    private static final String NO_FILE_KEY = "-";
+    private static final int COMPACT_THRESHOLD = 1024;
+    private final Path path;
+    private final Map<Path, Offset> offsets = new HashMap<>();
+    private final ConcurrentMap<Path, ReentrantLock> locks =
+            new ConcurrentHashMap<>();
+    private FileChannel channel;
+    private long lineCount;
+    private boolean closed;
+
+    private TailOffsetStore(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * opens or creates the store at the given path.
+     *
+     * @param path the path of the store or null, to remember the offsets in
+     * memory only.
+     * @return the opened store.
+     * @throws IOException if the store cannot be read.
+     */
+    static TailOffsetStore open(Path path) throws IOException {
+        TailOffsetStore store = new TailOffsetStore(path);
+        if (path != null) {
+            store.load();
+        }
+        return store;
+    }
+
+    /**
+     * returns the path of the store.
+     *
+     * @return the path or null, if the offsets are held in memory only.
+     */
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * returns the lock of the given file, that must be held while the file
+     * is imported, so the appended bytes are imported once.
+     *
+     * @param file the path of the file.
+     * @return the lock of the file.
+     */
+    ReentrantLock getLock(Path file) {
+        Path key = file.toAbsolutePath();
+        ReentrantLock lock = locks.get(key);
+        if (lock == null) {
+            ReentrantLock newLock = new ReentrantLock();
+            lock = locks.putIfAbsent(key, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+    /**
+     * returns the offset of the first byte of the given file, that is not
+     * imported yet.
+     *
+     * @param file the snapshot of the file.
+     * @return the offset or 0, if the file is unknown, was rotated or was
+     * truncated.
+     */
+    synchronized long getOffset(FileSnapshot file) {
+        Offset offset = offsets.get(file.getPath().toAbsolutePath());
+        if (offset == null) {
+            return 0l;
+        } else if (!offset.fileKey.equals(fileKey(file))) {
+            LOG.log(Level.INFO, "the file {0} was rotated.", file.getName());
+            return 0l;
+        } else if (offset.position > file.getSize()) {
+            LOG.log(Level.INFO, "the file {0} was truncated.", file.getName());
+            return 0l;
+        }
+        return offset.position;
+    }
+
+    /**
+     * remembers, that the given file is imported up to the given offset.
+     *
+     * @param file the snapshot of the file.
+     * @param position the offset of the first byte not imported yet.
+     * @throws IOException if the store cannot be written.
+     */
+    synchronized void commit(FileSnapshot file, long position) throws
+            IOException {
+        Path key = file.getPath().toAbsolutePath();
+        Offset offset = new Offset(fileKey(file), position);
+        offsets.put(key, offset);
+        if (path == null || closed) {
+            // an import, that is still running, after the store was closed.
+            return;
+        }
+        if (lineCount >= 2l * offsets.size() + COMPACT_THRESHOLD) {
+            compact();
+        } else {
+            append(key, offset);
+        }
+    }
+
+    private static String fileKey(FileSnapshot file) {
+        // the key must not contain the separator of the store.
+        return file.getFileKey() == null ? NO_FILE_KEY : file.getFileKey()
+                .toString().replace('\t', ' ');
+    }
+
+    private static String line(Path file, Offset offset) {
+        return new StringBuilder().append(offset.position).append('\t')
+                .append(offset.fileKey).append('\t').append(file).append('\n')
+                .toString();
+    }
+
+    private void append(Path file, Offset offset) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(line(file, offset));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        lineCount++;
+    }
+
+    private void load() throws IOException {
+        String content;
+        try {
+            content = new String(Files.readAllBytes(path),
+                    StandardCharsets.UTF_8);
+        } catch (NoSuchFileException ex) {
+            return;
+        }
+        int start = 0;
+        int end;
+        while ((end = content.indexOf('\n', start)) >= 0) {
+            String line = content.substring(start, end);
+            start = end + 1;
+            lineCount++;
+            String[] fields = line.split("\t", 3);
+            if (fields.length < 3) {
+                continue;
+            }
+            try {
+                offsets.put(Paths.get(fields[2]), new Offset(fields[1], Long
+                        .parseLong(fields[0])));
+            } catch (IllegalArgumentException ex) {
+                LOG.log(Level.WARNING, "skipping the invalid line: {0}", line);
+            }
+        }
+        if (start < content.length()
+                || lineCount >= 2l * offsets.size() + COMPACT_THRESHOLD) {
+            // the last line was not written completely or the store holds
+            // too many outdated lines.
+            compact();
+        }
+        LOG.log(Level.INFO, "opened the tail offsets {0} of {1} files.",
+                new Object[]{path, offsets.size()});
+    }
+
+    /**
+     * rewrites the store with the latest offsets of the existing files.
+     */
+    private void compact() throws IOException {
+        long previousCount = lineCount;
+        StringBuilder content = new StringBuilder();
+        for (Iterator<Map.Entry<Path, Offset>> it = offsets.entrySet()
+                .iterator(); it.hasNext();) {
+            Map.Entry<Path, Offset> entry = it.next();
+            if (Files.notExists(entry.getKey())) {
+                it.remove();
+                dropLock(entry.getKey());
+                continue;
+            }
+            content.append(line(entry.getKey(), entry.getValue()));
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel tempChannel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(content
+                    .toString());
+            while (buffer.hasRemaining()) {
+                tempChannel.write(buffer);
+            }
+            tempChannel.force(false);
+        }
+        // the lines are appended to the new store.
+        closeChannel();
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        lineCount = offsets.size();
+        LOG.log(Level.FINE, "compacted the tail offsets {0} from {1} to {2} "
+                + "lines.", new Object[]{path, previousCount, lineCount});
+    }
+
+    private void dropLock(Path file) {
+        ReentrantLock lock = locks.get(file);
+        // a lock, that is held or awaited, is still in use.
+        if (lock != null && !lock.isLocked() && !lock.hasQueuedThreads()) {
+            locks.remove(file, lock);
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            try {
+                channel.close();
+            } finally {
+                channel = null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        closeChannel();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TailOffsetStore{%s}", path);
+    }
+
+    /**
+     * the imported bytes of a file.
+     */
+    private static class Offset {
+
+        private final String fileKey;
+        private final long position;
+
+        Offset(String fileKey, long position) {
+            this.fileKey = fileKey;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * a hashed timing wheel, that runs delayed tasks of all the works with one
+ * {@link Timer}.
+ * <p>
+ * the wheel has a fixed number of buckets, each covering one tick. A task is
+ * put into the bucket of the tick, it is due at, so scheduling and cancelling
+ * a task are O(1). With each tick the timer thread runs the due tasks of the
+ * current bucket, the tasks due in a later round stay in the bucket.
+ * <p>
+ * a task is never run before its delay, but up to one tick later. The tasks
+ * are run by the timer thread, so they must return quickly, e.g. by
+ * scheduling a work instead of doing it.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+class TimingWheel {
+
+    private static final Logger LOG = Logger.getLogger(TimingWheel.class
+            .getName());
+    static final long DEFAULT_TICK_DURATION = 100l;
+    static final int DEFAULT_WHEEL_SIZE = 512;
+    private final Timer timer;
+    private final long tickDuration;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final long startTime;
+    private long currentTick;
+    private int size;
+
+    /**
+     * constructs a new wheel with the default tick duration and size.
+     *
+     * @param timer the timer to drive the wheel, it is owned by the wheel.
+     */
+    TimingWheel(Timer timer) {
+        this(timer, DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * constructs a new wheel.
+     *
+     * @param timer the timer to drive the wheel, it is owned by the wheel.
+     * @param tickDuration the duration of a tick in ms.
+     * @param wheelSize the number of buckets, it is rounded up to a power of
+     * two.
+     */
+    TimingWheel(Timer timer, long tickDuration, int wheelSize) {
+        this.timer = timer;
+        this.tickDuration = tickDuration;
+        int bucketCount = Integer.highestOneBit(Math.max(1, wheelSize - 1))
+                << 1;
+        this.buckets = new Timeout[bucketCount];
+        this.mask = bucketCount - 1;
+        this.startTime = System.currentTimeMillis();
+        timer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, tickDuration, tickDuration);
+    }
+
+    /**
+     * schedules a task.
+     *
+     * @param task the task to run
+     * @param delay the delay in ms
+     * @return the timeout to cancel the task
+     */
+    synchronized Timeout schedule(Runnable task, long delay) {
+        // the n-th tick runs at or after startTime + n * tickDuration.
+        long deadline = System.currentTimeMillis() + Math.max(0l, delay)
+                - startTime;
+        long dueTick = Math.max(currentTick + 1, (deadline + tickDuration - 1)
+                / tickDuration);
+        Timeout timeout = new Timeout(task, dueTick);
+        int index = (int) (timeout.dueTick & mask);
+        timeout.next = buckets[index];
+        if (timeout.next != null) {
+            timeout.next.previous = timeout;
+        }
+        buckets[index] = timeout;
+        size++;
+        return timeout;
+    }
+
+    /**
+     * returns the number of scheduled tasks.
+     *
+     * @return
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * stops the wheel, the scheduled tasks are not run anymore.
+     */
+    void stop() {
+        timer.cancel();
+    }
+
+    private void tick() {
+        List<Runnable> dueTasks = new ArrayList<>();
+        synchronized (this) {
+            currentTick++;
+            int index = (int) (currentTick & mask);
+            Timeout timeout = buckets[index];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.dueTick <= currentTick) {
+                    remove(timeout);
+                    dueTasks.add(timeout.task);
+                }
+                timeout = next;
+            }
+        }
+        for (Runnable task : dueTasks) {
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                LOG.log(Level.SEVERE, "a scheduled task failed", ex);
+            }
+        }
+    }
+
+    private void remove(Timeout timeout) {
+        int index = (int) (timeout.dueTick & mask);
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            buckets[index] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.removed = true;
+        size--;
+    }
+
+    /**
+     * a scheduled task.
+     */
+    class Timeout {
+
+        private final Runnable task;
+        private final long dueTick;
+        private Timeout previous;
+        private Timeout next;
+        private boolean removed;
+
+        private Timeout(Runnable task, long dueTick) {
+            this.task = task;
+            this.dueTick = dueTick;
+        }
+
+        /**
+         * cancels the task, if it is not run yet.
+         *
+         * @return false, if the task was already run or cancelled.
+         */
+        boolean cancel() {
+            synchronized (TimingWheel.this) {
+                if (removed) {
+                    return false;
+                }
+                remove(this);
+                return true;
+            }
+        }
+    }
+}
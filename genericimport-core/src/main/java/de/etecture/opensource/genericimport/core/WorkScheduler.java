@@ -40,17 +40,17 @@
 package de.etecture.opensource.genericimport.core;
 
 import de.etecture.opensource.genericimport.cron.ScheduleExpression;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.resource.spi.BootstrapContext;
 import javax.resource.spi.UnavailableException;
 import javax.resource.spi.work.ExecutionContext;
 import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkAdapter;
+import javax.resource.spi.work.WorkEvent;
 import javax.resource.spi.work.WorkException;
 import javax.resource.spi.work.WorkListener;
 import javax.resource.spi.work.WorkManager;
@@ -58,6 +58,11 @@ import org.joda.time.DateTime;
 
 /**
  * schedules a repeated execution of a work.
+ * <p>
+ * all the works are scheduled on one {@link TimingWheel}, so the scheduler
+ * needs one timer thread, regardless of the number of works. When a work is
+ * due, it is handed to the work manager and rescheduled at once, so the timer
+ * thread is never blocked by a work.
  *
  * @author rhk
  * @version ${project.version}
@@ -69,7 +74,9 @@ public class WorkScheduler {
             Logger.getLogger(WorkScheduler.class.getName());
     private final BootstrapContext bootCtx;
     private final ExecutionContext execCtx;
-    private final Map<Work, Timer> scheduledWorks = new HashMap<>();
+    private final TimingWheel wheel;
+    private final Map<Work, WorkStarter> scheduledWorks =
+            new ConcurrentHashMap<>();
 
     /**
      * constructs a new WorkScheduler with the given {@link BootstrapContext}
@@ -91,8 +98,17 @@ public class WorkScheduler {
             throws UnavailableException {
         this.bootCtx = bootCtx;
         this.execCtx = execCtx;
-        // this is just to check, if timers can be created.
-        bootCtx.createTimer().cancel();
+        this.wheel = new TimingWheel(bootCtx.createTimer());
+    }
+
+    /**
+     * returns the wheel, the works are scheduled on, e.g. to schedule other
+     * delayed tasks without another timer.
+     *
+     * @return
+     */
+    TimingWheel getTimingWheel() {
+        return wheel;
     }
 
     /**
@@ -103,7 +119,8 @@ public class WorkScheduler {
      */
     public void scheduleWork(Work work, ScheduleExpression scheduleExpression)
             throws WorkException, UnavailableException {
-        scheduleWorkStarter(new WorkStarter(work, null, scheduleExpression));
+        scheduleWorkStarter(new WorkStarter(work, null, scheduleExpression,
+                0l));
     }
 
     /**
@@ -115,7 +132,27 @@ public class WorkScheduler {
      */
     public void scheduleWork(Work work, ScheduleExpression scheduleExpression,
             WorkListener listener) {
-        scheduleWorkStarter(new WorkStarter(work, listener, scheduleExpression));
+        scheduleWorkStarter(new WorkStarter(work, listener, scheduleExpression,
+                0l));
+    }
+
+    /**
+     * schedules the given work at the valid times of a schedule expression,
+     * that are at least the actual interval apart. The next start is scheduled,
+     * when the work is completed, so it uses the interval adapted by the work.
+     *
+     * @param work the work to do
+     * @param scheduleExpression tells when the work may be started.
+     * @param pollInterval the interval between two starts.
+     */
+    void scheduleWork(Work work, ScheduleExpression scheduleExpression,
+            AdaptivePollInterval pollInterval) {
+        WorkStarter starter = new WorkStarter(work, null, scheduleExpression,
+                0l);
+        starter.pollInterval = pollInterval;
+        long now = System.currentTimeMillis();
+        scheduleWorkStarter(starter, pollInterval.nextTime(scheduleExpression,
+                now) - now);
     }
 
     /**
@@ -127,8 +164,8 @@ public class WorkScheduler {
      */
     public void scheduleWork(final Work work, long initialTimeoutInMs,
             long periodInMs) {
-        scheduleWorkStarter(new WorkStarter(work), initialTimeoutInMs,
-                periodInMs);
+        scheduleWorkStarter(new WorkStarter(work, null, null, periodInMs),
+                initialTimeoutInMs);
     }
 
     /**
@@ -142,46 +179,41 @@ public class WorkScheduler {
     public void scheduleWork(final Work work, long initialTimeoutInMs,
             long periodInMs,
             final WorkListener listener) {
-        scheduleWorkStarter(new WorkStarter(work, listener), initialTimeoutInMs,
-                periodInMs);
+        scheduleWorkStarter(new WorkStarter(work, listener, null, periodInMs),
+                initialTimeoutInMs);
     }
 
-    private void scheduleWorkStarter(WorkStarter starter,
-            long initialTimeoutInMs, long period) {
-        try {
-            Timer timer = bootCtx.createTimer();
-            timer.schedule(starter, initialTimeoutInMs, period);
-            scheduledWorks.put(starter.work, timer);
-        } catch (UnavailableException ex) {
-            throw new IllegalStateException("timer is not available", ex);
-        }
+    private void scheduleWorkStarter(WorkStarter starter, long delay) {
+        scheduledWorks.put(starter.work, starter);
+        starter.schedule(delay);
     }
 
     private void scheduleWorkStarter(WorkStarter starter) {
-        try {
-            Timer timer = bootCtx.createTimer();
-            long now = System.currentTimeMillis();
-            long nextValidTime =
-                    starter.se.getNextValidTime(now);
-            timer.schedule(starter, nextValidTime - now);
-            LOG.log(Level.INFO,
-                    "scheduling the work \"{0}\" with schedule: {1} which is next at: {2}",
-                    new Object[]{starter.work,
-                starter.se,
-                new DateTime(nextValidTime).toString("HH:mm:ss")});
-            scheduledWorks.put(starter.work, timer);
-        } catch (UnavailableException ex) {
-            throw new IllegalStateException("timer is not available", ex);
-        }
+        long now = System.currentTimeMillis();
+        long nextValidTime = starter.se.getNextValidTime(now);
+        LOG.log(Level.INFO,
+                "scheduling the work \"{0}\" with schedule: {1} which is next at: {2}",
+                new Object[]{starter.work,
+            starter.se,
+            new DateTime(nextValidTime).toString("HH:mm:ss")});
+        scheduleWorkStarter(starter, nextValidTime - now);
+    }
+
+    /**
+     * returns the number of scheduled works.
+     *
+     * @return
+     */
+    public int getScheduledWorkCount() {
+        return scheduledWorks.size();
     }
 
     /**
      * cancels all scheduled works.
      */
     public void cancel() {
-        for (Entry<Work, Timer> workEntry : scheduledWorks.entrySet()) {
-            workEntry.getValue().cancel();
-            workEntry.getKey().release();
+        for (WorkStarter starter : scheduledWorks.values()) {
+            cancel(starter.work);
         }
     }
 
@@ -191,32 +223,88 @@ public class WorkScheduler {
      * @param work a work that was scheduled.
      */
     public void cancel(Work work) {
-        if (scheduledWorks.containsKey(work)) {
-            scheduledWorks.get(work).cancel();
-            scheduledWorks.remove(work);
+        WorkStarter starter = scheduledWorks.remove(work);
+        if (starter != null) {
+            starter.cancel();
             work.release();
         }
     }
 
-    private class WorkStarter extends TimerTask {
+    /**
+     * cancels all scheduled works and stops the timer of the scheduler.
+     */
+    public void stop() {
+        cancel();
+        wheel.stop();
+    }
+
+    private class WorkStarter implements Runnable {
 
         private final Work work;
         private final WorkListener listener;
         private final ScheduleExpression se;
+        private final long period;
+        private AdaptivePollInterval pollInterval;
+        private TimingWheel.Timeout timeout;
         private boolean canceled = false;
 
-        WorkStarter(Work work) {
-            this(work, null);
+        WorkStarter(Work work, WorkListener listener, ScheduleExpression se,
+                long period) {
+            this.work = work;
+            this.listener = listener;
+            this.se = se;
+            this.period = period;
         }
 
-        WorkStarter(Work work, WorkListener listener) {
-            this(work, listener, null);
+        synchronized void schedule(long delay) {
+            if (!canceled) {
+                timeout = wheel.schedule(this, delay);
+            }
         }
 
-        WorkStarter(Work work, WorkListener listener, ScheduleExpression se) {
-            this.work = work;
-            this.listener = listener;
-            this.se = se;
+        /**
+         * starts the work and schedules the next start, when the work is
+         * completed. A rejection may be reported by an exception and by an
+         * event, but the next start is scheduled only once.
+         */
+        private void startAdaptive() {
+            final AtomicBoolean finished = new AtomicBoolean();
+            try {
+                bootCtx.getWorkManager().scheduleWork(work,
+                        WorkManager.INDEFINITE, execCtx, new WorkAdapter() {
+                    @Override
+                    public void workCompleted(WorkEvent e) {
+                        scheduleNext(finished);
+                    }
+
+                    @Override
+                    public void workRejected(WorkEvent e) {
+                        scheduleNext(finished);
+                    }
+                });
+            } catch (WorkException ex) {
+                LOG.log(Level.SEVERE, "cannot schedule work", ex);
+                scheduleNext(finished);
+            }
+        }
+
+        private void scheduleNext(AtomicBoolean finished) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long nextTime = pollInterval.nextTime(se, now);
+            LOG.log(Level.FINE,
+                    "scheduling the work \"{0}\" in {1} ms",
+                    new Object[]{work, nextTime - now});
+            schedule(nextTime - now);
+        }
+
+        synchronized void cancel() {
+            canceled = true;
+            if (timeout != null) {
+                timeout.cancel();
+            }
         }
 
         @Override
@@ -225,28 +313,31 @@ public class WorkScheduler {
                     "its {0}, so start the work: \"{1}\"",
                     new Object[]{new DateTime().toString("HH:mm:ss"),
                 work.toString()});
+            if (pollInterval != null) {
+                startAdaptive();
+                return;
+            }
+            // reschedule before the work is started, so the timer keeps its
+            // pace.
+            if (se != null) {
+                long now = System.currentTimeMillis();
+                schedule(se.getNextValidTime(now) - now);
+            } else if (period > 0) {
+                schedule(period);
+            } else {
+                scheduledWorks.remove(work);
+            }
             try {
                 if (listener != null) {
-                    bootCtx.getWorkManager().doWork(work,
+                    bootCtx.getWorkManager().scheduleWork(work,
                             WorkManager.IMMEDIATE,
                             execCtx, listener);
                 } else {
-                    bootCtx.getWorkManager().doWork(work);
+                    bootCtx.getWorkManager().scheduleWork(work);
                 }
             } catch (WorkException ex) {
                 LOG.log(Level.SEVERE, "cannot schedule work", ex);
             }
-            if (se != null && !canceled) {
-                // reschedule
-                cancel();
-                scheduleWorkStarter(new WorkStarter(work, listener, se));
-            }
-        }
-
-        @Override
-        public boolean cancel() {
-            canceled = true;
-            return super.cancel();
         }
     }
 }
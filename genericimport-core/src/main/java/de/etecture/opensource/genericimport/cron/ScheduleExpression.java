@@ -1,6 +1,7 @@
 package de.etecture.opensource.genericimport.cron;
 
 import java.text.ParseException;
+import java.util.Collections;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -22,13 +23,22 @@ import java.util.TreeSet;
  * <tr><th>hours</th><td>0..23</td><td>1..23</td><td>1..23</td></tr>
  * <tr><th>day_in_weak</th><td>1..7</td><td>2..7</td><td>1..6</td></tr>
  * </table>
+ * <p>
+ * when the expression is parsed, the valid values of each field are compiled
+ * into a bitmask, so the next valid time is computed with bit scans and long
+ * arithmetic and without allocating any object.
  *
  * @author rhk
  */
 public class ScheduleExpression {
 
+    private static final long SECONDS_PER_DAY = 24l * 60l * 60l;
     private final SortedSet<ScheduleExpressionField> fields = new TreeSet<>();
     private final String definition;
+    private long secondsMask;
+    private long minutesMask;
+    private long hoursMask;
+    private long daysInWeekMask;
 
     private enum Template {
 
@@ -82,23 +92,87 @@ public class ScheduleExpression {
                     .values()[i],
                     fieldDefinitions[i]));
         }
+        for (ScheduleExpressionField field : fields) {
+            switch (field.getType()) {
+                case SECONDS:
+                    secondsMask = field.getMask();
+                    break;
+                case MINUTES:
+                    minutesMask = field.getMask();
+                    break;
+                case HOURS:
+                    hoursMask = field.getMask();
+                    break;
+                case DAY_IN_WEEK:
+                    daysInWeekMask = field.getMask();
+                    break;
+            }
+        }
     }
 
     public long getNextValidTime(long actualTime) {
-        long nextTime = actualTime;
         // next full second
-        nextTime += 1000 - (actualTime % 1000);
-        for (ScheduleExpressionField field : fields) {
-            nextTime += field.getDifferenceToNextValidTime(nextTime);
-            SortedSet<ScheduleExpressionField> headSet = fields.headSet(field);
-            ScheduleExpressionField[] headArray = headSet.toArray(
-                    new ScheduleExpressionField[headSet.size()]);
-            for (int i = headArray.length - 1; i >= 0; i--) {
-                nextTime += headArray[i]
-                        .getDifferenceToNextValidTime(nextTime);
+        long second = (actualTime + 1000 - (actualTime % 1000)) / 1000;
+        while (true) {
+            long day = second / SECONDS_PER_DAY;
+            // the 1st of january 1970 was a thursday.
+            int dayInWeek = (int) ((day + 3) % 7);
+            int nextDayInWeek = nextValue(daysInWeekMask, dayInWeek);
+            if (nextDayInWeek < 0) {
+                nextDayInWeek = nextValue(daysInWeekMask, 0) + 7;
+            }
+            if (nextDayInWeek != dayInWeek) {
+                second = (day + nextDayInWeek - dayInWeek) * SECONDS_PER_DAY;
+                continue;
+            }
+            long dayStart = day * SECONDS_PER_DAY;
+            int secondOfDay = (int) (second - dayStart);
+            int hour = secondOfDay / 3600;
+            int nextHour = nextValue(hoursMask, hour);
+            if (nextHour < 0) {
+                second = dayStart + SECONDS_PER_DAY;
+                continue;
+            } else if (nextHour != hour) {
+                second = dayStart + nextHour * 3600;
+                continue;
             }
+            int minute = (secondOfDay / 60) % 60;
+            int nextMinute = nextValue(minutesMask, minute);
+            if (nextMinute < 0) {
+                second = dayStart + (hour + 1) * 3600;
+                continue;
+            } else if (nextMinute != minute) {
+                second = dayStart + hour * 3600 + nextMinute * 60;
+                continue;
+            }
+            int nextSecond = nextValue(secondsMask, secondOfDay % 60);
+            if (nextSecond < 0) {
+                second = dayStart + hour * 3600 + (minute + 1) * 60;
+                continue;
+            }
+            return (dayStart + hour * 3600 + minute * 60 + nextSecond) * 1000;
         }
-        return nextTime;
+    }
+
+    /**
+     * returns the smallest valid value, that is greater or equal to the given
+     * value.
+     *
+     * @return the value or -1, if there is no such value.
+     */
+    private static int nextValue(long mask, int value) {
+        long validValues = mask & (-1l << value);
+        return validValues == 0l ? -1 : Long.numberOfTrailingZeros(
+                validValues);
+    }
+
+    /**
+     * returns the fields of this expression, ordered by their type.
+     *
+     * @return
+     */
+    public SortedSet<ScheduleExpressionField> getFields() {
+        return Collections.unmodifiableSortedSet(fields);
     }
 
     @Override
@@ -86,6 +86,7 @@ public class ScheduleExpressionField implements
     private final String definition;
     private final SortedSet<ScheduleExpressionFieldGroup> groups =
             new TreeSet<>();
+    private long mask;
 
     public ScheduleExpressionField(Type type, String definition) throws
             ParseException {
@@ -129,6 +130,31 @@ public class ScheduleExpressionField implements
         if (groups.isEmpty()) {
             throw new ParseException("an empty expression is not allowed.", 0);
         }
+        mask = 0l;
+        for (ScheduleExpressionFieldGroup group : groups) {
+            for (int v = group.getStart(); v < Math.min(group.getEnd(),
+                    type.max); v += group.getDivider()) {
+                mask |= 1l << v;
+            }
+        }
+        if (mask == 0l) {
+            throw new ParseException(String.format(
+                    "the field %s has no valid value.", type.name()), 0);
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * returns the valid values of this field as a bitmask: the bit n is set,
+     * if the value n is valid.
+     *
+     * @return
+     */
+    public long getMask() {
+        return mask;
     }
 
     public long getDifferenceToNextValidTime(long actualTime) {
@@ -0,0 +1,103 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.cron.ScheduleExpression;
+import static org.fest.assertions.Assertions.assertThat;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+/**
+ * tests the {@link AdaptivePollInterval}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class AdaptivePollIntervalTest {
+
+    /**
+     * empty scans double the interval up to the maximum, a scan with files
+     * resets it.
+     */
+    @Test
+    public void testBackoff() {
+        AdaptivePollInterval interval = new AdaptivePollInterval(1000l, 5000l);
+        assertThat(interval.getInterval()).isEqualTo(1000l);
+        interval.onScan(0);
+        assertThat(interval.getInterval()).isEqualTo(2000l);
+        interval.onScan(0);
+        assertThat(interval.getInterval()).isEqualTo(4000l);
+        interval.onScan(0);
+        assertThat(interval.getInterval()).isEqualTo(5000l);
+        interval.onScan(-1);
+        assertThat(interval.getInterval()).isEqualTo(5000l);
+        interval.onScan(3);
+        assertThat(interval.getInterval()).isEqualTo(1000l);
+    }
+
+    /**
+     * the next scan is after the interval, but within the windows of the
+     * schedule expression.
+     */
+    @Test
+    public void testNextTime() throws Exception {
+        ScheduleExpression se = new ScheduleExpression("* * 8-18 *");
+        AdaptivePollInterval interval = new AdaptivePollInterval(1000l,
+                60000l);
+        long now = new DateTime(2013, 5, 7, 10, 0, 0, 0, DateTimeZone.UTC)
+                .getMillis();
+        assertThat(interval.nextTime(se, now)).isEqualTo(now + 1000l);
+        assertThat(interval.getEffectiveInterval()).isEqualTo(1000l);
+        for (int i = 0; i < 10; i++) {
+            interval.onScan(0);
+        }
+        assertThat(interval.nextTime(se, now)).isEqualTo(now + 60000l);
+        // the window closes at 19:00, so the next scan is on the next morning.
+        long evening = new DateTime(2013, 5, 7, 18, 59, 30, 0,
+                DateTimeZone.UTC).getMillis();
+        long morning = new DateTime(2013, 5, 8, 8, 0, 0, 0, DateTimeZone.UTC)
+                .getMillis();
+        assertThat(interval.nextTime(se, evening)).isEqualTo(morning);
+        assertThat(interval.getEffectiveInterval()).isEqualTo(morning
+                - evening);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.api.ImportStatusListener;
+import de.etecture.opensource.genericimport.spi.ImportSource;
+import de.etecture.opensource.genericimport.spi.ImportSourceProcessor;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkManager;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import static org.mockito.Mockito.*;
+
+/**
+ * tests the {@link ArchiveImporter}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class ArchiveImporterTest {
+
+    private static final int LINES = 100;
+    private WorkManager workManager;
+    private ImportFileProcessorRegistry processors;
+    private Set<Object> payloads;
+    private ImportStatusListener<Object> listener;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void init() throws Exception {
+        Logger.getLogger(ArchiveImporter.class.getName()).setLevel(Level.OFF);
+        workManager = mock(WorkManager.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                new Thread((Work) invocation.getArguments()[0]).start();
+                return null;
+            }
+        }).when(workManager).scheduleWork(any(Work.class));
+        processors = mock(ImportFileProcessorRegistry.class);
+        when(processors.getSourceProcessor(anyString())).thenReturn(
+                new LineProcessor());
+        payloads = Collections.synchronizedSet(new HashSet<>());
+        listener = mock(ImportStatusListener.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                assertThat(payloads.add(invocation.getArguments()[1]))
+                        .isTrue();
+                return null;
+            }
+        }).when(listener).onProgress(anyString(), any());
+    }
+
+    private static void writeLines(OutputStream out, String prefix)
+            throws IOException {
+        for (int i = 0; i < LINES; i++) {
+            out.write(String.format("%s-%d%n", prefix, i).getBytes(
+                    StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * a .gz file is decompressed into the processor of the mime-type of the
+     * spec.
+     */
+    @Test
+    public void testGzip() throws Exception {
+        File archive = File.createTempFile("archiveImporter_", ".csv.gz");
+        archive.deleteOnExit();
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(
+                archive))) {
+            writeLines(out, "gz");
+        }
+        FileSnapshot file = FileSnapshot.of(archive.toPath());
+        assertThat(ArchiveImporter.isArchive(file)).isTrue();
+        new ArchiveImporter(processors, null, 1, "text/plain", null).process(
+                file, listener, null);
+        String name = archive.getName().substring(0, archive.getName()
+                .length() - 3);
+        verify(listener).onStart(name);
+        verify(listener).onFinished(name);
+        verify(processors).getSourceProcessor("text/plain");
+        assertThat(payloads).hasSize(LINES);
+    }
+
+    /**
+     * each entry of a .zip file is imported on its own with the mime-type of
+     * its name.
+     */
+    @Test
+    public void testZip() throws Exception {
+        File archive = File.createTempFile("archiveImporter_", ".zip");
+        archive.deleteOnExit();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(
+                archive))) {
+            out.putNextEntry(new ZipEntry("data/"));
+            for (String name : new String[]{"data/a.csv", "data/b.csv",
+                "c.xml", "d.txt"}) {
+                out.putNextEntry(new ZipEntry(name));
+                writeLines(out, name);
+            }
+        }
+        ArchiveImporter importer = new ArchiveImporter(processors, workManager,
+                4, "text/plain", "*.csv=text/csv, *.xml=text/xml");
+        assertThat(importer.getMimeType("data/a.csv")).isEqualTo("text/csv");
+        importer.process(FileSnapshot.of(archive.toPath()), listener, null);
+        verify(workManager, times(3)).scheduleWork(any(Work.class));
+        verify(processors, times(2)).getSourceProcessor("text/csv");
+        verify(processors).getSourceProcessor("text/xml");
+        verify(processors).getSourceProcessor("text/plain");
+        for (String name : new String[]{"data/a.csv", "data/b.csv", "c.xml",
+            "d.txt"}) {
+            verify(listener).onStart(name);
+            verify(listener).onFinished(name);
+        }
+        assertThat(payloads).hasSize(4 * LINES);
+    }
+
+    /**
+     * a processor that imports each line of the stream.
+     */
+    private static class LineProcessor implements ImportSourceProcessor {
+
+        @Override
+        public boolean isResponsibleFor(String mimeType) {
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void processSource(String mimeType, ImportSource source,
+                ImportStatusListener callback) throws IOException {
+            assertThat(source.getFile()).isNull();
+            callback.onStart(source.getName());
+            BufferedReader reader = new BufferedReader(Channels.newReader(
+                    source.getChannel(), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                callback.onProgress(source.getName(), line);
+            }
+            callback.onFinished(source.getName());
+        }
+    }
+}
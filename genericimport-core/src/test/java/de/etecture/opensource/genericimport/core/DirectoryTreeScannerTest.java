@@ -0,0 +1,201 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * tests the {@link DirectoryTreeScanner}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class DirectoryTreeScannerTest {
+
+    private Path root;
+    private FileAgeFilter filter;
+
+    @Before
+    public void init() throws Exception {
+        Logger.getLogger(DirectoryTreeScanner.class.getName()).setLevel(
+                Level.OFF);
+        root = Files.createTempDirectory("treeScan");
+        filter = new FileAgeFilter(".*\\.txt");
+        createFile("a.txt");
+        createFile("c1/d1/x.txt");
+        createFile("c1/d2/y.txt");
+        createFile("c2/z.txt");
+        createFile("c2/skip/w.txt");
+        createFile("c2/other.csv");
+        createFile("done/old.txt");
+    }
+
+    /**
+     * the whole tree is scanned in parallel, except the excluded directories.
+     */
+    @Test
+    public void testScan() throws Exception {
+        InMemoryWorkManager workManager = new InMemoryWorkManager(4, 100);
+        try {
+            DirectoryTreeScanner scanner = new DirectoryTreeScanner(
+                    workManager, 4, 0, null, null, Arrays.asList(root
+                    .resolve("done")));
+            assertThat(scan(scanner)).containsOnly("a.txt", "x.txt", "y.txt",
+                    "z.txt", "w.txt");
+        } finally {
+            workManager.shutdown(1000l);
+        }
+    }
+
+    /**
+     * the relative paths are matched against the globs.
+     */
+    @Test
+    public void testGlobs() throws Exception {
+        DirectoryTreeScanner scanner = new DirectoryTreeScanner(null, 1, 0,
+                "c1/**, c2/*", "**/d2, c2/skip", Collections.<Path>emptyList());
+        assertThat(scan(scanner)).containsOnly("x.txt", "z.txt");
+    }
+
+    /**
+     * the subdirectories below the maximum depth are not scanned.
+     */
+    @Test
+    public void testMaxDepth() throws Exception {
+        DirectoryTreeScanner scanner = new DirectoryTreeScanner(null, 1, 1,
+                null, null, Collections.<Path>emptyList());
+        assertThat(scan(scanner)).containsOnly("a.txt", "z.txt", "old.txt");
+    }
+
+    /**
+     * a large tree is scanned by all the helpers.
+     */
+    @Test
+    public void testLargeTree() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 5; j++) {
+                createFile(String.format("customer%d/day%d/file.txt", i, j));
+            }
+        }
+        InMemoryWorkManager workManager = new InMemoryWorkManager(4, 100);
+        try {
+            DirectoryTreeScanner scanner = new DirectoryTreeScanner(
+                    workManager, 4, 0, "customer*/**", null,
+                    Collections.<Path>emptyList());
+            final Set<Path> found = new ConcurrentSkipListSet<>();
+            assertThat(scanner.scan(root, filter,
+                    new DirectoryTreeScanner.Collector() {
+                @Override
+                public boolean collect(FileSnapshot file) {
+                    found.add(file.getPath());
+                    return true;
+                }
+            })).isEqualTo(500);
+            assertThat(found).hasSize(500);
+        } finally {
+            workManager.shutdown(1000l);
+        }
+    }
+
+    /**
+     * the scan stops, when the collector is saturated.
+     */
+    @Test
+    public void testStop() throws Exception {
+        DirectoryTreeScanner scanner = new DirectoryTreeScanner(null, 1, 0,
+                null, null, Collections.<Path>emptyList());
+        final Set<String> found = new ConcurrentSkipListSet<>();
+        assertThat(scanner.scan(root, filter,
+                new DirectoryTreeScanner.Collector() {
+            @Override
+            public boolean collect(FileSnapshot file) {
+                found.add(file.getName());
+                return false;
+            }
+        })).isEqualTo(-1);
+        assertThat(found).hasSize(1);
+    }
+
+    /**
+     * a missing root is scanned as an empty tree.
+     */
+    @Test
+    public void testMissingRoot() throws Exception {
+        DirectoryTreeScanner scanner = new DirectoryTreeScanner(null, 1, 0,
+                null, null, Collections.<Path>emptyList());
+        assertThat(scanner.scan(root.resolve("missing"), filter,
+                new DirectoryTreeScanner.Collector() {
+            @Override
+            public boolean collect(FileSnapshot file) {
+                return true;
+            }
+        })).isEqualTo(0);
+    }
+
+    private Set<String> scan(DirectoryTreeScanner scanner) {
+        final Set<String> found = new ConcurrentSkipListSet<>();
+        scanner.scan(root, filter, new DirectoryTreeScanner.Collector() {
+            @Override
+            public boolean collect(FileSnapshot file) {
+                assertThat(found.add(file.getName())).isTrue();
+                return true;
+            }
+        });
+        return found;
+    }
+
+    private void createFile(String name) throws Exception {
+        Path file = root.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.createFile(file);
+        file.toFile().deleteOnExit();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.resource.spi.endpoint.MessageEndpointFactory;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import static org.mockito.Mockito.*;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * tests the {@link DirectoryWatcherWork}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DirectoryWatcherWorkTest {
+
+    @Mock
+    FileAgentCallback processor;
+    private File importDir;
+    private DirectoryWatcherWork watcher;
+    private Thread watcherThread;
+
+    @Before
+    public void init() throws Exception {
+        reset(processor);
+        Logger.getLogger(FileAgentWork.class.getName()).setLevel(Level.OFF);
+        Logger.getLogger(DirectoryWatcherWork.class.getName()).setLevel(
+                Level.OFF);
+        importDir = Files.createTempDirectory("watcher").toFile();
+        importDir.deleteOnExit();
+        TestImporterSpec spec = new TestImporterSpec(importDir
+                .getAbsolutePath(), "watched_.*\\.tmp");
+        spec.setWatchImportPath(true);
+        spec.setWatchSettleTime(20l);
+        watcher = new DirectoryWatcherWork(new FileAgentWork(spec, null,
+                processor));
+        watcherThread = new Thread(watcher);
+        watcherThread.start();
+        // give the watcher the chance to register the directory.
+        Thread.sleep(200l);
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        watcher.release();
+        watcherThread.join(5000l);
+        assertThat(watcherThread.isAlive()).isFalse();
+    }
+
+    /**
+     * Test of {@link DirectoryWatcherWork#run()} with a new file.
+     */
+    @Test
+    public void testNewFileIsDispatched() throws Exception {
+        File file = new File(importDir, "watched_1.tmp");
+        file.deleteOnExit();
+        assertThat(file.createNewFile()).isTrue();
+
+        ArgumentCaptor<FileSnapshot> argument = ArgumentCaptor.forClass(
+                FileSnapshot.class);
+        verify(processor, timeout(5000).times(1)).onNewImportFile(
+                any(GenericImportSpec.class),
+                any(MessageEndpointFactory.class),
+                argument.capture());
+        assertThat(argument.getValue().getFile()).isEqualTo(file);
+
+        // the backstop scan must not import the file again.
+        watcher.getFileAgent().run();
+        Thread.sleep(200l);
+        verify(processor, times(1)).onNewImportFile(
+                any(GenericImportSpec.class),
+                any(MessageEndpointFactory.class),
+                any(FileSnapshot.class));
+    }
+
+    /**
+     * Test of {@link DirectoryWatcherWork#run()} with a file that does not
+     * match the pattern.
+     */
+    @Test
+    public void testOtherFileIsIgnored() throws Exception {
+        File file = new File(importDir, "other_1.tmp");
+        file.deleteOnExit();
+        assertThat(file.createNewFile()).isTrue();
+        Thread.sleep(500l);
+        verifyZeroInteractions(processor);
+    }
+}
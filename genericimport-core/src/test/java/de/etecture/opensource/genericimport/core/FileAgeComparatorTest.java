@@ -41,6 +41,7 @@ package de.etecture.opensource.genericimport.core;
 
 import de.herschke.testhelper.PrettyPrintingRule;
 import java.io.File;
+import java.nio.file.Files;
 import static org.fest.assertions.Assertions.assertThat;
 import org.joda.time.DateTime;
 import org.junit.Rule;
@@ -69,10 +70,41 @@ public class FileAgeComparatorTest {
         f2.deleteOnExit();
         time = DateTime.now().minusSeconds(100).getMillis();
         assertThat(f2.setLastModified(time - 100)).isTrue();
+        FileSnapshot s1 = FileSnapshot.of(f1.toPath());
+        FileSnapshot s2 = FileSnapshot.of(f2.toPath());
         FileAgeComparator instance = new FileAgeComparator();
-        assertThat(instance.compare(f1, f1)).isEqualTo(0);
-        assertThat(instance.compare(f2, f2)).isEqualTo(0);
-        assertThat(instance.compare(f1, f2)).isGreaterThan(0);
-        assertThat(instance.compare(f2, f1)).isLessThan(0);
+        assertThat(instance.compare(s1, s1)).isEqualTo(0);
+        assertThat(instance.compare(s2, s2)).isEqualTo(0);
+        assertThat(instance.compare(s1, s2)).isGreaterThan(0);
+        assertThat(instance.compare(s2, s1)).isLessThan(0);
+    }
+
+    /**
+     * Test of {@link FileAgeComparator#compare()} with a timestamp taken from
+     * the file name.
+     */
+    @Test
+    public void testCompareFilesByTimestampInName() throws Exception {
+        File dir = Files.createTempDirectory("fileAgeTest").toFile();
+        dir.deleteOnExit();
+        File f1 = new File(dir, "import_20130507011532.csv");
+        f1.deleteOnExit();
+        assertThat(f1.createNewFile()).isTrue();
+        File f2 = new File(dir, "import_20130507011531.csv");
+        f2.deleteOnExit();
+        assertThat(f2.createNewFile()).isTrue();
+        // the last modified timestamps are the other way round.
+        long time = DateTime.now().minusSeconds(100).getMillis();
+        assertThat(f1.setLastModified(time)).isTrue();
+        assertThat(f2.setLastModified(time + 1000)).isTrue();
+
+        FileAgeFilter filter = new FileAgeFilter(
+                "import_(?<timestamp>\\d{14})\\.csv", "timestamp",
+                "yyyyMMddHHmmss", null);
+        FileSnapshot s1 = filter.snapshotIfNew(f1.toPath());
+        FileSnapshot s2 = filter.snapshotIfNew(f2.toPath());
+        FileAgeComparator instance = new FileAgeComparator();
+        assertThat(instance.compare(s1, s2)).isGreaterThan(0);
+        assertThat(instance.compare(s2, s1)).isLessThan(0);
     }
 }
\ No newline at end of file
@@ -40,8 +40,14 @@
 package de.etecture.opensource.genericimport.core;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.ListIterator;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.resource.spi.endpoint.MessageEndpointFactory;
@@ -52,8 +58,10 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import static org.mockito.Mockito.*;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 /**
  * tests the {@link FileAgentWork}
@@ -121,21 +129,245 @@ public class FileAgentWorkTest {
 
         fileAgent.run();
 
-        ArgumentCaptor<File> argument = ArgumentCaptor.forClass(
-                File.class);
+        ArgumentCaptor<FileSnapshot> argument = ArgumentCaptor.forClass(
+                FileSnapshot.class);
         verify(processor, times(10)).onNewImportFile(
                 any(GenericImportSpec.class),
                 any(MessageEndpointFactory.class),
                 argument.capture());
 
-        Arrays.sort(testFiles, new FileAgeComparator());
-        for (ListIterator<File> it = argument.getAllValues()
+        Arrays.sort(testFiles, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        for (ListIterator<FileSnapshot> it = argument.getAllValues()
                 .listIterator(); it.hasNext();) {
             File file = testFiles[it.nextIndex()];
             assertThat(it.next().getName()).isEqualTo(file.getName());
         }
     }
 
+    /**
+     * Test of {@link FileAgentWork#run()} with a scan window that holds all
+     * files.
+     */
+    @Test
+    public void testStreamingRun() throws Exception {
+        File importDir = Files.createTempDirectory("fileAgent").toFile();
+        importDir.deleteOnExit();
+        File[] testFiles = createFiles(importDir, 10);
+
+        TestImporterSpec spec = new TestImporterSpec(
+                importDir.getAbsolutePath(),
+                "fileAgent_.*\\.tmp");
+        spec.setScanWindowSize(testFiles.length);
+        new FileAgentWork(spec, null, processor).run();
+
+        ArgumentCaptor<FileSnapshot> argument = ArgumentCaptor.forClass(
+                FileSnapshot.class);
+        verify(processor, times(10)).onNewImportFile(
+                any(GenericImportSpec.class),
+                any(MessageEndpointFactory.class),
+                argument.capture());
+        for (ListIterator<FileSnapshot> it = argument.getAllValues()
+                .listIterator(); it.hasNext();) {
+            File file = testFiles[it.nextIndex()];
+            assertThat(it.next().getName()).isEqualTo(file.getName());
+        }
+    }
+
+    /**
+     * Test of {@link FileAgentWork#run()} with a scan window that is smaller
+     * than the number of files.
+     */
+    @Test
+    public void testStreamingRunWithSmallWindow() throws Exception {
+        File importDir = Files.createTempDirectory("fileAgent").toFile();
+        importDir.deleteOnExit();
+        File[] testFiles = createFiles(importDir, 10);
+
+        TestImporterSpec spec = new TestImporterSpec(
+                importDir.getAbsolutePath(),
+                "fileAgent_.*\\.tmp");
+        spec.setScanWindowSize(2);
+        new FileAgentWork(spec, null, processor).run();
+
+        ArgumentCaptor<FileSnapshot> argument = ArgumentCaptor.forClass(
+                FileSnapshot.class);
+        verify(processor, times(10)).onNewImportFile(
+                any(GenericImportSpec.class),
+                any(MessageEndpointFactory.class),
+                argument.capture());
+        Set<File> dispatchedFiles = new HashSet<>();
+        for (FileSnapshot snapshot : argument.getAllValues()) {
+            dispatchedFiles.add(snapshot.getFile());
+        }
+        assertThat(dispatchedFiles).containsOnly((Object[]) testFiles);
+    }
+
+    /**
+     * Test of {@link FileAgentWork#run()} with a saturated callback.
+     */
+    @Test
+    public void testSuspendedRun() throws Exception {
+        File importDir = Files.createTempDirectory("fileAgent").toFile();
+        importDir.deleteOnExit();
+        File[] testFiles = createFiles(importDir, 10);
+
+        TestImporterSpec spec = new TestImporterSpec(
+                importDir.getAbsolutePath(),
+                "fileAgent_.*\\.tmp");
+        spec.setScanWindowSize(2);
+        when(processor.isSaturated(spec)).thenReturn(false, false, false,
+                true);
+        FileAgentWork fileAgent = new FileAgentWork(spec, null, processor);
+        fileAgent.run();
+        verify(processor, times(3)).onNewImportFile(
+                any(GenericImportSpec.class),
+                any(MessageEndpointFactory.class),
+                any(FileSnapshot.class));
+
+        // the next scan dispatches the remaining files.
+        reset(processor);
+        fileAgent.run();
+        ArgumentCaptor<FileSnapshot> argument = ArgumentCaptor.forClass(
+                FileSnapshot.class);
+        verify(processor, times(7)).onNewImportFile(
+                any(GenericImportSpec.class),
+                any(MessageEndpointFactory.class),
+                argument.capture());
+        Set<File> dispatchedFiles = new HashSet<>();
+        for (FileSnapshot snapshot : argument.getAllValues()) {
+            dispatchedFiles.add(snapshot.getFile());
+        }
+        assertThat(dispatchedFiles).hasSize(7);
+    }
+
+    /**
+     * Test of {@link FileAgentWork#run()} while a scan is running.
+     */
+    @Test
+    public void testOverlappingRun() throws Exception {
+        File importDir = Files.createTempDirectory("fileAgent").toFile();
+        importDir.deleteOnExit();
+        createFiles(importDir, 1);
+
+        TestImporterSpec spec = new TestImporterSpec(
+                importDir.getAbsolutePath(),
+                "fileAgent_.*\\.tmp");
+        final CountDownLatch dispatching = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                dispatching.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return null;
+            }
+        }).when(processor).onNewImportFile(any(GenericImportSpec.class),
+                any(MessageEndpointFactory.class), any(FileSnapshot.class));
+        final FileAgentWork fileAgent = new FileAgentWork(spec, null,
+                processor);
+        Thread scan = new Thread(fileAgent);
+        scan.start();
+        assertThat(dispatching.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // a file arrives and the work is started three times while scanning.
+        File newFile = new File(importDir, "fileAgent_new.tmp");
+        newFile.deleteOnExit();
+        assertThat(newFile.createNewFile()).isTrue();
+        assertThat(newFile.setLastModified(DateTime.now().plusSeconds(5)
+                .getMillis())).isTrue();
+        for (int i = 0; i < 3; i++) {
+            fileAgent.run();
+        }
+        assertThat(fileAgent.getSkippedScanCount()).isEqualTo(3l);
+        release.countDown();
+        scan.join(5000l);
+
+        // the skipped starts are merged into one follow-up scan.
+        ArgumentCaptor<FileSnapshot> argument = ArgumentCaptor.forClass(
+                FileSnapshot.class);
+        verify(processor, times(2)).onNewImportFile(
+                any(GenericImportSpec.class),
+                any(MessageEndpointFactory.class),
+                argument.capture());
+        assertThat(argument.getAllValues().get(1).getName()).isEqualTo(
+                "fileAgent_new.tmp");
+    }
+
+    /**
+     * Test of {@link FileAgentWork#run()} with files in subdirectories, that
+     * are dispatched oldest first.
+     */
+    @Test
+    public void testRecursiveRun() throws Exception {
+        File importDir = Files.createTempDirectory("fileAgent").toFile();
+        importDir.deleteOnExit();
+        File[] testFiles = new File[9];
+        final long time = DateTime.now().minusHours(1).getMillis();
+        for (int i = 0; i < testFiles.length; i++) {
+            File directory = new File(importDir, String.format(
+                    "customer%d/day%d", i % 3, i % 2));
+            assertThat(directory.isDirectory() || directory.mkdirs()).isTrue();
+            testFiles[i] = new File(directory, String.format(
+                    "fileAgent_%d.tmp", testFiles.length - i));
+            testFiles[i].deleteOnExit();
+            assertThat(testFiles[i].createNewFile()).isTrue();
+            assertThat(testFiles[i].setLastModified(time + (i * 1000l)))
+                    .isTrue();
+        }
+        File excluded = new File(importDir, "customer0/archive");
+        assertThat(excluded.mkdirs()).isTrue();
+        assertThat(new File(excluded, "fileAgent_0.tmp").createNewFile())
+                .isTrue();
+
+        TestImporterSpec spec = new TestImporterSpec(
+                importDir.getAbsolutePath(),
+                "fileAgent_.*\\.tmp");
+        spec.setRecursiveScan(true);
+        spec.setExcludeGlobs("*/archive");
+        InMemoryWorkManager workManager = new InMemoryWorkManager(2, 10);
+        try {
+            new FileAgentWork(spec, null, processor, workManager,
+                    new ImportSpecContext(spec)).run();
+        } finally {
+            workManager.shutdown(1000l);
+        }
+
+        ArgumentCaptor<FileSnapshot> argument = ArgumentCaptor.forClass(
+                FileSnapshot.class);
+        verify(processor, times(9)).onNewImportFile(
+                any(GenericImportSpec.class),
+                any(MessageEndpointFactory.class),
+                argument.capture());
+        for (ListIterator<FileSnapshot> it = argument.getAllValues()
+                .listIterator(); it.hasNext();) {
+            File file = testFiles[it.nextIndex()];
+            assertThat(it.next().getFile()).isEqualTo(file);
+        }
+    }
+
+    /**
+     * creates the given number of files, the first one is the oldest.
+     */
+    private File[] createFiles(File importDir, int count) throws Exception {
+        final long time = DateTime.now().minusHours(1).getMillis();
+        File[] testFiles = new File[count];
+        for (int i = 0; i < testFiles.length; i++) {
+            // create them in reversed order to not depend on the directory order.
+            testFiles[i] = new File(importDir, String.format(
+                    "fileAgent_%d.tmp", count - i));
+            testFiles[i].deleteOnExit();
+            assertThat(testFiles[i].createNewFile()).isTrue();
+            assertThat(testFiles[i].setLastModified(time + (i * 1000l)))
+                    .isTrue();
+        }
+        return testFiles;
+    }
+
     /**
      * Test of {@link FileAgentWork#run()} with no files found.
      */
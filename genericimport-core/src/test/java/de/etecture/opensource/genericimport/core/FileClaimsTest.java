@@ -0,0 +1,171 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.resource.spi.InvalidPropertyException;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * tests the {@link FileClaims}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class FileClaimsTest {
+
+    private Path importDir;
+    private Path file;
+
+    @Before
+    public void init() throws Exception {
+        Logger.getLogger(FileClaims.class.getName()).setLevel(Level.OFF);
+        importDir = Files.createTempDirectory("claims");
+        file = importDir.resolve("customer1").resolve("import.txt");
+        Files.createDirectories(file.getParent());
+        Files.write(file, Arrays.asList("a"), StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000l));
+    }
+
+    /**
+     * a file is claimed by one node only.
+     */
+    @Test
+    public void testClaim() throws Exception {
+        FileClaims node1 = open("node1", 60000l);
+        FileClaims node2 = open("node2", 60000l);
+        FileSnapshot snapshot = FileSnapshot.of(file);
+        FileSnapshot claimed = node1.claim(snapshot);
+        assertThat(claimed).isNotNull();
+        assertThat(claimed.getFile()).isEqualTo(node1.getNodePath().resolve(
+                "customer1").resolve("import.txt").toFile());
+        assertThat(claimed.getLastModified()).isEqualTo(1000l);
+        assertThat(node2.claim(snapshot)).isNull();
+        assertThat(Files.exists(file)).isFalse();
+    }
+
+    /**
+     * a relative import path claims the files of the scan, whose paths are
+     * absolute.
+     */
+    @Test
+    public void testRelativeImportPath() throws Exception {
+        Path relative = Paths.get("").toAbsolutePath().relativize(importDir);
+        FileClaims node1 = new FileClaims(relative, relative.resolve(
+                FileClaims.CLAIM_DIRECTORY), "node1", 60000l);
+        node1.open();
+        FileSnapshot claimed = node1.claim(FileSnapshot.of(file));
+        assertThat(claimed).isNotNull();
+        assertThat(claimed.getFile()).isEqualTo(importDir.resolve(
+                FileClaims.CLAIM_DIRECTORY).resolve("node1").resolve(
+                "customer1").resolve("import.txt").toFile());
+    }
+
+    /**
+     * the claims of a node, whose lease expired, are moved back as new files.
+     */
+    @Test
+    public void testTakeOver() throws Exception {
+        FileClaims node1 = open("node1", 60000l);
+        FileClaims node2 = open("node2", 60000l);
+        node1.claim(FileSnapshot.of(file));
+        assertThat(node2.takeOverExpired()).isEqualTo(0);
+
+        // node1 crashed a while ago.
+        Files.setLastModifiedTime(node1.getNodePath().resolve(
+                FileClaims.LEASE_FILE), FileTime.fromMillis(System
+                .currentTimeMillis() - 120000l));
+        assertThat(node2.takeOverExpired()).isEqualTo(1);
+        assertThat(Files.exists(file)).isTrue();
+        assertThat(Files.getLastModifiedTime(file).toMillis())
+                .isGreaterThan(1000l);
+        assertThat(Files.exists(node1.getNodePath())).isFalse();
+        assertThat(node2.claim(FileSnapshot.of(file))).isNotNull();
+
+        // node1 comes back.
+        node1.renew();
+        assertThat(Files.exists(node1.getNodePath().resolve(
+                FileClaims.LEASE_FILE))).isTrue();
+    }
+
+    /**
+     * a node releases its claims, when it is restarted.
+     */
+    @Test
+    public void testRestart() throws Exception {
+        open("node1", 60000l).claim(FileSnapshot.of(file));
+        assertThat(Files.exists(file)).isFalse();
+        open("node1", 60000l);
+        assertThat(Files.exists(file)).isTrue();
+    }
+
+    /**
+     * the claimed files must be disposed after their import.
+     */
+    @Test(expected = InvalidPropertyException.class)
+    public void testWithoutDisposition() throws Exception {
+        GenericImportSpec spec = new GenericImportSpec();
+        spec.setImportPath(importDir.toString());
+        spec.setClaimFiles(true);
+        spec.validate();
+    }
+
+    private FileClaims open(String nodeId, long leaseTimeout)
+            throws Exception {
+        GenericImportSpec spec = new GenericImportSpec();
+        spec.setImportPath(importDir.toString());
+        spec.setClaimFiles(true);
+        spec.setDisposition("delete");
+        spec.setNodeId(nodeId);
+        spec.setLeaseTimeout(leaseTimeout);
+        spec.validate();
+        return FileClaims.open(spec);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * tests the {@link FileImportSource}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class FileImportSourceTest {
+
+    private File testFile;
+
+    @Before
+    public void init() throws Exception {
+        testFile = File.createTempFile("fileImportSource_", ".tmp");
+        testFile.deleteOnExit();
+        Files.write(testFile.toPath(), "0123456789".getBytes(
+                StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Test of {@link FileImportSource#getChannel()}.
+     */
+    @Test
+    public void testGetChannel() throws Exception {
+        ReadableByteChannel channel;
+        try (FileImportSource source = new FileImportSource(FileSnapshot.of(
+                testFile.toPath()))) {
+            assertThat(source.getSize()).isEqualTo(10l);
+            assertThat(source.getName()).isEqualTo(testFile.getName());
+            channel = source.getChannel();
+            assertThat(source.getChannel()).isSameAs(channel);
+            ByteBuffer buffer = ByteBuffer.allocate(16);
+            assertThat(channel.read(buffer)).isEqualTo(10);
+        }
+        assertThat(channel.isOpen()).isFalse();
+    }
+
+    /**
+     * Test of {@link FileImportSource#map(long, long)}.
+     */
+    @Test
+    public void testMap() throws Exception {
+        try (FileImportSource source = new FileImportSource(FileSnapshot.of(
+                testFile.toPath()))) {
+            assertThat(source.isMappable()).isTrue();
+            ByteBuffer buffer = source.map(5, 5);
+            assertThat(buffer.isReadOnly()).isTrue();
+            assertThat(buffer.remaining()).isEqualTo(5);
+            assertThat(buffer.get()).isEqualTo((byte) '5');
+        }
+    }
+}
@@ -0,0 +1,430 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.api.BatchImportStatusListener;
+import de.etecture.opensource.genericimport.api.ImportStatusListener;
+import de.etecture.opensource.genericimport.spi.ImportSource;
+import de.etecture.opensource.genericimport.spi.TailableImportSourceProcessor;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.resource.spi.endpoint.MessageEndpoint;
+import javax.resource.spi.endpoint.MessageEndpointFactory;
+import javax.transaction.xa.XAResource;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import static org.mockito.Mockito.*;
+
+/**
+ * tests the {@link FileImportWork}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class FileImportWorkTest {
+
+    private MessageEndpointFactory endpointFactory;
+    private ImportFileProcessorRegistry processors;
+    private File testFile;
+
+    @Before
+    public void init() throws Exception {
+        Logger.getLogger(FileImportWork.class.getName()).setLevel(Level.OFF);
+        endpointFactory = mock(MessageEndpointFactory.class);
+        processors = new ImportFileProcessorRegistry(getClass()
+                .getClassLoader());
+        testFile = File.createTempFile("fileImport_", ".tmp");
+        testFile.deleteOnExit();
+        Files.write(testFile.toPath(), Arrays.asList("a", "b", "c"),
+                StandardCharsets.UTF_8);
+    }
+
+    private FileImportWork createWork(Integer batchSize) throws Exception {
+        return createWork(batchSize, 1);
+    }
+
+    private FileImportWork createWork(Integer batchSize,
+            Integer deliveriesPerTransaction) throws Exception {
+        TestImporterSpec spec = new TestImporterSpec(testFile.getParent(),
+                testFile.getName());
+        spec.setMimeType(TestImportFileProcessor.MIME_TYPE);
+        spec.setProgressBatchSize(batchSize);
+        spec.setDeliveriesPerTransaction(deliveriesPerTransaction);
+        return new FileImportWork(spec, FileSnapshot.of(testFile.toPath()),
+                endpointFactory, processors, null, new ImportSpecContext(spec));
+    }
+
+    /**
+     * a listener for batches receives the progress in batches.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBatchListener() throws Exception {
+        MessageEndpoint endpoint = mock(MessageEndpoint.class, withSettings()
+                .extraInterfaces(BatchImportStatusListener.class));
+        when(endpointFactory.createEndpoint(any(XAResource.class)))
+                .thenReturn(endpoint);
+        createWork(2).run();
+        BatchImportStatusListener<Object> listener =
+                (BatchImportStatusListener<Object>) endpoint;
+        InOrder inOrder = inOrder(endpoint);
+        inOrder.verify(listener).onStart(testFile.getName());
+        inOrder.verify(listener).onProgressBatch(testFile.getName(), Arrays
+                .<Object>asList("a", "b"));
+        inOrder.verify(listener).onProgressBatch(testFile.getName(), Arrays
+                .<Object>asList("c"));
+        inOrder.verify(listener).onFinished(testFile.getName());
+        verify(endpoint, times(4)).beforeDelivery(any(Method.class));
+        verify(endpoint, times(4)).afterDelivery();
+        verify(endpointFactory).createEndpoint(any(XAResource.class));
+        verify(endpoint).release();
+    }
+
+    /**
+     * a listener for single pieces receives each piece on its own, even if
+     * the progress is collected in batches.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSingleListener() throws Exception {
+        MessageEndpoint endpoint = mock(MessageEndpoint.class, withSettings()
+                .extraInterfaces(ImportStatusListener.class));
+        when(endpointFactory.createEndpoint(any(XAResource.class)))
+                .thenReturn(endpoint);
+        createWork(2).run();
+        ImportStatusListener<Object> listener =
+                (ImportStatusListener<Object>) endpoint;
+        InOrder inOrder = inOrder(endpoint);
+        inOrder.verify(listener).onStart(testFile.getName());
+        inOrder.verify(listener).onProgress(testFile.getName(), "a");
+        inOrder.verify(listener).onProgress(testFile.getName(), "b");
+        inOrder.verify(listener).onProgress(testFile.getName(), "c");
+        inOrder.verify(listener).onFinished(testFile.getName());
+        verify(endpoint, times(5)).beforeDelivery(any(Method.class));
+        verify(endpoint, times(5)).afterDelivery();
+        verify(endpoint).release();
+    }
+
+    /**
+     * without batches each piece is delivered on its own.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWithoutBatches() throws Exception {
+        MessageEndpoint endpoint = mock(MessageEndpoint.class, withSettings()
+                .extraInterfaces(BatchImportStatusListener.class));
+        when(endpointFactory.createEndpoint(any(XAResource.class)))
+                .thenReturn(endpoint);
+        createWork(null).run();
+        BatchImportStatusListener<Object> listener =
+                (BatchImportStatusListener<Object>) endpoint;
+        verify(listener, times(3)).onProgress(eq(testFile.getName()), any());
+        verify(listener, never()).onProgressBatch(anyString(), anyList());
+        verify(endpoint).release();
+    }
+
+    /**
+     * the deliveries of the progress are committed in transactions of the
+     * given size.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDeliveriesPerTransaction() throws Exception {
+        MessageEndpoint endpoint = mock(MessageEndpoint.class, withSettings()
+                .extraInterfaces(ImportStatusListener.class));
+        when(endpointFactory.createEndpoint(any(XAResource.class)))
+                .thenReturn(endpoint);
+        createWork(1, 2).run();
+        // onStart, [a, b], [c], onFinished
+        verify(endpoint, times(4)).beforeDelivery(any(Method.class));
+        verify(endpoint, times(4)).afterDelivery();
+        verify(endpointFactory).createEndpoint(any(XAResource.class));
+        verify(endpoint).release();
+    }
+
+    /**
+     * an endpoint that fails is released and replaced by a new one.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailingEndpoint() throws Exception {
+        MessageEndpoint failing = mock(MessageEndpoint.class, withSettings()
+                .extraInterfaces(ImportStatusListener.class));
+        MessageEndpoint endpoint = mock(MessageEndpoint.class, withSettings()
+                .extraInterfaces(ImportStatusListener.class));
+        doThrow(new IllegalStateException("test")).when(
+                (ImportStatusListener<Object>) failing).onStart(anyString());
+        when(endpointFactory.createEndpoint(any(XAResource.class)))
+                .thenReturn(failing, endpoint);
+        createWork(1).run();
+        verify(failing).afterDelivery();
+        verify(failing).release();
+        verify((ImportStatusListener<Object>) endpoint, never()).onStart(
+                anyString());
+    }
+
+    /**
+     * in tail mode only the complete records appended since the last import
+     * are imported.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTailMode() throws Exception {
+        File offsetFile = File.createTempFile("tailOffsets_", ".tmp");
+        offsetFile.deleteOnExit();
+        TailOffsetStore tailOffsets = TailOffsetStore.open(offsetFile
+                .toPath());
+        ImportFileProcessorRegistry tailProcessors = mock(
+                ImportFileProcessorRegistry.class);
+        when(tailProcessors.getSourceProcessor(anyString())).thenReturn(
+                new LineTailProcessor());
+        MessageEndpoint endpoint = mock(MessageEndpoint.class, withSettings()
+                .extraInterfaces(ImportStatusListener.class));
+        when(endpointFactory.createEndpoint(any(XAResource.class)))
+                .thenReturn(endpoint);
+        ImportStatusListener<Object> listener =
+                (ImportStatusListener<Object>) endpoint;
+        TestImporterSpec spec = new TestImporterSpec(testFile.getParent(),
+                testFile.getName());
+        spec.setMimeType(TestImportFileProcessor.MIME_TYPE);
+        ImportSpecContext context = new ImportSpecContext(spec, null,
+                tailOffsets, null);
+
+        new FileImportWork(spec, FileSnapshot.of(testFile.toPath()),
+                endpointFactory, tailProcessors, null, context).run();
+        verify(listener, times(3)).onProgress(eq(testFile.getName()), any());
+
+        // the last record is still written.
+        Files.write(testFile.toPath(), "d\ne".getBytes(
+                StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        reset(endpoint);
+        new FileImportWork(spec, FileSnapshot.of(testFile.toPath()),
+                endpointFactory, tailProcessors, null, context).run();
+        verify(listener).onProgress(testFile.getName(), "d");
+        verify(listener).onProgress(eq(testFile.getName()), any());
+
+        Files.write(testFile.toPath(), "\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        reset(endpoint);
+        new FileImportWork(spec, FileSnapshot.of(testFile.toPath()),
+                endpointFactory, tailProcessors, null, context).run();
+        verify(listener).onProgress(testFile.getName(), "e");
+        verify(listener).onProgress(eq(testFile.getName()), any());
+
+        // the offset survives a restart.
+        FileSnapshot snapshot = FileSnapshot.of(testFile.toPath());
+        assertThat(TailOffsetStore.open(offsetFile.toPath()).getOffset(
+                snapshot)).isEqualTo(snapshot.getSize());
+    }
+
+    /**
+     * a processor of lines, that can import appended lines.
+     */
+    /**
+     * an imported file is moved into the done directory, a file whose import
+     * failed into the error directory.
+     */
+    @Test
+    public void testDisposition() throws Exception {
+        Path importDir = Files.createTempDirectory("fileImport_");
+        Path file = Files.move(testFile.toPath(), importDir.resolve(
+                "import.txt"));
+        MessageEndpoint endpoint = mock(MessageEndpoint.class, withSettings()
+                .extraInterfaces(ImportStatusListener.class));
+        when(endpointFactory.createEndpoint(any(XAResource.class)))
+                .thenReturn(endpoint);
+        TestImporterSpec spec = new TestImporterSpec(importDir.toString(),
+                "import\\.txt");
+        spec.setMimeType(TestImportFileProcessor.MIME_TYPE);
+        spec.setDisposition("move");
+        ImportSpecContext context = new ImportSpecContext(spec);
+
+        new FileImportWork(spec, FileSnapshot.of(file), endpointFactory,
+                processors, null, context).run();
+        verify((ImportStatusListener<Object>) endpoint).onFinished(
+                "import.txt");
+        assertThat(Files.exists(file)).isFalse();
+        assertThat(Files.exists(importDir.resolve("done").resolve(
+                "import.txt"))).isTrue();
+
+        Files.write(file, Arrays.asList("d"), StandardCharsets.UTF_8);
+        doThrow(new IllegalStateException("test")).when(
+                (ImportStatusListener<Object>) endpoint).onStart(anyString());
+        new FileImportWork(spec, FileSnapshot.of(file), endpointFactory,
+                processors, null, context).run();
+        assertThat(Files.exists(file)).isFalse();
+        assertThat(Files.exists(importDir.resolve("error").resolve(
+                "import.txt"))).isTrue();
+    }
+
+    /**
+     * a file without a processor is not claimed, so it stays in the import
+     * path.
+     */
+    @Test
+    public void testClaimWithoutProcessor() throws Exception {
+        Path importDir = Files.createTempDirectory("fileImport_");
+        Path file = Files.move(testFile.toPath(), importDir.resolve(
+                "import.txt"));
+        TestImporterSpec spec = new TestImporterSpec(importDir.toString(),
+                "import\\.txt");
+        spec.setMimeType("application/x-unknown");
+        spec.setDisposition("move");
+        FileClaims claims = new FileClaims(importDir, importDir.resolve(
+                FileClaims.CLAIM_DIRECTORY), "node1", 60000l);
+        claims.open();
+        new FileImportWork(spec, FileSnapshot.of(file), endpointFactory,
+                processors, null, new ImportSpecContext(spec, null, null,
+                claims)).run();
+        assertThat(Files.exists(file)).isTrue();
+        assertThat(Files.exists(claims.getNodePath().resolve("import.txt")))
+                .isFalse();
+    }
+
+    /**
+     * the metrics forget a claimed file and a file claimed by another node by
+     * the path, it was discovered at.
+     */
+    @Test
+    public void testClaimMetrics() throws Exception {
+        Path importDir = Files.createTempDirectory("fileImport_");
+        Path file = Files.move(testFile.toPath(), importDir.resolve(
+                "import.txt"));
+        Path other = Files.write(importDir.resolve("other.txt"), Arrays
+                .asList("x"), StandardCharsets.UTF_8);
+        MessageEndpoint endpoint = mock(MessageEndpoint.class, withSettings()
+                .extraInterfaces(ImportStatusListener.class));
+        when(endpointFactory.createEndpoint(any(XAResource.class)))
+                .thenReturn(endpoint);
+        TestImporterSpec spec = new TestImporterSpec(importDir.toString(),
+                ".*\\.txt");
+        spec.setMimeType(TestImportFileProcessor.MIME_TYPE);
+        spec.setDisposition("delete");
+        FileClaims claims = new FileClaims(importDir, importDir.resolve(
+                FileClaims.CLAIM_DIRECTORY), "node1", 60000l);
+        claims.open();
+        ImportSpecContext context = new ImportSpecContext(spec, null, null,
+                claims);
+        ImportSpecMetrics metrics = context.getMetrics();
+        FileSnapshot snapshot = FileSnapshot.of(file);
+        metrics.fileDiscovered(snapshot);
+        new FileImportWork(spec, snapshot, endpointFactory, processors, null,
+                context).run();
+        assertThat(metrics.getFilesImported()).isEqualTo(1l);
+
+        FileSnapshot otherSnapshot = FileSnapshot.of(other);
+        metrics.fileDiscovered(otherSnapshot);
+        // another node claims the file first.
+        Files.delete(other);
+        new FileImportWork(spec, otherSnapshot, endpointFactory, processors,
+                null, context).run();
+        assertThat(metrics.getFilesImported()).isEqualTo(1l);
+        assertThat(metrics.getFilesFailed()).isEqualTo(0l);
+        assertThat(metrics.getOldestUnprocessedFileAge()).isEqualTo(0l);
+    }
+
+    private static class LineTailProcessor implements
+            TailableImportSourceProcessor {
+
+        @Override
+        public long lastRecordBoundary(ImportSource source, long position)
+                throws IOException {
+            ByteBuffer buffer = source.map(position, source.getSize()
+                    - position);
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            return position;
+        }
+
+        @Override
+        public long nextRecordBoundary(ImportSource source, long position)
+                throws IOException {
+            ByteBuffer buffer = source.map(position, source.getSize()
+                    - position);
+            while (buffer.hasRemaining()) {
+                if (buffer.get() == '\n') {
+                    return position + buffer.position();
+                }
+            }
+            return source.getSize();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void processChunk(String mimeType, ImportSource chunk,
+                String importId, ImportStatusListener callback) throws
+                IOException {
+            BufferedReader reader = new BufferedReader(Channels.newReader(
+                    chunk.getChannel(), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                callback.onProgress(importId, line);
+            }
+        }
+
+        @Override
+        public boolean isResponsibleFor(String mimeType) {
+            return true;
+        }
+
+        @Override
+        public void processSource(String mimeType, ImportSource source,
+                ImportStatusListener callback) throws IOException {
+            processChunk(mimeType, source, source.getName(), callback);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.Test;
+
+/**
+ * a small load test of the {@link GenericImportConnector}, that runs with the
+ * unit tests. Larger load tests are run by {@link LoadTestDriver#main}.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class GenericImportConnectorLoadTest {
+
+    /**
+     * all the files that arrive are imported.
+     */
+    @Test
+    public void testLoad() throws Exception {
+        Logger.getLogger("de.etecture.opensource.genericimport").setLevel(
+                Level.WARNING);
+        try {
+            LoadTestDriver.Result result = new LoadTestDriver()
+                    .setFileCount(50)
+                    .setLinesPerFile(200)
+                    .setFilesPerSecond(200d)
+                    .setThreads(4)
+                    .setProgressBatchSize(50)
+                    .setTimeout(30000l)
+                    .run();
+            System.out.println(result);
+            assertThat(result.getFinishedImports()).isEqualTo(50);
+            assertThat(result.getRecords()).isEqualTo(50l * 200l);
+            // an import is finished after it was started.
+            assertThat(result.getFinishLatency(100)).isGreaterThanOrEqualTo(
+                    result.getStartLatency(100));
+        } finally {
+            Logger.getLogger("de.etecture.opensource.genericimport").setLevel(
+                    null);
+        }
+    }
+
+    /**
+     * several nodes share the directory, each file is imported once.
+     */
+    @Test
+    public void testSharedImportPath() throws Exception {
+        Logger.getLogger("de.etecture.opensource.genericimport").setLevel(
+                Level.WARNING);
+        try {
+            LoadTestDriver.Result result = new LoadTestDriver()
+                    .setFileCount(60)
+                    .setLinesPerFile(100)
+                    .setFilesPerSecond(300d)
+                    .setThreads(2)
+                    .setNodes(3)
+                    .setTimeout(30000l)
+                    .run();
+            System.out.println(result);
+            assertThat(result.getFinishedImports()).isEqualTo(60);
+            assertThat(result.getRecords()).isEqualTo(60l * 100l);
+        } finally {
+            Logger.getLogger("de.etecture.opensource.genericimport").setLevel(
+                    null);
+        }
+    }
+}
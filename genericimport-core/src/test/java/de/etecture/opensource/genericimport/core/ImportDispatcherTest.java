@@ -0,0 +1,267 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.resource.spi.work.ExecutionContext;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkEvent;
+import javax.resource.spi.work.WorkListener;
+import javax.resource.spi.work.WorkManager;
+import javax.resource.spi.work.WorkRejectedException;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import static org.mockito.Mockito.*;
+
+/**
+ * tests the {@link ImportDispatcher}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class ImportDispatcherTest {
+
+    private WorkManager workManager;
+    private TimingWheel wheel;
+    private List<Work> scheduled;
+    private List<WorkListener> listeners;
+
+    @Before
+    public void init() throws Exception {
+        Logger.getLogger(ImportDispatcher.class.getName()).setLevel(Level.OFF);
+        workManager = mock(WorkManager.class);
+        wheel = mock(TimingWheel.class);
+        scheduled = new ArrayList<>();
+        listeners = new ArrayList<>();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                scheduled.add((Work) invocation.getArguments()[0]);
+                listeners.add((WorkListener) invocation.getArguments()[3]);
+                return null;
+            }
+        }).when(workManager).scheduleWork(any(Work.class), anyLong(),
+                any(ExecutionContext.class), any(WorkListener.class));
+    }
+
+    private void complete(int index) {
+        listeners.get(index).workCompleted(new WorkEvent(scheduled.get(index),
+                WorkEvent.WORK_COMPLETED, scheduled.get(index), null));
+    }
+
+    /**
+     * the number of concurrent imports is limited.
+     */
+    @Test
+    public void testMaxInFlight() throws Exception {
+        ImportDispatcher.SpecQueue queue = new ImportDispatcher(
+                workManager, wheel, 0).createQueue(1, 2, 0);
+        for (int i = 0; i < 5; i++) {
+            queue.submit(mock(Work.class));
+        }
+        assertThat(scheduled).hasSize(2);
+        assertThat(queue.getInFlightCount()).isEqualTo(2);
+        assertThat(queue.getPendingCount()).isEqualTo(3);
+        complete(0);
+        assertThat(scheduled).hasSize(3);
+        assertThat(queue.getPendingCount()).isEqualTo(2);
+        // a completion is handled once.
+        complete(0);
+        assertThat(scheduled).hasSize(3);
+    }
+
+    /**
+     * a spec, whose turn is over, is served again, while another spec waits
+     * for its own imports.
+     */
+    @Test
+    public void testBlockedAndServed() throws Exception {
+        ImportDispatcher dispatcher = new ImportDispatcher(workManager, wheel,
+                0);
+        ImportDispatcher.SpecQueue saturated = dispatcher.createQueue(1, 1, 0);
+        ImportDispatcher.SpecQueue served = dispatcher.createQueue(1, 0, 0);
+        saturated.submit(mock(Work.class));
+        saturated.submit(mock(Work.class));
+        assertThat(saturated.getInFlightCount()).isEqualTo(1);
+        assertThat(saturated.getPendingCount()).isEqualTo(1);
+        for (int i = 0; i < 3; i++) {
+            served.submit(mock(Work.class));
+            assertThat(served.getInFlightCount()).isEqualTo(i + 1);
+            assertThat(served.getPendingCount()).isEqualTo(0);
+        }
+        assertThat(saturated.getPendingCount()).isEqualTo(1);
+        complete(0);
+        assertThat(saturated.getInFlightCount()).isEqualTo(1);
+        assertThat(saturated.getPendingCount()).isEqualTo(0);
+        assertThat(scheduled).hasSize(5);
+    }
+
+    /**
+     * a rejected import is retried after a backoff.
+     */
+    @Test
+    public void testRejected() throws Exception {
+        ImportDispatcher.SpecQueue queue = new ImportDispatcher(
+                workManager, wheel, 0).createQueue(1, 0, 0);
+        Work work = mock(Work.class);
+        doThrow(new WorkRejectedException("test")).doNothing().when(
+                workManager).scheduleWork(any(Work.class), anyLong(),
+                any(ExecutionContext.class), any(WorkListener.class));
+        queue.submit(work);
+        queue.submit(mock(Work.class));
+        // the second import waits for the retry of the first.
+        assertThat(queue.getPendingCount()).isEqualTo(2);
+        assertThat(queue.getInFlightCount()).isEqualTo(0);
+        verify(workManager).scheduleWork(any(Work.class), anyLong(),
+                any(ExecutionContext.class), any(WorkListener.class));
+        verify(wheel).schedule(any(Runnable.class), eq(
+                ImportDispatcher.MIN_BACKOFF));
+        // retry...
+        ArgumentCaptor<Runnable> retry = ArgumentCaptor.forClass(
+                Runnable.class);
+        verify(wheel).schedule(retry.capture(), anyLong());
+        retry.getValue().run();
+        assertThat(queue.getPendingCount()).isEqualTo(0);
+        assertThat(queue.getInFlightCount()).isEqualTo(2);
+    }
+
+    /**
+     * a full queue saturates the dispatcher until it is drained to the half.
+     */
+    @Test
+    public void testSaturated() throws Exception {
+        ImportDispatcher.SpecQueue queue = new ImportDispatcher(
+                workManager, wheel, 0).createQueue(1, 1, 4);
+        Work resumeWork = mock(Work.class);
+        queue.setResumeWork(resumeWork);
+        for (int i = 0; i < 5; i++) {
+            assertThat(queue.isSaturated()).isFalse();
+            queue.submit(mock(Work.class));
+        }
+        assertThat(queue.isSaturated()).isTrue();
+        complete(0);
+        assertThat(queue.isSaturated()).isTrue();
+        complete(1);
+        verify(workManager, never()).scheduleWork(resumeWork);
+        complete(2);
+        assertThat(queue.isSaturated()).isFalse();
+        verify(workManager).scheduleWork(resumeWork);
+    }
+
+    /**
+     * a cancelled queue does not resume the scans of its deactivated spec.
+     */
+    @Test
+    public void testCancelSaturated() throws Exception {
+        ImportDispatcher.SpecQueue queue = new ImportDispatcher(
+                workManager, wheel, 0).createQueue(1, 1, 4);
+        Work resumeWork = mock(Work.class);
+        queue.setResumeWork(resumeWork);
+        for (int i = 0; i < 5; i++) {
+            queue.submit(mock(Work.class));
+        }
+        assertThat(queue.isSaturated()).isTrue();
+        queue.cancel();
+        assertThat(queue.getPendingCount()).isEqualTo(0);
+        complete(0);
+        verify(workManager, never()).scheduleWork(resumeWork);
+        assertThat(scheduled).hasSize(1);
+    }
+
+    /**
+     * the specs share the imports in proportion to their weights.
+     */
+    @Test
+    public void testWeightedFairness() throws Exception {
+        ImportDispatcher dispatcher = new ImportDispatcher(workManager, wheel,
+                1);
+        ImportDispatcher.SpecQueue noisy = dispatcher.createQueue(1, 0, 0);
+        ImportDispatcher.SpecQueue heavy = dispatcher.createQueue(2, 0, 0);
+        ImportDispatcher.SpecQueue light = dispatcher.createQueue(1, 0, 0);
+        List<String> started = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            noisy.submit(new TaggedWork(started, "N"));
+        }
+        for (int i = 0; i < 10; i++) {
+            heavy.submit(new TaggedWork(started, "H"));
+            light.submit(new TaggedWork(started, "L"));
+        }
+        for (int i = 0; i < 13; i++) {
+            assertThat(scheduled).hasSize(i + 1);
+            assertThat(dispatcher.getInFlightCount()).isEqualTo(1);
+            scheduled.get(i).run();
+            complete(i);
+        }
+        assertThat(started).containsExactly("N", "H", "H", "L", "N", "H",
+                "H", "L", "N", "H", "H", "L", "N");
+        assertThat(noisy.getPendingCount()).isEqualTo(96);
+    }
+
+    /**
+     * a work that remembers, that it was run.
+     */
+    private static class TaggedWork implements Work {
+
+        private final List<String> started;
+        private final String tag;
+
+        TaggedWork(List<String> started, String tag) {
+            this.started = started;
+            this.tag = tag;
+        }
+
+        @Override
+        public void run() {
+            started.add(tag);
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
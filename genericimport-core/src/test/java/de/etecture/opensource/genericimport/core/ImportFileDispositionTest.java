@@ -0,0 +1,204 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import javax.resource.spi.InvalidPropertyException;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * tests the {@link ImportFileDisposition}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class ImportFileDispositionTest {
+
+    private Path importDir;
+    private Path file;
+
+    @Before
+    public void init() throws Exception {
+        importDir = Files.createTempDirectory("disposition");
+        importDir.toFile().deleteOnExit();
+        file = importDir.resolve("import.txt");
+        Files.write(file, Arrays.asList("a", "b"), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * an imported file is moved into the done directory without replacing a
+     * file of the same name.
+     */
+    @Test
+    public void testMove() throws Exception {
+        ImportFileDisposition disposition = ImportFileDisposition.of(
+                createSpec("move", null));
+        Path moved = disposition.dispose(FileSnapshot.of(file), false);
+        assertThat((Object) moved).isEqualTo(importDir.resolve("done").resolve(
+                "import.txt"));
+        assertThat(Files.exists(file)).isFalse();
+        assertThat(Files.readAllLines(moved, StandardCharsets.UTF_8))
+                .containsExactly("a", "b");
+
+        Files.write(file, Arrays.asList("c"), StandardCharsets.UTF_8);
+        Path movedAgain = disposition.dispose(FileSnapshot.of(file), false);
+        assertThat((Object) movedAgain).isNotEqualTo(moved);
+        assertThat((Object) movedAgain.getParent()).isEqualTo(moved.getParent());
+        assertThat(Files.readAllLines(moved, StandardCharsets.UTF_8))
+                .containsExactly("a", "b");
+    }
+
+    /**
+     * the files of the subdirectories keep their relative paths, so files of
+     * the same name do not collide.
+     */
+    @Test
+    public void testRelativePath() throws Exception {
+        ImportFileDisposition disposition = ImportFileDisposition.of(
+                createSpec("move", null));
+        Path done = importDir.resolve("done");
+        for (String directory : Arrays.asList("a", "b")) {
+            Path subFile = importDir.resolve(directory).resolve("x.csv");
+            Files.createDirectories(subFile.getParent());
+            Files.write(subFile, Arrays.asList(directory),
+                    StandardCharsets.UTF_8);
+            assertThat((Object) disposition.dispose(FileSnapshot.of(subFile),
+                    false)).isEqualTo(done.resolve(directory).resolve("x.csv"));
+        }
+        assertThat(Files.readAllLines(done.resolve("a").resolve("x.csv"),
+                StandardCharsets.UTF_8)).containsExactly("a");
+        // a claimed file is relative to the claim directory of the node.
+        Path nodePath = importDir.resolve(".claims").resolve("node1");
+        Path claimed = nodePath.resolve("a").resolve("y.csv");
+        Files.createDirectories(claimed.getParent());
+        Files.write(claimed, Arrays.asList("y"), StandardCharsets.UTF_8);
+        assertThat((Object) disposition.dispose(FileSnapshot.of(claimed),
+                nodePath, false)).isEqualTo(done.resolve("a").resolve(
+                "y.csv"));
+    }
+
+    /**
+     * an imported file is moved into the directory of the day.
+     */
+    @Test
+    public void testArchive() throws Exception {
+        Path doneDir = Files.createTempDirectory("archive");
+        doneDir.toFile().deleteOnExit();
+        GenericImportSpec spec = createSpec("Archive", null);
+        spec.setDonePath(doneDir.toString());
+        Date today = new Date();
+        Path moved = ImportFileDisposition.of(spec).dispose(FileSnapshot.of(
+                file), false);
+        assertThat((Object) moved).isEqualTo(doneDir.resolve(String.format("%tY",
+                today)).resolve(String.format("%tm", today)).resolve(String
+                .format("%td", today)).resolve("import.txt"));
+        assertThat(Files.exists(moved)).isTrue();
+    }
+
+    /**
+     * an imported file is deleted.
+     */
+    @Test
+    public void testDelete() throws Exception {
+        assertThat(ImportFileDisposition.of(createSpec("delete", null))
+                .dispose(FileSnapshot.of(file), false)).isNull();
+        assertThat(Files.exists(file)).isFalse();
+    }
+
+    /**
+     * a file, whose import failed, is moved into the error directory.
+     */
+    @Test
+    public void testFailed() throws Exception {
+        Path moved = ImportFileDisposition.of(createSpec("delete", null))
+                .dispose(FileSnapshot.of(file), true);
+        assertThat((Object) moved).isEqualTo(importDir.resolve("error").resolve(
+                "import.txt"));
+        assertThat(Files.exists(moved)).isTrue();
+    }
+
+    /**
+     * without a disposition the files stay, unless an error path is given.
+     */
+    @Test
+    public void testNone() throws Exception {
+        assertThat(ImportFileDisposition.of(createSpec(null, null))).isNull();
+        Path errorDir = importDir.resolve("failed");
+        ImportFileDisposition disposition = ImportFileDisposition.of(
+                createSpec("none", errorDir.toString()));
+        assertThat(disposition.dispose(FileSnapshot.of(file), false))
+                .isNull();
+        assertThat(Files.exists(file)).isTrue();
+        assertThat((Object) disposition.dispose(FileSnapshot.of(file), true))
+                .isEqualTo(errorDir.resolve("import.txt"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownAction() throws Exception {
+        ImportFileDisposition.of(createSpec("shred", null));
+    }
+
+    /**
+     * the growing files of the tail mode cannot be disposed.
+     */
+    @Test(expected = InvalidPropertyException.class)
+    public void testTailMode() throws Exception {
+        GenericImportSpec spec = createSpec("move", null);
+        spec.validate();
+        spec.setTailMode(true);
+        spec.validate();
+    }
+
+    private GenericImportSpec createSpec(String disposition,
+            String errorPath) {
+        GenericImportSpec spec = new GenericImportSpec();
+        spec.setImportPath(importDir.toString());
+        spec.setDisposition(disposition);
+        spec.setErrorPath(errorPath);
+        return spec;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.spi.ImportSourceProcessor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * tests the {@link ImportFileProcessorRegistry}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class ImportFileProcessorRegistryTest {
+
+    private ImportFileProcessorRegistry registry;
+
+    @Before
+    public void init() {
+        Logger.getLogger(ImportFileProcessorRegistry.class.getName()).setLevel(
+                Level.OFF);
+        registry = new ImportFileProcessorRegistry(getClass().getClassLoader());
+    }
+
+    /**
+     * Test of {@link ImportFileProcessorRegistry#getProcessor(String)}.
+     */
+    @Test
+    public void testGetProcessor() {
+        assertThat(registry.getProcessorCount()).isEqualTo(1);
+        assertThat(registry.getProcessor(TestImportFileProcessor.MIME_TYPE))
+                .isInstanceOf(TestImportFileProcessor.class);
+        assertThat(registry.getProcessor(TestImportFileProcessor.MIME_TYPE))
+                .isSameAs(registry.getProcessor(
+                TestImportFileProcessor.MIME_TYPE));
+        assertThat(registry.getMissCount()).isEqualTo(1);
+        assertThat(registry.getHitCount()).isEqualTo(2);
+    }
+
+    /**
+     * Test of {@link ImportFileProcessorRegistry#getProcessor(String)} for an
+     * unknown mime-type.
+     */
+    @Test
+    public void testGetUnknownProcessor() {
+        assertThat(registry.getProcessor("text/unknown")).isNull();
+        assertThat(registry.getProcessor("text/unknown")).isNull();
+        assertThat(registry.getProcessor(null)).isNull();
+        assertThat(registry.getMissCount()).isEqualTo(2);
+        assertThat(registry.getHitCount()).isEqualTo(1);
+    }
+
+    /**
+     * Test of {@link ImportFileProcessorRegistry#getSourceProcessor(String)}
+     * for a processor of files.
+     */
+    @Test
+    public void testGetSourceProcessor() {
+        ImportSourceProcessor processor = registry.getSourceProcessor(
+                TestImportFileProcessor.MIME_TYPE);
+        assertThat(processor).isInstanceOf(ImportFileProcessorAdapter.class);
+        assertThat(((ImportFileProcessorAdapter) processor).getProcessor())
+                .isSameAs(registry.getProcessor(
+                TestImportFileProcessor.MIME_TYPE));
+        assertThat(registry.getSourceProcessor(
+                TestImportFileProcessor.MIME_TYPE)).isSameAs(processor);
+        assertThat(registry.getSourceProcessor("text/unknown")).isNull();
+    }
+
+    /**
+     * Test of {@link ImportFileProcessorRegistry#invalidate()}.
+     */
+    @Test
+    public void testInvalidate() {
+        Object processor = registry.getProcessor(
+                TestImportFileProcessor.MIME_TYPE);
+        int instances = TestImportFileProcessor.INSTANCES.get();
+        registry.invalidate();
+        assertThat(TestImportFileProcessor.INSTANCES.get()).isEqualTo(
+                instances + 1);
+        assertThat(registry.getProcessor(TestImportFileProcessor.MIME_TYPE))
+                .isNotSameAs(processor);
+        assertThat(registry.getMissCount()).isEqualTo(2);
+    }
+}
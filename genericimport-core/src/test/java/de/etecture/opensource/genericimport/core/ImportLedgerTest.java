@@ -0,0 +1,219 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * tests the {@link ImportLedger}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class ImportLedgerTest {
+
+    private Path ledgerPath;
+    private ImportLedger ledger;
+
+    @Before
+    public void init() throws Exception {
+        Logger.getLogger(ImportLedger.class.getName()).setLevel(Level.OFF);
+        File ledgerFile = File.createTempFile("importLedger", ".ledger");
+        ledgerFile.deleteOnExit();
+        assertThat(ledgerFile.delete()).isTrue();
+        ledgerPath = ledgerFile.toPath();
+        ledger = ImportLedger.open(ledgerPath);
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        ledger.close();
+    }
+
+    private static FileSnapshot snapshot(String name, long size,
+            long lastModified) {
+        return new FileSnapshot(Paths.get("/import", name), size, lastModified,
+                null, lastModified);
+    }
+
+    /**
+     * Test of the states of a file within one run.
+     */
+    @Test
+    public void testStates() throws Exception {
+        FileSnapshot file = snapshot("a.csv", 10, 1000);
+        assertThat(ledger.isNew(file)).isTrue();
+        assertThat(ledger.getState(file)).isNull();
+        assertThat(ledger.markDiscovered(file)).isTrue();
+        assertThat(ledger.markDiscovered(file)).isFalse();
+        assertThat(ledger.isNew(file)).isFalse();
+        ledger.markClaimed(file);
+        assertThat(ledger.getState(file)).isEqualTo(ImportLedger.State.CLAIMED);
+        ledger.markCompleted(file);
+        assertThat(ledger.getState(file)).isEqualTo(
+                ImportLedger.State.COMPLETED);
+        // a modified file is a new file
+        assertThat(ledger.isNew(snapshot("a.csv", 20, 2000))).isTrue();
+        assertThat(ledger.isNew(snapshot("b.csv", 10, 1000))).isTrue();
+    }
+
+    /**
+     * Test of reopening a ledger.
+     */
+    @Test
+    public void testReopen() throws Exception {
+        FileSnapshot completed = snapshot("completed.csv", 10, 1000);
+        FileSnapshot claimed = snapshot("claimed.csv", 10, 1000);
+        FileSnapshot discovered = snapshot("discovered.csv", 10, 1000);
+        ledger.markDiscovered(completed);
+        ledger.markDiscovered(claimed);
+        ledger.markDiscovered(discovered);
+        ledger.markClaimed(completed);
+        ledger.markClaimed(claimed);
+        ledger.markCompleted(completed);
+        ledger.close();
+
+        ledger = ImportLedger.open(ledgerPath);
+        assertThat(ledger.isNew(completed)).isFalse();
+        // the unfinished files must be imported again.
+        assertThat(ledger.isNew(claimed)).isTrue();
+        assertThat(ledger.isNew(discovered)).isTrue();
+    }
+
+    /**
+     * Test of a ledger that holds more files than fit in one mapped region
+     * and is compacted, when it is opened again.
+     */
+    @Test
+    public void testManyFiles() throws Exception {
+        int count = 100000;
+        for (int i = 0; i < count; i++) {
+            FileSnapshot file = snapshot("file" + i, i, i);
+            ledger.markDiscovered(file);
+            ledger.markClaimed(file);
+            if (i % 2 == 0) {
+                ledger.markCompleted(file);
+            }
+        }
+        ledger.close();
+        long uncompactedSize = Files.size(ledgerPath);
+
+        ledger = ImportLedger.open(ledgerPath);
+        assertThat(Files.size(ledgerPath)).isLessThan(uncompactedSize);
+        for (int i = 0; i < count; i++) {
+            assertThat(ledger.isNew(snapshot("file" + i, i, i))).isEqualTo(
+                    i % 2 != 0);
+        }
+        // append again after compaction
+        ledger.markCompleted(snapshot("file1", 1, 1));
+        ledger.close();
+        ledger = ImportLedger.open(ledgerPath);
+        assertThat(ledger.isNew(snapshot("file1", 1, 1))).isFalse();
+        assertThat(ledger.isNew(snapshot("file3", 3, 3))).isTrue();
+    }
+
+    /**
+     * Test of an import, that completes after the ledger was closed.
+     */
+    @Test
+    public void testMarkClosed() throws Exception {
+        FileSnapshot file = snapshot("running.csv", 10, 1000);
+        ledger.markClaimed(file);
+        ledger.close();
+        ledger.markCompleted(file);
+
+        ledger = ImportLedger.open(ledgerPath);
+        // the file is imported again, like after a crash.
+        assertThat(ledger.isNew(file)).isTrue();
+    }
+
+    /**
+     * Test that a ledger cannot be opened twice.
+     */
+    @Test(expected = IOException.class)
+    public void testLedgerInUse() throws Exception {
+        ImportLedger.open(ledgerPath);
+    }
+
+    /**
+     * Test of a {@link FileAgeFilter} with a ledger.
+     */
+    @Test
+    public void testFileAgeFilterWithLedger() throws Exception {
+        File importDir = Files.createTempDirectory("ledger").toFile();
+        importDir.deleteOnExit();
+        File file = new File(importDir, "ledger_1.tmp");
+        file.deleteOnExit();
+        assertThat(file.createNewFile()).isTrue();
+
+        FileAgeFilter filter = new FileAgeFilter("ledger_.*\\.tmp", null, null,
+                ledger);
+        FileSnapshot snapshot = filter.snapshotIfNew(file.toPath());
+        assertThat(snapshot).isNotNull();
+        assertThat(filter.markDispatched(snapshot)).isTrue();
+        filter.reset();
+        assertThat(filter.snapshotIfNew(file.toPath())).isNull();
+        ledger.markCompleted(snapshot);
+        ledger.close();
+
+        // after a restart the file is still known
+        ledger = ImportLedger.open(ledgerPath);
+        filter = new FileAgeFilter("ledger_.*\\.tmp", null, null, ledger);
+        assertThat(filter.snapshotIfNew(file.toPath())).isNull();
+        // but a file written after the last scan is found
+        File newFile = new File(importDir, "ledger_2.tmp");
+        newFile.deleteOnExit();
+        assertThat(newFile.createNewFile()).isTrue();
+        assertThat(newFile.setLastModified(file.lastModified() - 10000l))
+                .isTrue();
+        assertThat(filter.snapshotIfNew(newFile.toPath())).isNotNull();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.Test;
+
+/**
+ * tests the {@link ImportSpecMetrics}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class ImportSpecMetricsTest {
+
+    /**
+     * the metrics are counted and can be read through JMX.
+     */
+    @Test
+    public void testMBean() throws Exception {
+        ImportSpecMetrics metrics = new ImportSpecMetrics("/import");
+        long now = System.currentTimeMillis();
+        FileSnapshot oldFile = new FileSnapshot(Paths.get("/import/old"), 10l,
+                now - 60000l, null, 0l);
+        FileSnapshot newFile = new FileSnapshot(Paths.get("/import/new"), 20l,
+                now - 1000l, null, 0l);
+        metrics.fileDiscovered(oldFile);
+        metrics.fileDiscovered(newFile);
+        metrics.recordsDelivered(3);
+        metrics.recordsDelivered(1);
+        assertThat(metrics.getOldestUnprocessedFileAge())
+                .isGreaterThanOrEqualTo(60000l);
+        metrics.fileImported(oldFile, 10l, false);
+        assertThat(metrics.getOldestUnprocessedFileAge()).isLessThan(60000l);
+        metrics.fileImported(newFile, 0l, true);
+        assertThat(metrics.getOldestUnprocessedFileAge()).isEqualTo(0l);
+        metrics.scanned(42l, now - 5000l);
+        assertThat(metrics.getOldestUnprocessedFileAge())
+                .isGreaterThanOrEqualTo(5000l);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(
+                "de.etecture.opensource.genericimport:type=ImportSpec,id=test");
+        server.registerMBean(metrics, name);
+        try {
+            assertThat(server.getAttribute(name, "FilesDiscovered"))
+                    .isEqualTo(2l);
+            assertThat(server.getAttribute(name, "FilesImported"))
+                    .isEqualTo(1l);
+            assertThat(server.getAttribute(name, "FilesFailed")).isEqualTo(1l);
+            assertThat(server.getAttribute(name, "RecordsDelivered"))
+                    .isEqualTo(4l);
+            assertThat(server.getAttribute(name, "BytesRead")).isEqualTo(10l);
+            assertThat(server.getAttribute(name, "LastScanDuration"))
+                    .isEqualTo(42l);
+            assertThat(server.getAttribute(name, "PendingImports"))
+                    .isEqualTo(0);
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
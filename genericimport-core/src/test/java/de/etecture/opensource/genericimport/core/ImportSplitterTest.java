@@ -0,0 +1,220 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.api.ImportStatusListener;
+import de.etecture.opensource.genericimport.spi.ImportSource;
+import de.etecture.opensource.genericimport.spi.SplittableImportSourceProcessor;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkManager;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import static org.mockito.Mockito.*;
+
+/**
+ * tests the {@link ImportSplitter}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class ImportSplitterTest {
+
+    private static final int LINES = 1000;
+    private File testFile;
+    private WorkManager workManager;
+    private Set<Object> payloads;
+    private ImportStatusListener<Object> listener;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void init() throws Exception {
+        Logger.getLogger(ImportSplitter.class.getName()).setLevel(Level.OFF);
+        testFile = File.createTempFile("importSplitter_", ".tmp");
+        testFile.deleteOnExit();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            lines.add("line-" + i);
+        }
+        Files.write(testFile.toPath(), lines, StandardCharsets.UTF_8);
+        workManager = mock(WorkManager.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                new Thread((Work) invocation.getArguments()[0]).start();
+                return null;
+            }
+        }).when(workManager).scheduleWork(any(Work.class));
+        payloads = Collections.synchronizedSet(new HashSet<>());
+        listener = mock(ImportStatusListener.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                assertThat(payloads.add(invocation.getArguments()[1]))
+                        .isTrue();
+                return null;
+            }
+        }).when(listener).onProgress(anyString(), any());
+    }
+
+    /**
+     * Test of {@link ImportSplitter#split}.
+     */
+    @Test
+    public void testSplit() throws Exception {
+        try (FileImportSource source = new FileImportSource(FileSnapshot.of(
+                testFile.toPath()))) {
+            List<ImportSourceRegion> chunks = new ImportSplitter(null, 1)
+                    .split(new LineProcessor(), source, 1000l);
+            assertThat(chunks.size()).isGreaterThan(1);
+            long position = 0l;
+            for (ImportSourceRegion chunk : chunks) {
+                assertThat(chunk.getOffset()).isEqualTo(position);
+                ByteBuffer last = chunk.map(chunk.getSize() - 1, 1);
+                assertThat(last.get()).isEqualTo((byte) '\n');
+                position += chunk.getSize();
+            }
+            assertThat(position).isEqualTo(testFile.length());
+        }
+    }
+
+    /**
+     * Test of {@link ImportSplitter#process} with helpers.
+     */
+    @Test
+    public void testProcess() throws Exception {
+        try (FileImportSource source = new FileImportSource(FileSnapshot.of(
+                testFile.toPath()))) {
+            ImportSplitter splitter = new ImportSplitter(workManager, 4);
+            LineProcessor processor = new LineProcessor();
+            splitter.process(processor, "text/plain", splitter.split(
+                    processor, source, 500l), "import", listener, null);
+        }
+        verify(workManager, times(3)).scheduleWork(any(Work.class));
+        assertThat(payloads).hasSize(LINES);
+    }
+
+    /**
+     * Test of {@link ImportSplitter#process} with a failing chunk.
+     */
+    @Test
+    public void testProcessFailure() throws Exception {
+        try (FileImportSource source = new FileImportSource(FileSnapshot.of(
+                testFile.toPath()))) {
+            ImportSplitter splitter = new ImportSplitter(null, 1);
+            LineProcessor processor = new LineProcessor() {
+                @Override
+                public void processChunk(String mimeType, ImportSource chunk,
+                        String importId, ImportStatusListener callback) throws
+                        IOException {
+                    throw new IOException("test");
+                }
+            };
+            splitter.process(processor, "text/plain", splitter.split(
+                    processor, source, 500l), "import", listener, null);
+            fail("the failure is not thrown");
+        } catch (IOException ex) {
+            assertThat(ex.getMessage()).isEqualTo("test");
+        }
+        verifyZeroInteractions(listener);
+    }
+
+    /**
+     * a processor that imports each line.
+     */
+    private static class LineProcessor implements
+            SplittableImportSourceProcessor {
+
+        @Override
+        public long nextRecordBoundary(ImportSource source, long position)
+                throws IOException {
+            ByteBuffer buffer = source.map(position, source.getSize()
+                    - position);
+            while (buffer.hasRemaining()) {
+                if (buffer.get() == '\n') {
+                    return position + buffer.position();
+                }
+            }
+            return source.getSize();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void processChunk(String mimeType, ImportSource chunk,
+                String importId, ImportStatusListener callback) throws
+                IOException {
+            BufferedReader reader = new BufferedReader(Channels.newReader(
+                    chunk.getChannel(), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                callback.onProgress(importId, line);
+            }
+        }
+
+        @Override
+        public boolean isResponsibleFor(String mimeType) {
+            return true;
+        }
+
+        @Override
+        public void processSource(String mimeType, ImportSource source,
+                ImportStatusListener callback) throws IOException {
+            processChunk(mimeType, source, source.getName(), callback);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.api.BatchImportStatusListener;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.resource.spi.endpoint.MessageEndpoint;
+import javax.resource.spi.endpoint.MessageEndpointFactory;
+import javax.transaction.xa.XAResource;
+
+/**
+ * a {@link MessageEndpointFactory}, that creates endpoints as dynamic proxies
+ * like an application server does, and records the deliveries.
+ * <p>
+ * it counts the delivered pieces and, for each finished import, the latency
+ * from the arrival of its file to the start and to the end of the import.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class InMemoryEndpointFactory implements MessageEndpointFactory {
+
+    private final Map<String, Long> arrivals;
+    private final CountDownLatch finished;
+    private final StripedCounter records = new StripedCounter();
+    private final Latencies startLatencies = new Latencies();
+    private final Latencies finishLatencies = new Latencies();
+
+    /**
+     * constructs a new factory.
+     *
+     * @param arrivals the arrival times in ns of the files by name.
+     * @param expectedImports the number of imports to wait for.
+     */
+    public InMemoryEndpointFactory(Map<String, Long> arrivals,
+            int expectedImports) {
+        this.arrivals = arrivals;
+        this.finished = new CountDownLatch(expectedImports);
+    }
+
+    @Override
+    public MessageEndpoint createEndpoint(XAResource xaResource) {
+        return (MessageEndpoint) Proxy.newProxyInstance(getClass()
+                .getClassLoader(), new Class<?>[]{MessageEndpoint.class,
+            BatchImportStatusListener.class}, new Endpoint());
+    }
+
+    @Override
+    public MessageEndpoint createEndpoint(XAResource xaResource,
+            long timeout) {
+        return createEndpoint(xaResource);
+    }
+
+    @Override
+    public boolean isDeliveryTransacted(Method method) {
+        return false;
+    }
+
+    /**
+     * waits until the expected imports are finished.
+     *
+     * @param timeout the maximum time to wait in ms.
+     * @return false, if the timeout elapsed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitImports(long timeout) throws InterruptedException {
+        return finished.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * returns the number of finished imports.
+     *
+     * @return
+     */
+    public int getFinishedImports() {
+        return finishLatencies.size();
+    }
+
+    /**
+     * returns the number of delivered pieces.
+     *
+     * @return
+     */
+    public long getRecords() {
+        return records.sum();
+    }
+
+    /**
+     * returns the sorted latencies in ns from the arrival of a file to the
+     * start of its import.
+     *
+     * @return
+     */
+    public List<Long> getStartLatencies() {
+        return startLatencies.sorted();
+    }
+
+    /**
+     * returns the sorted latencies in ns from the arrival of a file to the end
+     * of its import.
+     *
+     * @return
+     */
+    public List<Long> getFinishLatencies() {
+        return finishLatencies.sorted();
+    }
+
+    private void record(Latencies latencies, String importId) {
+        Long arrival = arrivals.get(importId);
+        if (arrival != null) {
+            latencies.add(System.nanoTime() - arrival);
+        }
+    }
+
+    /**
+     * the latencies, that are recorded concurrently.
+     */
+    private static class Latencies extends ConcurrentLinkedQueue<Long> {
+
+        private static final long serialVersionUID = 1l;
+
+        List<Long> sorted() {
+            List<Long> sorted = new ArrayList<>(this);
+            Collections.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * the endpoint, that records the callbacks.
+     */
+    private class Endpoint implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "onStart":
+                    record(startLatencies, (String) args[0]);
+                    return null;
+                case "onProgress":
+                    records.increment();
+                    return null;
+                case "onProgressBatch":
+                    records.add(((List<?>) args[1]).size());
+                    return null;
+                case "onFinished":
+                    record(finishLatencies, (String) args[0]);
+                    finished.countDown();
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "InMemoryEndpoint";
+                default:
+                    // beforeDelivery, afterDelivery, release, onError, ...
+                    return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * drives a load test of the {@link GenericImportConnector} without an
+ * application server.
+ * <p>
+ * the connector is started with an {@link InMemoryBootstrapContext} and an
+ * endpoint is activated, that watches a temporary directory. Then a
+ * {@link SyntheticFileGenerator} writes the files into the directory, while the
+ * {@link InMemoryEndpointFactory} records the imports. The result reports the
+ * throughput and the percentiles of the latencies.
+ * <p>
+ * with several nodes, one connector per node imports from the same directory.
+ * The nodes claim the files, so each file is imported once.
+ * <p>
+ * the driver can be run on its own, configured by system properties, e.g.
+ * <code>-Dload.files=10000 -Dload.lines=1000 -Dload.rate=200</code>.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class LoadTestDriver {
+
+    private int fileCount = 100;
+    private int linesPerFile = 100;
+    private int lineLength = 80;
+    private double filesPerSecond = 0d;
+    private int threads = Runtime.getRuntime().availableProcessors() * 2;
+    private int queueSize = 1000;
+    private int progressBatchSize = 1;
+    private int nodes = 1;
+    private long timeout = TimeUnit.MINUTES.toMillis(10);
+
+    public static void main(String[] args) throws Exception {
+        LoadTestDriver driver = new LoadTestDriver();
+        driver.fileCount = Integer.getInteger("load.files", driver.fileCount);
+        driver.linesPerFile = Integer.getInteger("load.lines",
+                driver.linesPerFile);
+        driver.lineLength = Integer.getInteger("load.lineLength",
+                driver.lineLength);
+        driver.filesPerSecond = Double.parseDouble(System.getProperty(
+                "load.rate", "0"));
+        driver.threads = Integer.getInteger("load.threads", driver.threads);
+        driver.queueSize = Integer.getInteger("load.queueSize",
+                driver.queueSize);
+        driver.progressBatchSize = Integer.getInteger("load.batchSize",
+                driver.progressBatchSize);
+        driver.nodes = Integer.getInteger("load.nodes", driver.nodes);
+        Logger.getLogger("de.etecture.opensource.genericimport").setLevel(
+                Level.WARNING);
+        System.out.println(driver.run());
+    }
+
+    public LoadTestDriver setFileCount(int fileCount) {
+        this.fileCount = fileCount;
+        return this;
+    }
+
+    public LoadTestDriver setLinesPerFile(int linesPerFile) {
+        this.linesPerFile = linesPerFile;
+        return this;
+    }
+
+    public LoadTestDriver setLineLength(int lineLength) {
+        this.lineLength = lineLength;
+        return this;
+    }
+
+    public LoadTestDriver setFilesPerSecond(double filesPerSecond) {
+        this.filesPerSecond = filesPerSecond;
+        return this;
+    }
+
+    public LoadTestDriver setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public LoadTestDriver setProgressBatchSize(int progressBatchSize) {
+        this.progressBatchSize = progressBatchSize;
+        return this;
+    }
+
+    public LoadTestDriver setNodes(int nodes) {
+        this.nodes = nodes;
+        return this;
+    }
+
+    public LoadTestDriver setTimeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * runs the load test.
+     *
+     * @return the result of the load test.
+     * @throws Exception if the connector cannot be started or the files
+     * cannot be written.
+     */
+    public Result run() throws Exception {
+        Path importDir = Files.createTempDirectory("loadTest");
+        List<Path> ledgers = new ArrayList<>();
+        List<InMemoryWorkManager> workManagers = new ArrayList<>();
+        List<GenericImportConnector> connectors = new ArrayList<>();
+        try {
+            SyntheticFileGenerator generator = new SyntheticFileGenerator(
+                    importDir, fileCount, linesPerFile, lineLength,
+                    filesPerSecond);
+            InMemoryEndpointFactory endpointFactory =
+                    new InMemoryEndpointFactory(generator.getArrivals(),
+                    fileCount);
+            List<GenericImportSpec> specs = new ArrayList<>();
+            for (int node = 0; node < nodes; node++) {
+                Path ledger = Files.createTempFile("loadTest", ".ledger");
+                ledgers.add(ledger);
+                InMemoryWorkManager workManager = new InMemoryWorkManager(
+                        threads, queueSize);
+                workManagers.add(workManager);
+                GenericImportConnector connector = new GenericImportConnector();
+                connectors.add(connector);
+                connector.start(new InMemoryBootstrapContext(workManager));
+                GenericImportSpec spec = new GenericImportSpec();
+                spec.setImportPath(importDir.toString());
+                spec.setImportFilePattern(SyntheticFileGenerator
+                        .getFilePattern());
+                spec.setMimeType(TestImportFileProcessor.MIME_TYPE);
+                spec.setScheduleExpression("@every-second");
+                spec.setWatchImportPath(true);
+                spec.setLedgerPath(ledger.toString());
+                spec.setProgressBatchSize(progressBatchSize);
+                if (nodes > 1) {
+                    spec.setClaimFiles(true);
+                    spec.setNodeId("node" + node);
+                    spec.setDisposition("delete");
+                }
+                spec.validate();
+                connector.endpointActivation(endpointFactory, spec);
+                specs.add(spec);
+            }
+            long started = System.nanoTime();
+            generator.run();
+            if (generator.getFailure() != null) {
+                throw generator.getFailure();
+            }
+            endpointFactory.awaitImports(timeout);
+            long elapsed = System.nanoTime() - started;
+            for (int node = 0; node < nodes; node++) {
+                connectors.get(node).endpointDeactivation(endpointFactory,
+                        specs.get(node));
+            }
+            return new Result(fileCount, endpointFactory.getFinishedImports(),
+                    endpointFactory.getRecords(), elapsed, endpointFactory
+                    .getStartLatencies(), endpointFactory
+                    .getFinishLatencies());
+        } finally {
+            for (GenericImportConnector connector : connectors) {
+                connector.stop();
+            }
+            for (InMemoryWorkManager workManager : workManagers) {
+                workManager.shutdown(TimeUnit.SECONDS.toMillis(10));
+            }
+            delete(importDir);
+            for (Path ledger : ledgers) {
+                Files.deleteIfExists(ledger);
+            }
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file,
+                    BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir,
+                    IOException ex) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * the result of a load test.
+     */
+    public static class Result {
+
+        private final int files;
+        private final int finishedImports;
+        private final long records;
+        private final long elapsed;
+        private final List<Long> startLatencies;
+        private final List<Long> finishLatencies;
+
+        Result(int files, int finishedImports, long records, long elapsed,
+                List<Long> startLatencies, List<Long> finishLatencies) {
+            this.files = files;
+            this.finishedImports = finishedImports;
+            this.records = records;
+            this.elapsed = elapsed;
+            this.startLatencies = startLatencies;
+            this.finishLatencies = finishLatencies;
+        }
+
+        public int getFinishedImports() {
+            return finishedImports;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        public double getFilesPerSecond() {
+            return finishedImports * 1e9d / elapsed;
+        }
+
+        public double getRecordsPerSecond() {
+            return records * 1e9d / elapsed;
+        }
+
+        /**
+         * returns a percentile of the latencies from the arrival of a file to
+         * the end of its import.
+         *
+         * @param percentile the percentile, e.g. 99.
+         * @return the latency in ms.
+         */
+        public double getFinishLatency(double percentile) {
+            return percentile(finishLatencies, percentile);
+        }
+
+        /**
+         * returns a percentile of the latencies from the arrival of a file to
+         * the start of its import.
+         *
+         * @param percentile the percentile, e.g. 99.
+         * @return the latency in ms.
+         */
+        public double getStartLatency(double percentile) {
+            return percentile(startLatencies, percentile);
+        }
+
+        private static double percentile(List<Long> sorted,
+                double percentile) {
+            if (sorted.isEmpty()) {
+                return Double.NaN;
+            }
+            // the nearest rank.
+            int rank = (int) Math.ceil(percentile / 100d * sorted.size());
+            return sorted.get(Math.max(0, rank - 1)) / 1e6d;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "imported %d of %d files with %d records in %.1f s: %.1f files/s, %.1f records/s%n"
+                    + "arrival to onStart    p50: %.1f ms, p90: %.1f ms, p99: %.1f ms, max: %.1f ms%n"
+                    + "arrival to onFinished p50: %.1f ms, p90: %.1f ms, p99: %.1f ms, max: %.1f ms",
+                    finishedImports, files, records, elapsed / 1e9d,
+                    getFilesPerSecond(), getRecordsPerSecond(),
+                    getStartLatency(50), getStartLatency(90),
+                    getStartLatency(99), getStartLatency(100),
+                    getFinishLatency(50), getFinishLatency(90),
+                    getFinishLatency(99), getFinishLatency(100));
+        }
+    }
+}
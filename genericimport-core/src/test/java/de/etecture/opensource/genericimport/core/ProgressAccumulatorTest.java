@@ -0,0 +1,137 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.api.BatchImportStatusListener;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import static org.mockito.Mockito.*;
+
+/**
+ * tests the {@link ProgressAccumulator}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class ProgressAccumulatorTest {
+
+    private BatchImportStatusListener<Object> listener;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void init() {
+        listener = mock(BatchImportStatusListener.class);
+    }
+
+    /**
+     * a batch is delivered, when it is full.
+     */
+    @Test
+    public void testFlushOnMaxRecords() {
+        ProgressAccumulator accumulator = new ProgressAccumulator(listener, 2,
+                0l, 0l);
+        accumulator.onProgress("import", "a");
+        verifyZeroInteractions(listener);
+        accumulator.onProgress("import", "b");
+        accumulator.onProgress("import", "c");
+        verify(listener).onProgressBatch("import", Arrays.<Object>asList("a",
+                "b"));
+        verifyNoMoreInteractions(listener);
+        accumulator.flush();
+        verify(listener).onProgressBatch("import", Collections.<Object>
+                singletonList("c"));
+    }
+
+    /**
+     * a batch is delivered, when its pieces exceed the maximum size.
+     */
+    @Test
+    public void testFlushOnMaxBytes() {
+        ProgressAccumulator accumulator = new ProgressAccumulator(listener, 100,
+                5l, 0l);
+        accumulator.onProgress("import", "abc");
+        verifyZeroInteractions(listener);
+        accumulator.onProgress("import", new byte[3]);
+        verify(listener).onProgressBatch(eq("import"), anyList());
+    }
+
+    /**
+     * the other callbacks deliver the pending batch first.
+     */
+    @Test
+    public void testKeepsOrder() {
+        ProgressAccumulator accumulator = new ProgressAccumulator(listener, 100,
+                0l, 0l);
+        accumulator.onStart("import");
+        accumulator.onProgress("import", "a");
+        accumulator.onWarning("import", "warning");
+        accumulator.onProgress("import", "b");
+        accumulator.onFinished("import");
+        InOrder inOrder = inOrder(listener);
+        inOrder.verify(listener).onStart("import");
+        inOrder.verify(listener).onProgressBatch("import", Collections
+                .<Object>singletonList("a"));
+        inOrder.verify(listener).onWarning("import", "warning");
+        inOrder.verify(listener).onProgressBatch("import", Collections
+                .<Object>singletonList("b"));
+        inOrder.verify(listener).onFinished("import");
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    /**
+     * a batch holds the pieces of one import only.
+     */
+    @Test
+    public void testFlushOnOtherImport() {
+        ProgressAccumulator accumulator = new ProgressAccumulator(listener, 100,
+                0l, 0l);
+        accumulator.onProgress("first", "a");
+        accumulator.onProgress("second", "b");
+        verify(listener).onProgressBatch("first", Collections
+                .<Object>singletonList("a"));
+        accumulator.flush();
+        verify(listener).onProgressBatch("second", Collections
+                .<Object>singletonList("b"));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * generates synthetic import files of a given size at a given rate.
+ * <p>
+ * each file is written with a temporary name and then moved atomically to its
+ * name, so it is never imported half written. The time of the move is
+ * remembered as the arrival of the file.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class SyntheticFileGenerator implements Runnable {
+
+    private final Path directory;
+    private final int fileCount;
+    private final int linesPerFile;
+    private final int lineLength;
+    private final double filesPerSecond;
+    private final Map<String, Long> arrivals = new ConcurrentHashMap<>();
+    private volatile IOException failure;
+
+    /**
+     * constructs a new generator.
+     *
+     * @param directory the directory to write the files to.
+     * @param fileCount the number of files.
+     * @param linesPerFile the number of lines of each file.
+     * @param lineLength the number of characters of each line.
+     * @param filesPerSecond the arrival rate of the files or 0 to write them
+     * as fast as possible.
+     */
+    public SyntheticFileGenerator(Path directory, int fileCount,
+            int linesPerFile, int lineLength, double filesPerSecond) {
+        this.directory = directory;
+        this.fileCount = fileCount;
+        this.linesPerFile = linesPerFile;
+        this.lineLength = lineLength;
+        this.filesPerSecond = filesPerSecond;
+    }
+
+    /**
+     * returns the name pattern of the generated files.
+     *
+     * @return
+     */
+    public static String getFilePattern() {
+        return "load_\\d+\\.txt";
+    }
+
+    /**
+     * returns the arrival times in ns of the files written so far by name.
+     *
+     * @return
+     */
+    public Map<String, Long> getArrivals() {
+        return arrivals;
+    }
+
+    /**
+     * returns the failure, that stopped the generator.
+     *
+     * @return the failure or null.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public void run() {
+        long interval = filesPerSecond > 0 ? (long) (TimeUnit.SECONDS
+                .toNanos(1) / filesPerSecond) : 0l;
+        long started = System.nanoTime();
+        try {
+            for (int i = 0; i < fileCount; i++) {
+                long due = started + i * interval;
+                while (System.nanoTime() < due) {
+                    LockSupport.parkNanos(due - System.nanoTime());
+                }
+                writeFile(String.format("load_%d.txt", i));
+            }
+        } catch (IOException ex) {
+            failure = ex;
+        }
+    }
+
+    private void writeFile(String name) throws IOException {
+        Path temp = directory.resolve(name + ".part");
+        StringBuilder line = new StringBuilder(lineLength);
+        try (Writer writer = Files.newBufferedWriter(temp,
+                StandardCharsets.UTF_8)) {
+            for (int i = 0; i < linesPerFile; i++) {
+                line.setLength(0);
+                line.append(name).append('-').append(i).append(';');
+                while (line.length() < lineLength) {
+                    line.append((char) ('a' + line.length() % 26));
+                }
+                writer.append(line).append('\n');
+            }
+        }
+        // the file may be imported, before the move returns.
+        arrivals.put(name, System.nanoTime());
+        Files.move(temp, directory.resolve(name),
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * tests the {@link TailOffsetStore}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class TailOffsetStoreTest {
+
+    private Path storePath;
+    private Path file;
+
+    @Before
+    public void init() throws Exception {
+        File storeFile = File.createTempFile("tailOffsets_", ".tmp");
+        storeFile.deleteOnExit();
+        storePath = storeFile.toPath();
+        file = storePath.resolveSibling("tail.log");
+    }
+
+    /**
+     * the committed offsets are remembered, when the store is opened again.
+     */
+    @Test
+    public void testReopen() throws Exception {
+        TailOffsetStore store = TailOffsetStore.open(storePath);
+        FileSnapshot snapshot = new FileSnapshot(file, 100l, 1l, "inode1", 1l);
+        assertThat(store.getOffset(snapshot)).isEqualTo(0l);
+        store.commit(snapshot, 80l);
+        assertThat(store.getOffset(snapshot)).isEqualTo(80l);
+        assertThat(TailOffsetStore.open(storePath).getOffset(new FileSnapshot(
+                file, 120l, 2l, "inode1", 2l))).isEqualTo(80l);
+    }
+
+    /**
+     * the commits are appended and the store is compacted, when it holds too
+     * many outdated lines. The offsets and the locks of the files, that do not
+     * exist anymore, are dropped.
+     */
+    @Test
+    public void testCompaction() throws Exception {
+        Files.write(file, new byte[2000]);
+        try {
+            Path deleted = storePath.resolveSibling("deleted.log");
+            TailOffsetStore store = TailOffsetStore.open(storePath);
+            FileSnapshot deletedSnapshot = new FileSnapshot(deleted, 10l, 1l,
+                    "inode2", 1l);
+            store.commit(deletedSnapshot, 10l);
+            assertThat(store.getOffset(deletedSnapshot)).isEqualTo(10l);
+            ReentrantLock lock = store.getLock(
+                    deleted);
+            FileSnapshot snapshot = new FileSnapshot(file, 2000l, 1l,
+                    "inode1", 1l);
+            for (int i = 1; i <= 2000; i++) {
+                store.commit(snapshot, i);
+            }
+            assertThat(Files.readAllLines(storePath, StandardCharsets.UTF_8)
+                    .size()).isLessThan(1100);
+            assertThat(store.getOffset(deletedSnapshot)).isEqualTo(0l);
+            assertThat(store.getLock(deleted)).isNotSameAs(lock);
+            store.close();
+            TailOffsetStore reopened = TailOffsetStore.open(storePath);
+            assertThat(reopened.getOffset(snapshot)).isEqualTo(2000l);
+            reopened.close();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * a line, that was not written completely, is ignored.
+     */
+    @Test
+    public void testIncompleteLine() throws Exception {
+        Files.write(file, new byte[100]);
+        try {
+            TailOffsetStore store = TailOffsetStore.open(storePath);
+            FileSnapshot snapshot = new FileSnapshot(file, 100l, 1l, "inode1",
+                    1l);
+            store.commit(snapshot, 80l);
+            store.close();
+            Files.write(storePath, "90\tinode1\t".getBytes(
+                    StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            store = TailOffsetStore.open(storePath);
+            assertThat(store.getOffset(snapshot)).isEqualTo(80l);
+            store.commit(snapshot, 100l);
+            store.close();
+            assertThat(TailOffsetStore.open(storePath).getOffset(snapshot))
+                    .isEqualTo(100l);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * a rotated or truncated file is imported from its start.
+     */
+    @Test
+    public void testRotation() throws Exception {
+        TailOffsetStore store = TailOffsetStore.open(storePath);
+        store.commit(new FileSnapshot(file, 100l, 1l, "inode1", 1l), 100l);
+        assertThat(store.getOffset(new FileSnapshot(file, 150l, 2l, "inode2",
+                2l))).isEqualTo(0l);
+        assertThat(store.getOffset(new FileSnapshot(file, 50l, 2l, "inode1",
+                2l))).isEqualTo(0l);
+    }
+
+    /**
+     * without a path the offsets are remembered in memory.
+     */
+    @Test
+    public void testInMemory() throws Exception {
+        TailOffsetStore store = TailOffsetStore.open(null);
+        FileSnapshot snapshot = new FileSnapshot(file, 100l, 1l, null, 1l);
+        store.commit(snapshot, 100l);
+        assertThat(store.getOffset(snapshot)).isEqualTo(100l);
+        assertThat(store.getLock(file)).isSameAs(store.getLock(file
+                .toAbsolutePath()));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Timer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * tests the {@link TimingWheel}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class TimingWheelTest {
+
+    private TimingWheel wheel;
+
+    @Before
+    public void init() {
+        wheel = new TimingWheel(new Timer("TimingWheelTest", true), 10l, 64);
+    }
+
+    @After
+    public void stop() {
+        wheel.stop();
+    }
+
+    /**
+     * a task is not run before its delay.
+     */
+    @Test
+    public void testDelay() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicLong runAt = new AtomicLong();
+        long scheduledAt = System.currentTimeMillis();
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                runAt.set(System.currentTimeMillis());
+                done.countDown();
+            }
+        }, 1500l);
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        // the delay is longer than a round of the wheel.
+        assertThat(runAt.get() - scheduledAt).isGreaterThanOrEqualTo(1500l);
+        assertThat(wheel.size()).isEqualTo(0);
+    }
+
+    /**
+     * a cancelled task is not run.
+     */
+    @Test
+    public void testCancel() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        TimingWheel.Timeout timeout = wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        }, 50l);
+        assertThat(timeout.cancel()).isTrue();
+        assertThat(timeout.cancel()).isFalse();
+        assertThat(wheel.size()).isEqualTo(0);
+        assertThat(done.await(200, TimeUnit.MILLISECONDS)).isFalse();
+    }
+
+    /**
+     * 10000 tasks are scheduled within their delays and run by the one
+     * thread of the wheel.
+     */
+    @Test
+    public void testManySchedules() throws Exception {
+        final int count = 10000;
+        final CountDownLatch done = new CountDownLatch(count);
+        final Set<Thread> threads = Collections.synchronizedSet(
+                new HashSet<Thread>());
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                threads.add(Thread.currentThread());
+                done.countDown();
+            }
+        };
+        long started = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            wheel.schedule(task, i % 1000);
+        }
+        long scheduled = System.nanoTime();
+        // the scheduling must be done, before the last timeouts are due.
+        assertThat(TimeUnit.NANOSECONDS.toMillis(scheduled - started))
+                .isLessThan(1000l);
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(threads).hasSize(1);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.core;
+
+import de.etecture.opensource.genericimport.cron.ScheduleExpression;
+import java.util.Timer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.resource.spi.BootstrapContext;
+import javax.resource.spi.work.ExecutionContext;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkEvent;
+import javax.resource.spi.work.WorkListener;
+import javax.resource.spi.work.WorkManager;
+import javax.resource.spi.work.WorkRejectedException;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import static org.mockito.Mockito.*;
+
+/**
+ * tests the {@link WorkScheduler}
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class WorkSchedulerTest {
+
+    private BootstrapContext bootCtx;
+    private WorkManager workManager;
+    private WorkScheduler scheduler;
+
+    @Before
+    public void init() throws Exception {
+        Logger.getLogger(WorkScheduler.class.getName()).setLevel(Level.OFF);
+        bootCtx = mock(BootstrapContext.class);
+        workManager = mock(WorkManager.class);
+        when(bootCtx.getWorkManager()).thenReturn(workManager);
+        when(bootCtx.createTimer()).thenReturn(new Timer(true));
+        scheduler = new WorkScheduler(bootCtx);
+    }
+
+    @After
+    public void stop() {
+        scheduler.stop();
+    }
+
+    /**
+     * 10000 works are scheduled with one timer.
+     */
+    @Test
+    public void testScheduleManyWorks() throws Exception {
+        Work[] works = new Work[10000];
+        for (int i = 0; i < works.length; i++) {
+            works[i] = mock(Work.class);
+            scheduler.scheduleWork(works[i], 100l, 100l);
+        }
+        verify(bootCtx, times(1)).createTimer();
+        assertThat(scheduler.getScheduledWorkCount()).isEqualTo(works.length);
+        // each work is started at least twice.
+        verify(workManager, timeout(5000).atLeast(2 * works.length))
+                .scheduleWork(any(Work.class));
+        scheduler.cancel(works[0]);
+        verify(works[0]).release();
+        assertThat(scheduler.getScheduledWorkCount()).isEqualTo(
+                works.length - 1);
+    }
+
+    /**
+     * a rejection, that is reported by an event and by an exception, schedules
+     * the next start only once.
+     */
+    @Test
+    public void testAdaptiveRejectedOnce() throws Exception {
+        Work work = mock(Work.class);
+        ScheduleExpression se = mock(ScheduleExpression.class);
+        when(se.getNextValidTime(anyLong())).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) {
+                return (Long) invocation.getArguments()[0];
+            }
+        });
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                Work work = (Work) invocation.getArguments()[0];
+                WorkRejectedException ex = new WorkRejectedException("test");
+                ((WorkListener) invocation.getArguments()[3]).workRejected(
+                        new WorkEvent(work, WorkEvent.WORK_REJECTED, work, ex));
+                throw ex;
+            }
+        }).doNothing().when(workManager).scheduleWork(any(Work.class),
+                anyLong(), any(ExecutionContext.class),
+                any(WorkListener.class));
+        scheduler.scheduleWork(work, se, new AdaptivePollInterval(10l, 10l));
+        verify(workManager, timeout(5000).times(2)).scheduleWork(
+                any(Work.class), anyLong(), any(ExecutionContext.class),
+                any(WorkListener.class));
+        // the second start is never completed, so there is no third one.
+        Thread.sleep(200l);
+        verify(workManager, times(2)).scheduleWork(any(Work.class), anyLong(),
+                any(ExecutionContext.class), any(WorkListener.class));
+    }
+}
@@ -2,7 +2,12 @@ package de.etecture.opensource.genericimport.cron;
 
 import de.herschke.testhelper.ConsoleWriter;
 import de.herschke.testhelper.PrettyPrintingRule;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
 import org.joda.time.DateTimeZone;
 import org.joda.time.Period;
 import org.joda.time.format.PeriodFormatterBuilder;
@@ -102,6 +107,91 @@ public class ScheduleExpressionTest {
                 .getMillis()) - time.getMillis());
     }
 
+    /**
+     * compares the next valid times with a search second by second for the
+     * valid values, that are written down by hand, so a wrong mask of the
+     * expression is found.
+     * <p>
+     * N.B. the end of a range is exclusive, so "5-7" are the hours 5 and 6.
+     */
+    @Test
+    public void testAgainstSearch() throws Exception {
+        ValidValues[] expressions = {
+            new ValidValues("*/5 3/7 5-7 FRI-SUN", range(0, 59, 5),
+            range(3, 59, 7), values(5, 6), values(DateTimeConstants.FRIDAY,
+            DateTimeConstants.SATURDAY)),
+            new ValidValues("0 3 9 WED", values(0), values(3), values(9),
+            values(DateTimeConstants.WEDNESDAY)),
+            new ValidValues("10-20 */15 0,12 MON", range(10, 19, 1),
+            range(0, 59, 15), values(0, 12), values(
+            DateTimeConstants.MONDAY)),
+            new ValidValues("0 0 23 SUN", values(0), values(0), values(23),
+            values(DateTimeConstants.SUNDAY)),
+            new ValidValues("30 59 23 *", values(30), values(59), values(23),
+            range(DateTimeConstants.MONDAY, DateTimeConstants.SUNDAY, 1))};
+        Random random = new Random(42);
+        for (ValidValues valid : expressions) {
+            ScheduleExpression exp = new ScheduleExpression(valid.definition);
+            for (int i = 0; i < 50; i++) {
+                long actualTime = time.getMillis() + (long) (random
+                        .nextDouble() * 14 * 24 * 60 * 60 * 1000);
+                DateTime expected = new DateTime(actualTime, DateTimeZone.UTC)
+                        .plusSeconds(1).withMillisOfSecond(0);
+                while (!valid.matches(expected)) {
+                    expected = expected.plusSeconds(1);
+                }
+                if (exp.getNextValidTime(actualTime) != expected.getMillis()) {
+                    throw new AssertionError(String.format(
+                            "%s at %s: expected %s, actual: %s",
+                            valid.definition, new DateTime(actualTime,
+                            DateTimeZone.UTC), expected, new DateTime(exp
+                            .getNextValidTime(actualTime), DateTimeZone.UTC)));
+                }
+            }
+        }
+    }
+
+    private static Set<Integer> values(Integer... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    private static Set<Integer> range(int from, int to, int step) {
+        Set<Integer> values = new HashSet<>();
+        for (int value = from; value <= to; value += step) {
+            values.add(value);
+        }
+        return values;
+    }
+
+    /**
+     * the valid values of the fields of an expression.
+     */
+    private static class ValidValues {
+
+        private final String definition;
+        private final Set<Integer> seconds;
+        private final Set<Integer> minutes;
+        private final Set<Integer> hours;
+        private final Set<Integer> daysOfWeek;
+
+        ValidValues(String definition, Set<Integer> seconds,
+                Set<Integer> minutes, Set<Integer> hours,
+                Set<Integer> daysOfWeek) {
+            this.definition = definition;
+            this.seconds = seconds;
+            this.minutes = minutes;
+            this.hours = hours;
+            this.daysOfWeek = daysOfWeek;
+        }
+
+        boolean matches(DateTime time) {
+            return seconds.contains(time.getSecondOfMinute())
+                    && minutes.contains(time.getMinuteOfHour())
+                    && hours.contains(time.getHourOfDay())
+                    && daysOfWeek.contains(time.getDayOfWeek());
+        }
+    }
+
     protected void printResult(String expression, DateTime time, long expected,
             long difference) throws AssertionError {
         out.println(expression);
@@ -45,6 +45,9 @@ import java.io.File;
 /**
  * this interface defines a processor for a file to be implemented by a service
  * provider.
+ * <p>
+ * N.B. the resource adapter instantiates each processor once and shares it
+ * between concurrent imports, so a processor must be thread-safe.
  *
  * @author rhk
  * @version ${project.version}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.spi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * this interface defines the bytes of an import, that are opened and owned by
+ * the resource adapter.
+ * <p>
+ * N.B. a processor must neither close the channel nor keep the source or its
+ * buffers after the import. The resource adapter closes the source, when the
+ * processor returns.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public interface ImportSource {
+
+    /**
+     * returns the name of the source, e.g. the name of the file.
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * returns the number of bytes of the source, as a hint to size buffers.
+     *
+     * @return the size or -1, if the size is not known.
+     */
+    long getSize();
+
+    /**
+     * returns the file of the source.
+     *
+     * @return the file or null, if the source is not a file.
+     */
+    File getFile();
+
+    /**
+     * returns the channel to read the bytes of the source. Each call returns
+     * the same channel.
+     *
+     * @return the channel
+     * @throws IOException if the source cannot be opened.
+     */
+    ReadableByteChannel getChannel() throws IOException;
+
+    /**
+     * tells, if the bytes of the source can be mapped into memory.
+     *
+     * @return wether or not {@link #map(long, long)} is supported.
+     */
+    boolean isMappable();
+
+    /**
+     * maps a region of the source read-only into memory.
+     * <p>
+     * N.B. a region is limited to {@link Integer#MAX_VALUE} bytes, so larger
+     * sources must be mapped region by region.
+     *
+     * @param position the position of the region
+     * @param size the size of the region
+     * @return the read-only buffer of the region
+     * @throws IOException if the region cannot be mapped.
+     * @throws UnsupportedOperationException if the source is not mappable.
+     */
+    ByteBuffer map(long position, long size) throws IOException;
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.spi;
+
+import de.etecture.opensource.genericimport.api.ImportStatusListener;
+import java.io.IOException;
+
+/**
+ * this interface defines a processor for an {@link ImportSource} to be
+ * implemented by a service provider.
+ * <p>
+ * in contrast to an {@link ImportFileProcessor} the processor does not open
+ * the file itself, but reads the channel or the mapped buffers of the source
+ * that is opened by the resource adapter. If a processor of both kinds is
+ * responsible for a mime-type, this one is preferred.
+ * <p>
+ * N.B. the resource adapter instantiates each processor once and shares it
+ * between concurrent imports, so a processor must be thread-safe.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public interface ImportSourceProcessor {
+
+    /**
+     * called by the resource adapter to request the responsibility for a given
+     * mime-type.
+     *
+     * @param mimeType the mimeType to check
+     * @return wether or not this processor is responsible for this element.
+     */
+    boolean isResponsibleFor(String mimeType);
+
+    /**
+     * called by the resource adapter to process this source.
+     *
+     * @param mimeType the type of element
+     * @param source the source to process.
+     * @param callback the {@link ImportStatusListener} to report the progress
+     * of the import to.
+     * @throws IOException if the source cannot be read.
+     */
+    void processSource(String mimeType, ImportSource source,
+            ImportStatusListener callback) throws IOException;
+}
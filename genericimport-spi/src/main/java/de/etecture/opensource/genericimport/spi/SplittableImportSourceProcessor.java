@@ -0,0 +1,95 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.spi;
+
+import de.etecture.opensource.genericimport.api.ImportStatusListener;
+import java.io.IOException;
+
+/**
+ * this interface defines a processor for an {@link ImportSource}, whose
+ * records can be imported independently of each other.
+ * <p>
+ * the resource adapter splits a large source at the record boundaries into
+ * chunks and processes the chunks in parallel. All the chunks report to one
+ * import: the resource adapter calls
+ * {@link ImportStatusListener#onStart(java.lang.String)} before the first and
+ * {@link ImportStatusListener#onFinished(java.lang.String)} after the last
+ * chunk, so a chunk must report its progress, errors and warnings only. The
+ * progress of different chunks may arrive in any order.
+ * <p>
+ * a source that is not split, e.g. because it is too small, is still
+ * processed by
+ * {@link #processSource(java.lang.String, ImportSource, ImportStatusListener)}.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public interface SplittableImportSourceProcessor extends ImportSourceProcessor {
+
+    /**
+     * called by the resource adapter to find the start of the first record at
+     * or after the given position, e.g. the position after the next newline.
+     *
+     * @param source the whole source
+     * @param position the position to start searching at
+     * @return the position of the record or the size of the source, if there
+     * is no record left.
+     * @throws IOException if the source cannot be read.
+     */
+    long nextRecordBoundary(ImportSource source, long position) throws
+            IOException;
+
+    /**
+     * called by the resource adapter to process a chunk of a source. The chunk
+     * starts and ends at a record boundary and its positions are relative to
+     * the start of the chunk.
+     * <p>
+     * N.B. the chunks of a source are processed concurrently.
+     *
+     * @param mimeType the type of element
+     * @param chunk the chunk to process.
+     * @param importId the id of the import, the chunk belongs to.
+     * @param callback the callback to report the progress to.
+     * @throws IOException if the chunk cannot be read.
+     */
+    void processChunk(String mimeType, ImportSource chunk, String importId,
+            ImportStatusListener callback) throws IOException;
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.spi;
+
+import java.io.IOException;
+
+/**
+ * this interface defines a processor for an {@link ImportSource}, that is an
+ * append-only file, e.g. a log file.
+ * <p>
+ * in tail mode the resource adapter remembers how many bytes of a file are
+ * imported. When the file grows, only the appended complete records are
+ * processed as a chunk by
+ * {@link #processChunk(java.lang.String, ImportSource, java.lang.String, de.etecture.opensource.genericimport.api.ImportStatusListener)}.
+ * A record that is still written is held back until it is complete.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public interface TailableImportSourceProcessor extends
+        SplittableImportSourceProcessor {
+
+    /**
+     * called by the resource adapter to find the end of the last complete
+     * record after the given position, e.g. the position after the last
+     * newline.
+     *
+     * @param source the whole source
+     * @param position the position of the first record not imported yet.
+     * @return the end of the last complete record or the given position, if
+     * there is no complete record after it.
+     * @throws IOException if the source cannot be read.
+     */
+    long lastRecordBoundary(ImportSource source, long position) throws
+            IOException;
+}
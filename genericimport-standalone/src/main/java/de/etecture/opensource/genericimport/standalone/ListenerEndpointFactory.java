@@ -0,0 +1,133 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.standalone;
+
+import de.etecture.opensource.genericimport.api.BatchImportStatusListener;
+import de.etecture.opensource.genericimport.api.ImportStatusListener;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import javax.resource.spi.endpoint.MessageEndpoint;
+import javax.resource.spi.endpoint.MessageEndpointFactory;
+import javax.transaction.xa.XAResource;
+
+/**
+ * a {@link MessageEndpointFactory}, that delivers the imports to a listener
+ * registered in code.
+ * <p>
+ * the endpoints are dynamic proxies, that implement the interfaces of the
+ * listener as well, so a {@link BatchImportStatusListener} receives the pieces
+ * in batches. All the endpoints share the listener, so it must be thread-safe.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class ListenerEndpointFactory implements MessageEndpointFactory {
+
+    private final ImportStatusListener<?> listener;
+    private final Class<?>[] interfaces;
+
+    public ListenerEndpointFactory(ImportStatusListener<?> listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("the listener must not be null!");
+        }
+        this.listener = listener;
+        this.interfaces = listener instanceof BatchImportStatusListener
+                ? new Class<?>[]{MessageEndpoint.class,
+            BatchImportStatusListener.class}
+                : new Class<?>[]{MessageEndpoint.class,
+            ImportStatusListener.class};
+    }
+
+    /**
+     * returns the listener, the imports are delivered to.
+     *
+     * @return
+     */
+    public ImportStatusListener<?> getListener() {
+        return listener;
+    }
+
+    @Override
+    public MessageEndpoint createEndpoint(XAResource xaResource) {
+        return (MessageEndpoint) Proxy.newProxyInstance(getClass()
+                .getClassLoader(), interfaces, new Endpoint());
+    }
+
+    @Override
+    public MessageEndpoint createEndpoint(XAResource xaResource,
+            long timeout) {
+        return createEndpoint(xaResource);
+    }
+
+    @Override
+    public boolean isDeliveryTransacted(Method method) {
+        return false;
+    }
+
+    private class Endpoint implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws
+                Throwable {
+            if (method.getDeclaringClass() == MessageEndpoint.class) {
+                // neither transactions nor a pool to return the endpoint to.
+                return null;
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return "Endpoint of " + listener;
+                }
+            }
+            try {
+                return method.invoke(listener, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.standalone;
+
+import de.etecture.opensource.genericimport.api.ImportStatusListener;
+import de.etecture.opensource.genericimport.core.GenericImportConnector;
+import de.etecture.opensource.genericimport.core.GenericImportSpec;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.resource.ResourceException;
+
+/**
+ * runs the connector without a JCA container.
+ * <p>
+ * the runtime brings its own {@link StandaloneBootstrapContext}, whose work
+ * manager runs each work in a virtual thread, if the runtime supports them.
+ * The imports are delivered to {@link ImportStatusListener}s, that are
+ * registered in code:
+ * <pre>
+ * StandaloneImportRuntime runtime = new StandaloneImportRuntime();
+ * GenericImportSpec spec = new GenericImportSpec();
+ * spec.setImportPath("/data/orders");
+ * spec.setMimeType("text/csv");
+ * runtime.register(spec, new OrderListener());
+ * runtime.start();
+ * </pre>
+ * <p>
+ * run as a program, the runtime reads the specs from a properties file, that
+ * is given as the first argument. Each spec has a name, that prefixes its
+ * properties, and a listener class with a public default constructor:
+ * <pre>
+ * orders.listener=com.example.OrderListener
+ * orders.importPath=/data/orders
+ * orders.mimeType=text/csv
+ * </pre>
+ * the properties prefixed with <code>connector.</code> configure the
+ * connector itself, e.g. <code>connector.maxConcurrentImports</code>.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class StandaloneImportRuntime {
+
+    private static final Logger LOG = Logger.getLogger(
+            StandaloneImportRuntime.class.getName());
+    private static final String CONNECTOR_PREFIX = "connector";
+    private static final String LISTENER_PROPERTY = "listener";
+    private final GenericImportConnector connector;
+    private final Map<GenericImportSpec, ListenerEndpointFactory> endpoints =
+            new LinkedHashMap<>();
+    private StandaloneWorkManager workManager;
+    private boolean started;
+
+    public StandaloneImportRuntime() {
+        this(new GenericImportConnector());
+    }
+
+    /**
+     * constructs a new runtime, that runs the given connector.
+     *
+     * @param connector
+     */
+    public StandaloneImportRuntime(GenericImportConnector connector) {
+        this.connector = connector;
+    }
+
+    /**
+     * returns the connector, that is run by this runtime.
+     *
+     * @return
+     */
+    public GenericImportConnector getConnector() {
+        return connector;
+    }
+
+    /**
+     * registers a listener for the imports of a spec. If the runtime is
+     * started already, the spec is activated immediately.
+     *
+     * @param spec the spec of the imports.
+     * @param listener the listener, the imports are delivered to.
+     * @throws ResourceException if the spec is invalid or cannot be activated.
+     */
+    public synchronized void register(GenericImportSpec spec,
+            ImportStatusListener<?> listener) throws ResourceException {
+        if (endpoints.containsKey(spec)) {
+            throw new IllegalStateException(String.format(
+                    "the spec is registered already: %s", spec));
+        }
+        spec.validate();
+        spec.setResourceAdapter(connector);
+        ListenerEndpointFactory endpointFactory = new ListenerEndpointFactory(
+                listener);
+        if (started) {
+            connector.endpointActivation(endpointFactory, spec);
+        }
+        endpoints.put(spec, endpointFactory);
+    }
+
+    /**
+     * deregisters the listener of a spec and deactivates the spec.
+     *
+     * @param spec
+     */
+    public synchronized void deregister(GenericImportSpec spec) {
+        ListenerEndpointFactory endpointFactory = endpoints.remove(spec);
+        if (started && endpointFactory != null) {
+            connector.endpointDeactivation(endpointFactory, spec);
+        }
+    }
+
+    /**
+     * starts the connector and activates the registered specs.
+     *
+     * @throws ResourceException if the connector cannot be started or a spec
+     * cannot be activated.
+     */
+    public synchronized void start() throws ResourceException {
+        if (started) {
+            return;
+        }
+        long start = System.nanoTime();
+        workManager = new StandaloneWorkManager();
+        connector.start(new StandaloneBootstrapContext(workManager));
+        started = true;
+        try {
+            for (Map.Entry<GenericImportSpec, ListenerEndpointFactory> endpoint
+                    : endpoints.entrySet()) {
+                connector.endpointActivation(endpoint.getValue(), endpoint
+                        .getKey());
+            }
+        } catch (ResourceException | RuntimeException ex) {
+            try {
+                stop(0l);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            throw ex;
+        }
+        LOG.log(Level.INFO,
+                "started {0} specs in {1} ms, virtual threads: {2}",
+                new Object[]{endpoints.size(), TimeUnit.NANOSECONDS.toMillis(
+                    System.nanoTime() - start), VirtualThreads.isAvailable()});
+    }
+
+    /**
+     * deactivates the specs and stops the connector.
+     *
+     * @param timeout the time in ms to wait for the running imports.
+     * @return false, if imports are still running after the timeout.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean stop(long timeout) throws InterruptedException {
+        StandaloneWorkManager stopped;
+        synchronized (this) {
+            if (!started) {
+                return true;
+            }
+            for (Map.Entry<GenericImportSpec, ListenerEndpointFactory> endpoint
+                    : endpoints.entrySet()) {
+                connector.endpointDeactivation(endpoint.getValue(), endpoint
+                        .getKey());
+            }
+            connector.stop();
+            started = false;
+            stopped = workManager;
+            workManager = null;
+        }
+        return stopped.shutdown(timeout);
+    }
+
+    public synchronized boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * registers the specs, that are configured by the given properties.
+     *
+     * @param properties the properties of the connector and the specs.
+     * @throws ResourceException if a spec cannot be registered.
+     * @throws ReflectiveOperationException if a listener cannot be created.
+     */
+    public void configure(Properties properties) throws ResourceException,
+            ReflectiveOperationException {
+        TreeSet<String> names = new TreeSet<>();
+        for (String key : properties.stringPropertyNames()) {
+            int dot = key.indexOf('.');
+            if (dot <= 0) {
+                throw new IllegalArgumentException(String.format(
+                        "the property has no prefix: %s", key));
+            }
+            names.add(key.substring(0, dot));
+        }
+        names.remove(CONNECTOR_PREFIX);
+        setProperties(connector, CONNECTOR_PREFIX, properties);
+        for (String name : names) {
+            String listenerClass = properties.getProperty(name + "."
+                    + LISTENER_PROPERTY);
+            if (listenerClass == null) {
+                throw new IllegalArgumentException(String.format(
+                        "the spec %s has no listener.", name));
+            }
+            GenericImportSpec spec = new GenericImportSpec();
+            setProperties(spec, name, properties);
+            ClassLoader classLoader = Thread.currentThread()
+                    .getContextClassLoader();
+            Object listener = Class.forName(listenerClass, true,
+                    classLoader == null ? getClass().getClassLoader()
+                    : classLoader).newInstance();
+            if (!(listener instanceof ImportStatusListener)) {
+                throw new IllegalArgumentException(String.format(
+                        "the listener of the spec %s is no ImportStatusListener: %s",
+                        name, listenerClass));
+            }
+            register(spec, (ImportStatusListener<?>) listener);
+        }
+    }
+
+    /**
+     * sets the properties with the given prefix at a bean. The values are
+     * converted by the static valueOf(String) method of the type of the
+     * property.
+     */
+    private static void setProperties(Object bean, String prefix,
+            Properties properties) throws ReflectiveOperationException {
+        PropertyDescriptor[] descriptors;
+        try {
+            descriptors = Introspector.getBeanInfo(bean.getClass())
+                    .getPropertyDescriptors();
+        } catch (IntrospectionException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith(prefix + ".")) {
+                continue;
+            }
+            String name = key.substring(prefix.length() + 1);
+            if (LISTENER_PROPERTY.equals(name) && bean
+                    instanceof GenericImportSpec) {
+                continue;
+            }
+            PropertyDescriptor descriptor = null;
+            for (PropertyDescriptor candidate : descriptors) {
+                if (candidate.getName().equals(name) && candidate
+                        .getWriteMethod() != null) {
+                    descriptor = candidate;
+                    break;
+                }
+            }
+            if (descriptor == null) {
+                throw new IllegalArgumentException(String.format(
+                        "unknown property: %s", key));
+            }
+            String value = properties.getProperty(key).trim();
+            Class<?> type = descriptor.getPropertyType();
+            Object converted = type == String.class ? value
+                    : type.getMethod("valueOf", String.class).invoke(null,
+                    value);
+            descriptor.getWriteMethod().invoke(bean, converted);
+        }
+    }
+
+    /**
+     * runs the specs of the properties file, that is given as the first
+     * argument, until the process is terminated.
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("usage: java -jar genericimport-standalone.jar <properties file>");
+            System.exit(1);
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(Paths.get(args[0]))) {
+            properties.load(in);
+        }
+        final StandaloneImportRuntime runtime = new StandaloneImportRuntime();
+        runtime.configure(properties);
+        final CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                "StandaloneImportRuntime-shutdown") {
+            @Override
+            public void run() {
+                try {
+                    runtime.stop(TimeUnit.SECONDS.toMillis(30));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    stopped.countDown();
+                }
+            }
+        });
+        runtime.start();
+        stopped.await();
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.standalone;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.resource.spi.work.ExecutionContext;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkEvent;
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkListener;
+import javax.resource.spi.work.WorkManager;
+import javax.resource.spi.work.WorkRejectedException;
+
+/**
+ * a {@link WorkManager}, that runs each work in a thread of its own.
+ * <p>
+ * the threads are virtual, if the runtime supports them, so thousands of
+ * imports may block on I/O at the same time. The number of concurrent imports
+ * is limited by the connector, not by this work manager. Works are rejected
+ * only after the work manager was shut down.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class StandaloneWorkManager implements WorkManager {
+
+    private final ExecutorService executor;
+
+    public StandaloneWorkManager() {
+        this(VirtualThreads.newThreadPerTaskExecutor("StandaloneWorkManager"));
+    }
+
+    /**
+     * constructs a new work manager, that runs the works with the given
+     * executor.
+     *
+     * @param executor
+     */
+    public StandaloneWorkManager(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void doWork(Work work) throws WorkException {
+        doWork(work, INDEFINITE, null, null);
+    }
+
+    @Override
+    public void doWork(Work work, long startTimeout,
+            ExecutionContext execContext, WorkListener workListener) throws
+            WorkException {
+        fire(workListener, WorkEvent.WORK_ACCEPTED, work, null);
+        fire(workListener, WorkEvent.WORK_STARTED, work, null);
+        try {
+            work.run();
+        } finally {
+            fire(workListener, WorkEvent.WORK_COMPLETED, work, null);
+        }
+    }
+
+    @Override
+    public long startWork(Work work) throws WorkException {
+        return startWork(work, INDEFINITE, null, null);
+    }
+
+    @Override
+    public long startWork(Work work, long startTimeout,
+            ExecutionContext execContext, WorkListener workListener) throws
+            WorkException {
+        long submitted = System.currentTimeMillis();
+        CountDownLatch started = new CountDownLatch(1);
+        submit(work, workListener, started);
+        try {
+            started.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new WorkException(ex);
+        }
+        return System.currentTimeMillis() - submitted;
+    }
+
+    @Override
+    public void scheduleWork(Work work) throws WorkException {
+        scheduleWork(work, INDEFINITE, null, null);
+    }
+
+    @Override
+    public void scheduleWork(Work work, long startTimeout,
+            ExecutionContext execContext, WorkListener workListener) throws
+            WorkException {
+        submit(work, workListener, null);
+    }
+
+    private void submit(final Work work, final WorkListener workListener,
+            final CountDownLatch started) throws WorkException {
+        fire(workListener, WorkEvent.WORK_ACCEPTED, work, null);
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    fire(workListener, WorkEvent.WORK_STARTED, work, null);
+                    if (started != null) {
+                        started.countDown();
+                    }
+                    try {
+                        work.run();
+                    } finally {
+                        fire(workListener, WorkEvent.WORK_COMPLETED, work,
+                                null);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            WorkRejectedException rejected = new WorkRejectedException(ex);
+            fire(workListener, WorkEvent.WORK_REJECTED, work, rejected);
+            throw rejected;
+        }
+    }
+
+    private void fire(WorkListener workListener, int type, Work work,
+            WorkException exception) {
+        if (workListener == null) {
+            return;
+        }
+        WorkEvent event = new WorkEvent(this, type, work, exception);
+        switch (type) {
+            case WorkEvent.WORK_ACCEPTED:
+                workListener.workAccepted(event);
+                break;
+            case WorkEvent.WORK_STARTED:
+                workListener.workStarted(event);
+                break;
+            case WorkEvent.WORK_COMPLETED:
+                workListener.workCompleted(event);
+                break;
+            default:
+                workListener.workRejected(event);
+        }
+    }
+
+    /**
+     * rejects new works and waits for the running works.
+     *
+     * @param timeout the time in ms to wait for the running works.
+     * @return false, if works are still running after the timeout.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean shutdown(long timeout) throws InterruptedException {
+        executor.shutdown();
+        if (executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+            return true;
+        }
+        executor.shutdownNow();
+        return false;
+    }
+}
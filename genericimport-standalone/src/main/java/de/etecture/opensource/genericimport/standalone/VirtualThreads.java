@@ -0,0 +1,114 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.standalone;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * creates the executor of the standalone runtime.
+ * <p>
+ * on a runtime that supports virtual threads (java 21 and later) each work
+ * runs in a virtual thread of its own, so blocking I/O does not occupy a
+ * platform thread. As this module is compiled for java 7, the executor is
+ * looked up reflectively. Older runtimes fall back to a pool of daemon
+ * threads, that grows with the number of works.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+final class VirtualThreads {
+
+    private static final Logger LOG = Logger.getLogger(
+            VirtualThreads.class.getName());
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * returns a new executor, that starts a thread for each task.
+     *
+     * @param name the prefix of the names of the threads of the fallback.
+     * @return
+     */
+    static ExecutorService newThreadPerTaskExecutor(final String name) {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            LOG.fine("runs the works in virtual threads.");
+            return executor;
+        } catch (NoSuchMethodException | IllegalAccessException |
+                InvocationTargetException ex) {
+            LOG.log(Level.FINE,
+                    "virtual threads are not available, runs the works in platform threads.",
+                    ex);
+        }
+        final AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-"
+                        + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * checks, if the executors of this runtime run in virtual threads.
+     *
+     * @return
+     */
+    static boolean isAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of the ETECTURE Open Source Community Projects.
+ *
+ * Copyright (c) 2013 by:
+ *
+ * ETECTURE GmbH
+ * Darmstädter Landstraße 112
+ * 60598 Frankfurt
+ * Germany
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the author nor the names of its contributors may be
+ *    used to endorse or promote products derived from this software without
+ *    specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package de.etecture.opensource.genericimport.standalone;
+
+import de.etecture.opensource.genericimport.api.ImportStatusListener;
+import de.etecture.opensource.genericimport.core.GenericImportSpec;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.fest.assertions.Assertions.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * tests the {@link StandaloneImportRuntime}.
+ *
+ * @author rhk
+ * @version ${project.version}
+ * @since 1.0.6
+ */
+public class StandaloneImportRuntimeTest {
+
+    private Path importDir;
+    private StandaloneImportRuntime runtime;
+
+    @Before
+    public void setUp() throws Exception {
+        importDir = Files.createTempDirectory("standalone");
+        runtime = new StandaloneImportRuntime();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        runtime.stop(TimeUnit.SECONDS.toMillis(10));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(
+                importDir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(importDir);
+    }
+
+    /**
+     * the imports of a spec are delivered to the listener registered in code.
+     */
+    @Test
+    public void testImport() throws Exception {
+        CollectingListener listener = new CollectingListener(2);
+        GenericImportSpec spec = new GenericImportSpec();
+        spec.setImportPath(importDir.toString());
+        spec.setImportFilePattern("import_\\d+\\.txt");
+        spec.setMimeType(LineImportFileProcessor.MIME_TYPE);
+        spec.setScheduleExpression("@every-second");
+        spec.setWatchImportPath(true);
+        runtime.register(spec, listener);
+        runtime.start();
+        assertThat(runtime.isStarted()).isTrue();
+        write("import_1.txt", "a", "b");
+        write("import_2.txt", "c");
+        assertThat(listener.finished.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(listener.payloads).containsOnly("a", "b", "c");
+        assertThat(listener.errors).isEmpty();
+    }
+
+    /**
+     * the specs and their listeners are created from properties.
+     */
+    @Test
+    public void testConfigure() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("connector.maxConcurrentImports", "8");
+        properties.setProperty("lines.listener", CollectingListener.class
+                .getName());
+        properties.setProperty("lines.importPath", importDir.toString());
+        properties.setProperty("lines.importFilePattern", "import_\\d+\\.txt");
+        properties.setProperty("lines.mimeType",
+                LineImportFileProcessor.MIME_TYPE);
+        properties.setProperty("lines.scheduleExpression", "@every-second");
+        properties.setProperty("lines.scanWindowSize", "10");
+        runtime.configure(properties);
+        assertThat(runtime.getConnector().getMaxConcurrentImports())
+                .isEqualTo(8);
+        runtime.start();
+        assertThat(runtime.isStarted()).isTrue();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConfigureUnknownProperty() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("lines.listener", CollectingListener.class
+                .getName());
+        properties.setProperty("lines.importPathh", importDir.toString());
+        runtime.configure(properties);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConfigureWithoutListener() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("lines.importPath", importDir.toString());
+        runtime.configure(properties);
+    }
+
+    private void write(String name, String... lines) throws Exception {
+        Path temp = importDir.resolve(name + ".tmp");
+        Files.write(temp, Arrays.asList(lines), StandardCharsets.UTF_8);
+        Files.move(temp, importDir.resolve(name),
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static class CollectingListener implements
+            ImportStatusListener<String> {
+
+        final List<String> payloads = new CopyOnWriteArrayList<>();
+        final List<String> errors = new CopyOnWriteArrayList<>();
+        final CountDownLatch finished;
+
+        public CollectingListener() {
+            this(0);
+        }
+
+        CollectingListener(int imports) {
+            this.finished = new CountDownLatch(imports);
+        }
+
+        @Override
+        public void onStart(String importId) {
+        }
+
+        @Override
+        public void onFinished(String importId) {
+            finished.countDown();
+        }
+
+        @Override
+        public void onProgress(String importId, String payload) {
+            payloads.add(payload);
+        }
+
+        @Override
+        public void onError(String importId, String message,
+                Object... args) {
+            errors.add(String.format(message, args));
+        }
+
+        @Override
+        public void onWarning(String importId, String message,
+                Object... args) {
+        }
+    }
+}